@@ -37,6 +37,7 @@ public class SubscriptionController {
         } catch (Exception e) {
             UserSubscriptionResponse subscription = new UserSubscriptionResponse();
             subscription.setLimit(10L);
+            subscription.setPlanName("Free");
             return ResponseEntity.ok(subscription); // Empty = free tier
         }
     }
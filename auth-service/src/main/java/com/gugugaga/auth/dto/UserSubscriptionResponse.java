@@ -2,6 +2,7 @@ package com.gugugaga.auth.dto;
 
 public class UserSubscriptionResponse {
     private Long limit;
+    private String planName;
 
     public Long getLimit() {
         return limit;
@@ -10,5 +11,13 @@ public class UserSubscriptionResponse {
     public void setLimit(Long limit) {
         this.limit = limit;
     }
+
+    public String getPlanName() {
+        return planName;
+    }
+
+    public void setPlanName(String planName) {
+        this.planName = planName;
+    }
     
 }
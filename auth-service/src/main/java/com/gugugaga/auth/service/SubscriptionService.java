@@ -22,10 +22,12 @@ public class SubscriptionService {
             Subscription sub = subscription.get();
             UserSubscriptionResponse response = new UserSubscriptionResponse();
             response.setLimit(sub.getPlan().getMaxRequest());
+            response.setPlanName(sub.getPlan().getName());
             return response;
         } else {
             UserSubscriptionResponse response = new UserSubscriptionResponse();
             response.setLimit(10L);
+            response.setPlanName("Free");
             return response;
         }
     }
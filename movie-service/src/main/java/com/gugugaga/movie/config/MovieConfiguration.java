@@ -6,7 +6,9 @@ import org.springframework.context.annotation.Configuration;
 
 import lombok.Data;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Data
 @Configuration
@@ -15,15 +17,258 @@ import java.util.List;
 public class MovieConfiguration {
     
     private Streaming streaming = new Streaming();
+    private Catalog catalog = new Catalog();
     private Messages messages = new Messages();
     private Security security = new Security();
     private Testing testing = new Testing();
+    private Hls hls = new Hls();
+    private Faststart faststart = new Faststart();
+    private Packaging packaging = new Packaging();
+    private VideoInfoCache videoInfoCache = new VideoInfoCache();
+    private Plans plans = new Plans();
+    private Storage storage = new Storage();
+    private Thumbnails thumbnails = new Thumbnails();
+    private Upload upload = new Upload();
+    private Watcher watcher = new Watcher();
+    private WatchProgress watchProgress = new WatchProgress();
+    private Viewers viewers = new Viewers();
     
     @Data
     public static class Streaming {
         private int bufferSizeBytes = 16384; // 16KB chunks
         private long cacheMaxAgeSeconds = 3600; // 1 hour
         private String defaultContentType = "video/mp4";
+        // BUFFERED copies through a heap buffer, ZERO_COPY hands the file region to the kernel
+        // with sendfile; streams sendfile can't serve are copied through the heap buffer anyway
+        private TransferMode transferMode = TransferMode.BUFFERED;
+        // Use Tomcat's sendfile when the connector supports it (ZERO_COPY only)
+        private boolean sendfileEnabled = true;
+        private StreamExecutor executor = new StreamExecutor();
+        private Pacing pacing = new Pacing();
+        private ChannelCache channelCache = new ChannelCache();
+        private HotRegions hotRegions = new HotRegions();
+        private ReadAhead readAhead = new ReadAhead();
+        private ConcurrencyLimit concurrencyLimit = new ConcurrencyLimit();
+        private Reactive reactive = new Reactive();
+
+        public enum TransferMode {
+            BUFFERED,
+            ZERO_COPY
+        }
+
+        @Data
+        public static class StreamExecutor {
+            // One virtual thread per stream on Java 21+, platform pool below on older runtimes
+            private boolean virtualThreads = true;
+            private int virtualConcurrencyLimit = -1; // -1 = unbounded, bandwidth is the limit
+            private int platformCorePoolSize = 50;
+            private int platformMaxPoolSize = 400;
+            // Streams hold their thread until the viewer stops, queued ones would wait that long
+            private int platformQueueCapacity = 0;
+            private long rejectedRetryAfterSeconds = 5;
+        }
+
+        @Data
+        public static class Pacing {
+            private boolean enabled = false;
+            // Let players fill their startup buffer at full speed before pacing kicks in
+            private long burstBytes = 8L * 1024 * 1024;
+            private long defaultBytesPerSecond = 1_250_000; // 10 Mbit/s when the plan is unknown
+            // Keyed by lower-case plan name from tb_plans
+            private Map<String, Long> planBytesPerSecond = new HashMap<>(Map.of(
+                    "free", 625_000L,
+                    "pro", 2_500_000L,
+                    "enterprise", 5_000_000L
+            ));
+        }
+
+        @Data
+        public static class ChannelCache {
+            // Share one read-only FileChannel per file across concurrent streams
+            private boolean enabled = true;
+            private int maxOpenChannels = 256; // descriptor budget for cached channels
+            private long idleCloseSeconds = 60;
+            private long sweepIntervalMillis = 15000;
+        }
+
+        @Data
+        public static class HotRegions {
+            // mmap the start of the most requested titles, off by default
+            private boolean enabled = false;
+            private int topK = 10;
+            private int minRequests = 5; // per refresh interval, after decay
+            private double leadingSeconds = 300; // moov plus the first 5 minutes
+            private long maxBytesPerTitle = 512L * 1024 * 1024;
+            private long maxTotalBytes = 4L * 1024 * 1024 * 1024;
+            private boolean preload = true; // fault the pages in when mapping
+            private long refreshIntervalMillis = 60000;
+        }
+
+        @Data
+        public static class ReadAhead {
+            // Prefetch the next window for viewers requesting adjacent ranges
+            private boolean enabled = true;
+            private int sequentialThreshold = 2; // back-to-back ranges before prefetching starts
+            private int initialWindowBytes = 512 * 1024; // doubled on every sequential hit
+            private int maxWindowBytes = 4 * 1024 * 1024; // also the size of a pooled buffer
+            private long maxTotalBytes = 256L * 1024 * 1024; // buffer pool cap per node
+            private int maxTrackers = 10000; // (user, movie) pairs being tracked
+            private long trackerExpireSeconds = 120;
+        }
+
+        @Data
+        public static class ConcurrencyLimit {
+            // Movies a user may stream at once; limited streams skip sendfile so the slot is held to the last byte
+            private boolean enabled = false;
+            private int defaultMaxStreams = 2; // plans not listed below, <= 0 = unlimited
+            // Keyed by lower-case plan name from tb_plans
+            private Map<String, Integer> planMaxStreams = new HashMap<>(Map.of(
+                    "free", 1,
+                    "pro", 2,
+                    "enterprise", 4
+            ));
+            private long retryAfterSeconds = 10;
+        }
+
+        @Data
+        public static class Reactive {
+            // Netty server for /api/movies/{movieId}/stream, started with the reactive-streaming profile
+            private String host = "0.0.0.0";
+            private int port = 8091;
+        }
+    }
+    
+    @Data
+    public static class Catalog {
+        private int defaultPageSize = 50; // GET /api/movies without ?limit=
+        private int maxPageSize = 200;
+    }
+
+    @Data
+    public static class Hls {
+        private long indexCacheMaxSamples = 20_000_000; // samples of the parsed MP4 indexes kept in memory
+        private long indexExpireAfterAccessMinutes = 60;
+        private String playlistContentType = "application/vnd.apple.mpegurl";
+        private long initSegmentCacheMaxBytes = 64L * 1024 * 1024; // fMP4 init segments kept in memory
+    }
+    
+    @Data
+    public static class Faststart {
+        // Serve tail-moov MP4s as a virtual moov-first file
+        private boolean enabled = true;
+        private long headerCacheMaxBytes = 256L * 1024 * 1024; // patched moov boxes kept in memory
+    }
+
+    @Data
+    public static class Storage {
+        // FILESYSTEM serves app.video.storage.path, OBJECT_STORE fetches through the chunk cache
+        private StorageType type = StorageType.FILESYSTEM;
+        private ObjectStore objectStore = new ObjectStore();
+        private ChunkCache chunkCache = new ChunkCache();
+
+        public enum StorageType {
+            FILESYSTEM,
+            OBJECT_STORE
+        }
+
+        @Data
+        public static class ObjectStore {
+            private String endpoint; // http(s) base URL of the bucket, HEAD + ranged GET
+            private String localDirectory; // stand-in bucket used when no endpoint is set
+            private long connectTimeoutMillis = 2000;
+            private long requestTimeoutMillis = 30000;
+        }
+
+        @Data
+        public static class ChunkCache {
+            private boolean enabled = true;
+            private String directory = "chunk-cache";
+            private int chunkSizeBytes = 4 * 1024 * 1024;
+            private long maxBytes = 20L * 1024 * 1024 * 1024; // disk budget, least recently read chunks go first
+        }
+    }
+
+    @Data
+    public static class Thumbnails {
+        private String sourcePath = "thumbnails"; // Movie.thumbnail is resolved against this
+        private String variantPath = "thumbnails/variants"; // rendered sizes, named <movieId>-<version>-<width>
+        private List<Integer> widths = List.of(160, 320, 640, 1280);
+        private float jpegQuality = 0.85f;
+        private long cacheMaxBytes = 64L * 1024 * 1024; // hot variants kept in memory
+        private long cacheMaxAgeSeconds = 86400;
+        private boolean renderOnCreate = true;
+        private long renderTimeoutMillis = 2000; // longer waits are served the source image
+    }
+
+    @Data
+    public static class Upload {
+        private String directory = "uploads"; // part files and manifests, same filesystem as the library for an atomic rename
+        private int defaultChunkSizeBytes = 8 * 1024 * 1024;
+        private int minChunkSizeBytes = 256 * 1024; // the last chunk may be smaller
+        private int maxChunkSizeBytes = 64 * 1024 * 1024;
+        private long expireHours = 24; // idle sessions are deleted after this
+        private long sweepIntervalMillis = 600000;
+    }
+
+    @Data
+    public static class Watcher {
+        // Watch the storage directory and index new files before they are played
+        private boolean enabled = false;
+        private boolean recursive = true;
+        private boolean scanOnStartup = true; // pick up files copied while the service was down
+        private long debounceMillis = 5000; // quiet period before a file counts as fully written
+        private long settleCheckIntervalMillis = 1000;
+    }
+
+    @Data
+    public static class WatchProgress {
+        // Resume positions derived from stream requests, written to tb_watch_progress in batches
+        private boolean enabled = true;
+        private long flushIntervalMillis = 5000; // updates within this window cost one row write
+        private int batchSize = 500;
+        private int maxPendingEntries = 100000; // newer updates are dropped beyond this while the DB is down
+        private double playerBufferSeconds = 30; // players request ahead of what is on screen
+        private double completedRatio = 0.95;
+        // A body starting in the completed part of the file this far past the viewer's last
+        // position is a metadata probe (tail moov, WebM Cues) unless it writes probeMaxBytes
+        private long probeToleranceBytes = 16L * 1024 * 1024;
+        private long probeMaxBytes = 16L * 1024 * 1024;
+    }
+
+    @Data
+    public static class Viewers {
+        // Live streams per movie and approximate unique viewers per day
+        private boolean enabled = true;
+        private int sketchPrecision = 12; // 2^12 registers = 4 KB per movie and day, ~1.6% error
+        private int retainDays = 7;
+        private String zone = "UTC"; // where a day starts, must match on every node for merging
+        private boolean perMovieGauges = false; // movie.viewers.active tagged with movie_id, one series per movie watched
+        private long pruneIntervalMillis = 3600000;
+    }
+
+    @Data
+    public static class Plans {
+        private String authServiceUrl = "http://localhost:8082";
+        private long cacheMinutes = 5; // subscription lookups are cached per user
+        private int timeoutMillis = 2000;
+        private String defaultPlan = "Free"; // used when auth-service is unreachable
+    }
+    
+    @Data
+    public static class VideoInfoCache {
+        private int maximumSize = 10000; // resolved VideoInfo per movieId
+        private long refreshAfterWriteSeconds = 30; // background re-check of DB row and file
+        private long expireAfterWriteSeconds = 600; // hard limit when refreshes keep failing
+    }
+    
+    @Data
+    public static class Packaging {
+        private boolean autoSubmitOnCreate = true; // queue a packaging job for every new movie
+        private boolean resumeOnStartup = true; // re-dispatch unfinished jobs after a restart
+        private int maxAttempts = 3;
+        private long retryDelaySeconds = 30; // multiplied by the attempt number
+        private long staleRunningMinutes = 10; // RUNNING jobs without progress for this long are orphaned
+        private int checksumBufferBytes = 1024 * 1024;
     }
     
     @Data
@@ -31,7 +276,11 @@ public class MovieConfiguration {
         // Indonesian error messages - externalized for internationalization
         private String noMoviesFound = "No movies found";
         private String movieNotFound = "Data tidak ditemukan";
+        private String videoNotFound = "Video tidak ditemukan";
         private String invalidId = "Id tidak boleh kosong dan harus berupa number";
+        private String invalidPageSize = "Parameter limit harus berupa angka positif";
+        private String invalidSort = "Parameter sort tidak dikenali";
+        private String invalidCursor = "Parameter after tidak valid";
         private String generalError = "Terjadi kesalahan";
         private String createError = "Terjadi kesalahan saat membuat data";
         private String deleteError = "Terjadi kesalahan saat menghapus data";
@@ -43,15 +292,39 @@ public class MovieConfiguration {
         private String videoInfoNull = "VideoInfo is null";
         private String streamingError = "Error streaming video";
         private String streamingRangeError = "Error streaming video range";
+        private String unsupportedContainer = "Format video tidak mendukung HLS";
+        private String segmentNotFound = "Segmen HLS tidak ditemukan";
+        private String packagingQueueFull = "Antrian packaging penuh, coba lagi nanti";
+        private String packagingJobNotFound = "Belum ada packaging job untuk film ini";
+        private String invalidSeekTime = "Parameter t harus berupa detik yang valid";
+        private String thumbnailNotFound = "Thumbnail tidak ditemukan";
+        private String invalidThumbnailWidth = "Parameter w harus berupa angka positif";
+        private String uploadNotFound = "Sesi upload tidak ditemukan";
+        private String unsupportedVideoFormat = "Nama atau format file video tidak didukung";
+        private String videoTooLarge = "Ukuran file melebihi batas maksimum";
+        private String invalidChunkSize = "Ukuran chunk tidak valid";
+        private String invalidChunk = "Nomor atau ukuran chunk tidak valid";
+        private String chunkChecksumRequired = "Header X-Chunk-Sha256 wajib berisi SHA-256 chunk";
+        private String chunkChecksumMismatch = "Checksum chunk tidak cocok, kirim ulang chunk ini";
+        private String chunkInProgress = "Chunk sedang diunggah, coba lagi nanti";
+        private String uploadIncomplete = "Masih ada chunk yang belum diunggah";
+        private String uploadTargetExists = "File video dengan nama tersebut sudah ada";
+        private String uploadNotSupported = "Upload hanya didukung untuk penyimpanan lokal";
+        private String unknownVideoContainer = "Format container video tidak dikenali";
+        private String watchProgressNotFound = "Belum ada progres tontonan untuk film ini";
+        private String invalidViewerSketch = "Sketch penonton tidak valid";
+        private String streamingBusy = "Server sedang penuh, silakan coba beberapa saat lagi";
+        private String streamLimitExceeded = "Batas jumlah streaming bersamaan untuk paket Anda sudah tercapai";
     }
     
     @Data
     public static class Security {
         private List<String> corsOrigins = List.of("*");
         private List<String> corsMethods = List.of("GET", "HEAD", "OPTIONS", "POST", "PUT", "DELETE");
-        private List<String> corsHeaders = List.of("Range", "Content-Type", "Accept", "Origin", "X-Requested-With", "X-User-Id");
+        private List<String> corsHeaders = List.of("Range", "Content-Type", "Accept", "Origin", "X-Requested-With", "X-User-Id", "X-Chunk-Sha256");
         private List<String> exposedHeaders = List.of("Content-Length", "Content-Range", "Accept-Ranges");
         private String userIdHeader = "X-User-Id";
+        private String chunkChecksumHeader = "X-Chunk-Sha256";
         private String rangeHeader = "Range";
     }
     
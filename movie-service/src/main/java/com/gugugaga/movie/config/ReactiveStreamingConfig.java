@@ -0,0 +1,43 @@
+package com.gugugaga.movie.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import com.gugugaga.movie.controller.ReactiveStreamHandler;
+
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+/**
+ * Starts a Reactor Netty server next to Tomcat that serves only the stream endpoint.
+ * Spring MVC and WebFlux can't share one server, so the gateway routes
+ * /api/movies/{movieId}/stream to app.movie.streaming.reactive.port when this profile is active.
+ */
+@Configuration
+@Profile("reactive-streaming")
+public class ReactiveStreamingConfig {
+    private static final Logger log = LoggerFactory.getLogger(ReactiveStreamingConfig.class);
+
+    @Bean(destroyMethod = "disposeNow")
+    public DisposableServer reactiveStreamServer(ReactiveStreamHandler handler, MovieConfiguration movieConfig) {
+        RouterFunction<ServerResponse> routes = RouterFunctions.route()
+                .GET("/api/movies/{movieId}/stream", handler::stream)
+                .HEAD("/api/movies/{movieId}/stream", handler::stream)
+                .build();
+        MovieConfiguration.Streaming.Reactive reactive = movieConfig.getStreaming().getReactive();
+        DisposableServer server = HttpServer.create()
+                .host(reactive.getHost())
+                .port(reactive.getPort())
+                .handle(new ReactorHttpHandlerAdapter(RouterFunctions.toHttpHandler(routes)))
+                .bindNow();
+        log.info("Reactive stream endpoint listening on {}:{}", reactive.getHost(), server.port());
+        return server;
+    }
+}
@@ -0,0 +1,21 @@
+package com.gugugaga.movie.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.gugugaga.movie.limits.InMemoryStreamSlotStore;
+import com.gugugaga.movie.limits.StreamSlotStore;
+
+/**
+ * Per-node slot counting unless another StreamSlotStore bean (shared across nodes) is defined.
+ */
+@Configuration
+public class StreamLimitConfig {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public StreamSlotStore streamSlotStore() {
+        return new InMemoryStreamSlotStore();
+    }
+}
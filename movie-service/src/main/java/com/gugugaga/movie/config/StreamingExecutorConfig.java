@@ -0,0 +1,66 @@
+package com.gugugaga.movie.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Executor running MVC async work, which includes every StreamingResponseBody write loop.
+ *
+ * A stream holds its thread for as long as the viewer keeps watching, so on Java 21+
+ * each stream gets a virtual thread and concurrency is bounded by bandwidth rather
+ * than pool size. The build stays on Java 17: Spring's SimpleAsyncTaskExecutor
+ * refuses virtual threads on older runtimes and we fall back to a platform pool.
+ *
+ * The platform pool hands streams straight to a thread (no queue by default): a queued
+ * stream would only start once another viewer stops watching, which can take hours.
+ * Past the thread (or virtual concurrency) limit a stream is rejected and answered with
+ * 503 by GlobalExceptionHandler, so the player can retry.
+ */
+@Configuration
+public class StreamingExecutorConfig implements WebMvcConfigurer {
+    private static final Logger log = LoggerFactory.getLogger(StreamingExecutorConfig.class);
+
+    private final MovieConfiguration movieConfig;
+
+    public StreamingExecutorConfig(MovieConfiguration movieConfig) {
+        this.movieConfig = movieConfig;
+    }
+
+    @Bean
+    public AsyncTaskExecutor streamingTaskExecutor() {
+        MovieConfiguration.Streaming.StreamExecutor config = movieConfig.getStreaming().getExecutor();
+        if (config.isVirtualThreads()) {
+            try {
+                SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("stream-vt-");
+                executor.setVirtualThreads(true);
+                executor.setConcurrencyLimit(config.getVirtualConcurrencyLimit());
+                // Reject instead of blocking the container thread until a stream ends
+                executor.setRejectTasksWhenLimitReached(true);
+                log.info("Streaming on virtual threads");
+                return executor;
+            } catch (UnsupportedOperationException e) {
+                log.warn("Virtual threads need Java 21+, streaming on the platform pool instead");
+            }
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(config.getPlatformCorePoolSize());
+        executor.setMaxPoolSize(config.getPlatformMaxPoolSize());
+        // 0 means a SynchronousQueue: threads up to the max pool size, then rejection
+        executor.setQueueCapacity(config.getPlatformQueueCapacity());
+        executor.setThreadNamePrefix("stream-");
+        executor.initialize();
+        return executor;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(streamingTaskExecutor());
+    }
+}
@@ -0,0 +1,67 @@
+package com.gugugaga.movie.config;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.gugugaga.movie.storage.ChunkCachingVideoStorage;
+import com.gugugaga.movie.storage.DirectoryObjectStoreClient;
+import com.gugugaga.movie.storage.FilesystemVideoStorage;
+import com.gugugaga.movie.storage.HttpObjectStoreClient;
+import com.gugugaga.movie.storage.ObjectStoreClient;
+import com.gugugaga.movie.storage.ObjectStoreVideoStorage;
+import com.gugugaga.movie.storage.VideoStorage;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Picks where video files are read from. The filesystem storage is the default; an
+ * object store is always fronted by the local chunk cache unless it is disabled.
+ */
+@Configuration
+public class VideoStorageConfig {
+    private static final Logger log = LoggerFactory.getLogger(VideoStorageConfig.class);
+
+    private final MovieConfiguration movieConfig;
+
+    @Value("${app.video.storage.path:videos}")
+    private String videoStoragePath;
+
+    public VideoStorageConfig(MovieConfiguration movieConfig) {
+        this.movieConfig = movieConfig;
+    }
+
+    @Bean
+    public VideoStorage videoStorage(MeterRegistry meterRegistry) throws IOException {
+        MovieConfiguration.Storage config = movieConfig.getStorage();
+        if (config.getType() == MovieConfiguration.Storage.StorageType.FILESYSTEM) {
+            return new FilesystemVideoStorage(Path.of(videoStoragePath));
+        }
+        VideoStorage objectStore = new ObjectStoreVideoStorage(objectStoreClient(config.getObjectStore()));
+        MovieConfiguration.Storage.ChunkCache chunkCache = config.getChunkCache();
+        if (!chunkCache.isEnabled()) {
+            return objectStore;
+        }
+        return new ChunkCachingVideoStorage(objectStore, Path.of(chunkCache.getDirectory()),
+                chunkCache.getChunkSizeBytes(), chunkCache.getMaxBytes(), meterRegistry);
+    }
+
+    private ObjectStoreClient objectStoreClient(MovieConfiguration.Storage.ObjectStore config) {
+        if (config.getEndpoint() != null && !config.getEndpoint().isBlank()) {
+            log.info("Reading videos from object store {}", config.getEndpoint());
+            return new HttpObjectStoreClient(config.getEndpoint(),
+                    Duration.ofMillis(config.getConnectTimeoutMillis()), Duration.ofMillis(config.getRequestTimeoutMillis()));
+        }
+        if (config.getLocalDirectory() == null || config.getLocalDirectory().isBlank()) {
+            throw new IllegalStateException("app.movie.storage.object-store needs an endpoint or a local-directory");
+        }
+        log.info("Reading videos from stand-in object store directory {}", config.getLocalDirectory());
+        return new DirectoryObjectStoreClient(Path.of(config.getLocalDirectory()));
+    }
+}
@@ -5,10 +5,12 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 @Configuration
 @EnableConfigurationProperties
+@EnableScheduling
 public class VideoStreamingConfig {
     @Bean
     public TaskExecutor videoProcessingExecutor() {
@@ -21,6 +23,18 @@ public class VideoStreamingConfig {
         return executor;
     }
 
+    // Thumbnails get their own small pool so a request never waits behind packaging jobs
+    @Bean
+    public TaskExecutor thumbnailRenderExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(2);
+        executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("thumbnail-render-");
+        executor.initialize();
+        return executor;
+    }
+
     @Bean
     @ConfigurationProperties(prefix = "app.video")
     public VideoProperties videoProperties() {
@@ -0,0 +1,46 @@
+package com.gugugaga.movie.controller;
+import com.gugugaga.movie.config.MovieConfiguration;
+import com.gugugaga.movie.entity.LibraryFile;
+import com.gugugaga.movie.entity.LibraryFileStatus;
+import com.gugugaga.movie.repository.LibraryFileRepository;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Files found by the library watcher, e.g. READY ones to pick a videoFileName from.
+ */
+@RestController
+@RequestMapping("/api/library/files")
+public class LibraryController {
+    private final LibraryFileRepository libraryFileRepository;
+    private final MovieConfiguration movieConfig;
+
+    public LibraryController(LibraryFileRepository libraryFileRepository, MovieConfiguration movieConfig) {
+        this.libraryFileRepository = libraryFileRepository;
+        this.movieConfig = movieConfig;
+    }
+
+    @GetMapping
+    public ResponseEntity<?> getFiles(@RequestParam(required = false) LibraryFileStatus status) {
+        try {
+            List<LibraryFile> files = status != null
+                    ? libraryFileRepository.findByStatusOrderByFileName(status)
+                    : libraryFileRepository.findAllByOrderByFileName();
+            return ResponseEntity.ok(Map.of(
+                    "success", true,
+                    "data", files
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
+                    "success", false,
+                    "message", movieConfig.getMessages().getGetDataError(),
+                    "error", String.valueOf(e.getMessage())
+            ));
+        }
+    }
+}
@@ -1,25 +1,54 @@
 package com.gugugaga.movie.controller;
 import com.gugugaga.movie.config.MovieConfiguration;
 import com.gugugaga.movie.dto.CreateMovieRequest;
+import com.gugugaga.movie.dto.MoviePage;
+import com.gugugaga.movie.dto.MovieSort;
+import com.gugugaga.movie.dto.SeekPosition;
 import com.gugugaga.movie.entity.Movie;
 import com.gugugaga.movie.entity.VideoInfo;
+import com.gugugaga.movie.exception.Mp4FormatException;
+import com.gugugaga.movie.exception.SegmentNotFoundException;
+import com.gugugaga.movie.exception.StreamLimitExceededException;
+import com.gugugaga.movie.exception.ThumbnailNotFoundException;
+import com.gugugaga.movie.exception.VideoNotFoundException;
+import com.gugugaga.movie.mp4.Mp4Fragmenter;
+import com.gugugaga.movie.service.BandwidthPacingService;
+import com.gugugaga.movie.service.FileChannelCache;
+import com.gugugaga.movie.service.HlsPlaylistService;
 import com.gugugaga.movie.service.MovieService;
+import com.gugugaga.movie.service.ReadAheadService;
+import com.gugugaga.movie.service.StreamLimitService;
+import com.gugugaga.movie.service.StreamingMetricsService;
+import com.gugugaga.movie.service.ThumbnailService;
+import com.gugugaga.movie.service.VideoSeekService;
 import com.gugugaga.movie.service.VideoStreamingService;
+import com.gugugaga.movie.service.ViewerStatsService;
+import com.gugugaga.movie.service.WatchProgressService;
+import com.gugugaga.movie.util.BandwidthPacer;
+import com.gugugaga.movie.util.ByteRange;
+import com.gugugaga.movie.util.ClientAborts;
+import com.gugugaga.movie.util.ConditionalRequests;
+import com.gugugaga.movie.util.PacedOutputStream;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.RandomAccessFile;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -29,28 +58,85 @@ import java.util.Optional;
 @RestController
 @RequestMapping("/api/movies")
 public class MovieController {
+    private static final Logger log = LoggerFactory.getLogger(MovieController.class);
+
+    // Tomcat request attributes driving the connector's sendfile support
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
     private final MovieService movieService;
     private final VideoStreamingService videoStreamingService;
+    private final HlsPlaylistService hlsPlaylistService;
+    private final VideoSeekService videoSeekService;
+    private final BandwidthPacingService bandwidthPacingService;
+    private final StreamingMetricsService streamingMetricsService;
+    private final FileChannelCache fileChannelCache;
+    private final ReadAheadService readAheadService;
+    private final ThumbnailService thumbnailService;
+    private final StreamLimitService streamLimitService;
+    private final WatchProgressService watchProgressService;
+    private final ViewerStatsService viewerStatsService;
     private final MovieConfiguration movieConfig;
 
-    public MovieController(MovieService movieService, VideoStreamingService videoStreamingService, MovieConfiguration movieConfig) {
+    public MovieController(MovieService movieService, VideoStreamingService videoStreamingService, HlsPlaylistService hlsPlaylistService, VideoSeekService videoSeekService, BandwidthPacingService bandwidthPacingService, StreamingMetricsService streamingMetricsService, FileChannelCache fileChannelCache, ReadAheadService readAheadService, ThumbnailService thumbnailService, StreamLimitService streamLimitService, WatchProgressService watchProgressService, ViewerStatsService viewerStatsService, MovieConfiguration movieConfig) {
         this.movieService = movieService;
         this.videoStreamingService = videoStreamingService;
+        this.hlsPlaylistService = hlsPlaylistService;
+        this.videoSeekService = videoSeekService;
+        this.bandwidthPacingService = bandwidthPacingService;
+        this.streamingMetricsService = streamingMetricsService;
+        this.fileChannelCache = fileChannelCache;
+        this.readAheadService = readAheadService;
+        this.thumbnailService = thumbnailService;
+        this.streamLimitService = streamLimitService;
+        this.watchProgressService = watchProgressService;
+        this.viewerStatsService = viewerStatsService;
         this.movieConfig = movieConfig;
     }
+    /**
+     * Catalog page: ?after=<nextCursor of the previous page>&limit=&sort=id|title|year
+     */
     @GetMapping
-    public ResponseEntity<?> getAllMovies(){
+    public ResponseEntity<?> getAllMovies(@RequestParam(value = "after", required = false) Long after, @RequestParam(value = "limit", required = false) Integer limit, @RequestParam(value = "sort", defaultValue = "id") String sort){
+        if ( limit != null && limit <= 0 ) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "message", movieConfig.getMessages().getInvalidPageSize()
+            ));
+        }
+        MovieSort movieSort;
+        try {
+            movieSort = MovieSort.fromParam(sort);
+        } catch ( IllegalArgumentException e ) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "message", movieConfig.getMessages().getInvalidSort(),
+                    "allowed", MovieSort.params()
+            ));
+        }
+        int pageSize = Math.min(limit != null ? limit : movieConfig.getCatalog().getDefaultPageSize(), movieConfig.getCatalog().getMaxPageSize());
         try {
-            List<Movie> movies = movieService.getAllMovies();
-            if ( movies.isEmpty() ) {
+            MoviePage page = movieService.getMovies(after, pageSize, movieSort);
+            if ( page.getMovies().isEmpty() && after == null ) {
                 return ResponseEntity.status(HttpStatus.NO_CONTENT).body(Map.of(
                         "success", false,
                         "message", movieConfig.getMessages().getNoMoviesFound()
                 ));
             }
-            return ResponseEntity.ok(Map.of(
-                    "success", true,
-                    "data", movies
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("success", true);
+            body.put("data", page.getMovies());
+            body.put("limit", pageSize);
+            body.put("sort", movieSort.getParam());
+            body.put("hasMore", page.hasMore());
+            body.put("nextCursor", page.getNextCursor()); // null on the last page
+            return ResponseEntity.ok(body);
+        } catch ( IllegalArgumentException e ) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "message", movieConfig.getMessages().getInvalidCursor()
             ));
         } catch ( Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body( Map.of(
@@ -163,6 +249,11 @@ public class MovieController {
                 "data", videoInfo,
                 "userId", 1L
             ));
+        } catch (VideoNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of(
+                "success", false,
+                "message", e.getMessage()
+            ));
         } catch ( Exception e ) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body( Map.of(
                 "success", false,
@@ -174,7 +265,7 @@ public class MovieController {
     
     
     @RequestMapping(value = "/{movieId}/stream", method = {org.springframework.web.bind.annotation.RequestMethod.GET, org.springframework.web.bind.annotation.RequestMethod.HEAD})
-    public ResponseEntity<StreamingResponseBody> streamVideo( @PathVariable Long movieId, @RequestHeader( value = "Range", required = false) String rangeHeader, @RequestHeader(value = "X-User-Id", required = false) String userId, @RequestParam(value = "userId", required = false) String userIdParam, @RequestParam(value = "token", required = false) String tokenParam, HttpServletRequest req) {
+    public ResponseEntity<StreamingResponseBody> streamVideo( @PathVariable Long movieId, @RequestHeader( value = "Range", required = false) String rangeHeader, @RequestHeader(value = "X-User-Id", required = false) String userId, @RequestParam(value = "userId", required = false) String userIdParam, @RequestParam(value = "token", required = false) String tokenParam, @RequestParam(value = "t", required = false) Double seekSeconds, HttpServletRequest req) {
         try {
             // Get user ID from header or query parameter
             String effectiveUserId = userId != null ? userId : userIdParam;
@@ -184,119 +275,368 @@ public class MovieController {
             
             Long convertedUserId = Long.valueOf(effectiveUserId.trim());
             VideoInfo videoInfo = videoStreamingService.getVideoInfo(movieId, convertedUserId);
+            BandwidthPacer pacer = bandwidthPacingService.pacerFor(convertedUserId);
             
             if (videoInfo == null) {
                 return ResponseEntity.notFound().build();
             }
-            File videoFile = videoInfo.getFile();
-            long fileSize = videoFile.length();
+            long fileSize = videoInfo.getFileSize();
             String contentType = videoInfo.getContentType();
             
+            // Revalidation: the client already holds this exact file
+            if (isNotModified(req, videoInfo)) {
+                streamingMetricsService.recordResponse(contentType, StreamingMetricsService.NOT_MODIFIED);
+                return createNotModifiedResponse(videoInfo);
+            }
+            
             // Handle HEAD requests - return headers only
             if ("HEAD".equals(req.getMethod())) {
+                streamingMetricsService.recordResponse(contentType, StreamingMetricsService.HEAD);
                 return ResponseEntity.ok()
                     .header("Content-Type", contentType)
                     .header("Content-Length", String.valueOf(fileSize))
                     .header("Accept-Ranges", "bytes")
                     .header("Cache-Control", "public, max-age=" + movieConfig.getStreaming().getCacheMaxAgeSeconds())
+                    .eTag(videoInfo.getEtag())
+                    .lastModified(videoInfo.getLastModified())
                     .header("Access-Control-Allow-Origin", "*")
                     .header("Access-Control-Allow-Methods", "GET, HEAD, OPTIONS")
                     .header("Access-Control-Allow-Headers", "Range, Content-Type, Accept, Origin, X-Requested-With, X-User-Id")
-                    .header("Access-Control-Expose-Headers", "Content-Length, Content-Range, Accept-Ranges")
+                    .header("Access-Control-Expose-Headers", "Content-Length, Content-Range, Accept-Ranges, ETag, Last-Modified")
                     .build();
             }
             
+            // Hold one of the plan's stream slots until the request is done, see StreamLeaseRequestListener
+            StreamLimitService.Lease streamLease = streamLimitService.acquire(convertedUserId, movieId);
+            if (streamLease != null) {
+                req.setAttribute(StreamLimitService.LEASE_ATTRIBUTE, streamLease);
+            }
+            ViewerStatsService.Viewing viewing = viewerStatsService.open(convertedUserId, movieId);
+            if (viewing != null) {
+                req.setAttribute(ViewerStatsService.VIEWING_ATTRIBUTE, viewing);
+            }
+            
+            // ?t=<seconds> without a Range header: start at the keyframe for that time
+            if (rangeHeader == null && seekSeconds != null) {
+                rangeHeader = seekRange(videoInfo, seekSeconds);
+            }
+            
             // Handle range requests for video seeking
-            if (rangeHeader != null && rangeHeader.startsWith("bytes=")) {
-                return handleRangeRequest(videoFile, rangeHeader, fileSize, contentType);
+            if (rangeHeader != null && rangeHeader.startsWith("bytes=") && isRangeApplicable(req, videoInfo)) {
+                return handleRangeRequest(videoInfo, rangeHeader, req, convertedUserId, pacer);
             }
             // Full file streaming
-            return createFullStreamResponse(videoFile, fileSize, contentType);
+            return createFullStreamResponse(videoInfo, req, convertedUserId, pacer);
+        } catch (StreamLimitExceededException e) {
+            throw e; // 429 with a body, see GlobalExceptionHandler
+        } catch (VideoNotFoundException e) {
+            return ResponseEntity.notFound().build();
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
     
-    private ResponseEntity<StreamingResponseBody> createFullStreamResponse(File videoFile, long fileSize, String contentType) {
-        StreamingResponseBody responseBody = outputStream -> {
-            try (BufferedInputStream inputStream = new BufferedInputStream(new FileInputStream(videoFile), movieConfig.getStreaming().getBufferSizeBytes())) {
-                byte[] buffer = new byte[movieConfig.getStreaming().getBufferSizeBytes()]; // Configurable chunks for better performance
-                int bytesRead;
-
-                while ((bytesRead = inputStream.read(buffer)) != -1) {
-                    outputStream.write(buffer, 0, bytesRead);
+    @GetMapping("/{movieId}/seek")
+    public ResponseEntity<?> seek(@PathVariable Long movieId, @RequestParam(value = "t", required = false) Double seconds, @RequestHeader(value = "X-User-Id", required = false) String userId, @RequestParam(value = "userId", required = false) String userIdParam) {
+        if (seconds == null || seconds.isNaN() || seconds < 0) {
+            return ResponseEntity.badRequest().body(Map.of(
+                "success", false,
+                "message", movieConfig.getMessages().getInvalidSeekTime()
+            ));
+        }
+        try {
+            String effectiveUserId = userId != null ? userId : userIdParam;
+            if (effectiveUserId == null || effectiveUserId.trim().isEmpty()) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of(
+                    "success", false,
+                    "message", movieConfig.getMessages().getUserNotAuthenticated()
+                ));
+            }
+            VideoInfo videoInfo = videoStreamingService.getVideoInfo(movieId, Long.valueOf(effectiveUserId.trim()));
+            SeekPosition position = videoSeekService.seek(videoInfo, seconds);
+            return ResponseEntity.ok()
+                .header("Cache-Control", "public, max-age=" + movieConfig.getStreaming().getCacheMaxAgeSeconds())
+                .eTag(videoInfo.getEtag())
+                .header("Access-Control-Allow-Origin", "*")
+                .body(Map.of(
+                    "success", true,
+                    "data", position
+                ));
+        } catch (Mp4FormatException e) {
+            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).body(Map.of(
+                "success", false,
+                "message", e.getMessage()
+            ));
+        } catch (VideoNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of(
+                "success", false,
+                "message", e.getMessage()
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
+                "success", false,
+                "message", movieConfig.getMessages().getGeneralError(),
+                "error", String.valueOf(e.getMessage())
+            ));
+        }
+    }
+    
+    @GetMapping("/{movieId}/playlist.m3u8")
+    public ResponseEntity<?> getHlsPlaylist(@PathVariable Long movieId, @RequestHeader(value = "X-User-Id", required = false) String userId, @RequestParam(value = "userId", required = false) String userIdParam) {
+        try {
+            String effectiveUserId = userId != null ? userId : userIdParam;
+            if (effectiveUserId == null || effectiveUserId.trim().isEmpty()) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of(
+                    "success", false,
+                    "message", movieConfig.getMessages().getUserNotAuthenticated()
+                ));
+            }
+            VideoInfo videoInfo = videoStreamingService.getVideoInfo(movieId, Long.valueOf(effectiveUserId.trim()));
+            // Segment URIs are relative to this playlist and carry the userId of a header-less player
+            String query = userIdParam != null ? "?userId=" + userIdParam.trim() : "";
+            String playlist = hlsPlaylistService.buildMediaPlaylist(videoInfo, query);
+            return ResponseEntity.ok()
+                .header("Content-Type", movieConfig.getHls().getPlaylistContentType())
+                .header("Cache-Control", "public, max-age=" + movieConfig.getStreaming().getCacheMaxAgeSeconds())
+                .header("Access-Control-Allow-Origin", "*")
+                .body(playlist);
+        } catch (Mp4FormatException e) {
+            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).body(Map.of(
+                "success", false,
+                "message", e.getMessage()
+            ));
+        } catch (VideoNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of(
+                "success", false,
+                "message", e.getMessage()
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
+                "success", false,
+                "message", movieConfig.getMessages().getGeneralError(),
+                "error", String.valueOf(e.getMessage())
+            ));
+        }
+    }
+    
+    @GetMapping("/{movieId}/hls/init.mp4")
+    public ResponseEntity<?> getHlsInitSegment(@PathVariable Long movieId, @RequestHeader(value = "X-User-Id", required = false) String userId, @RequestParam(value = "userId", required = false) String userIdParam) {
+        try {
+            String effectiveUserId = userId != null ? userId : userIdParam;
+            if (effectiveUserId == null || effectiveUserId.trim().isEmpty()) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of(
+                    "success", false,
+                    "message", movieConfig.getMessages().getUserNotAuthenticated()
+                ));
+            }
+            VideoInfo videoInfo = videoStreamingService.getVideoInfo(movieId, Long.valueOf(effectiveUserId.trim()));
+            byte[] init = hlsPlaylistService.getInitSegment(videoInfo);
+            return ResponseEntity.ok()
+                .header("Content-Type", "video/mp4")
+                .header("Cache-Control", "public, max-age=" + movieConfig.getStreaming().getCacheMaxAgeSeconds())
+                .header("Access-Control-Allow-Origin", "*")
+                .body(init);
+        } catch (Mp4FormatException e) {
+            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).body(Map.of(
+                "success", false,
+                "message", e.getMessage()
+            ));
+        } catch (VideoNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of(
+                "success", false,
+                "message", e.getMessage()
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
+                "success", false,
+                "message", movieConfig.getMessages().getGeneralError(),
+                "error", String.valueOf(e.getMessage())
+            ));
+        }
+    }
+
+    /**
+     * One fMP4 media segment of the playlist: a generated moof, then the segment's samples
+     * copied from the stored file. Segments are what an HLS viewer actually streams, so
+     * they hold a stream slot, count as watching and are paced like /stream.
+     */
+    @GetMapping("/{movieId}/hls/{sequence}.m4s")
+    public ResponseEntity<?> getHlsSegment(@PathVariable Long movieId, @PathVariable int sequence, @RequestHeader(value = "X-User-Id", required = false) String userId, @RequestParam(value = "userId", required = false) String userIdParam, HttpServletRequest req) {
+        try {
+            String effectiveUserId = userId != null ? userId : userIdParam;
+            if (effectiveUserId == null || effectiveUserId.trim().isEmpty()) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of(
+                    "success", false,
+                    "message", movieConfig.getMessages().getUserNotAuthenticated()
+                ));
+            }
+            Long convertedUserId = Long.valueOf(effectiveUserId.trim());
+            VideoInfo videoInfo = videoStreamingService.getVideoInfo(movieId, convertedUserId);
+            Mp4Fragmenter.Fragment fragment = hlsPlaylistService.getFragment(videoInfo, sequence);
+            BandwidthPacer pacer = bandwidthPacingService.pacerFor(convertedUserId);
+            
+            // Same slot and viewer as /stream, released by StreamLeaseRequestListener
+            StreamLimitService.Lease streamLease = streamLimitService.acquire(convertedUserId, movieId);
+            if (streamLease != null) {
+                req.setAttribute(StreamLimitService.LEASE_ATTRIBUTE, streamLease);
+            }
+            ViewerStatsService.Viewing viewing = viewerStatsService.open(convertedUserId, movieId);
+            if (viewing != null) {
+                req.setAttribute(ViewerStatsService.VIEWING_ATTRIBUTE, viewing);
+            }
+            StreamingResponseBody body = outputStream -> {
+                try {
+                    hlsPlaylistService.writeFragment(videoInfo, fragment, paced(outputStream, pacer));
+                } catch (IOException e) {
+                    if (!ClientAborts.isClientAbort(e)) {
+                        throw new RuntimeException(movieConfig.getMessages().getStreamingError(), e);
+                    }
                 }
-                outputStream.flush();
-            } catch (Exception e) {
-                throw new RuntimeException(movieConfig.getMessages().getStreamingError(), e);
+            };
+            return ResponseEntity.ok()
+                .header("Content-Type", "video/mp4")
+                .header("Content-Length", String.valueOf(fragment.getLength()))
+                .header("Cache-Control", "public, max-age=" + movieConfig.getStreaming().getCacheMaxAgeSeconds())
+                .header("Access-Control-Allow-Origin", "*")
+                .body(body);
+        } catch (Mp4FormatException e) {
+            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).body(Map.of(
+                "success", false,
+                "message", e.getMessage()
+            ));
+        } catch (StreamLimitExceededException e) {
+            throw e; // 429 with a body, see GlobalExceptionHandler
+        } catch (VideoNotFoundException | SegmentNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of(
+                "success", false,
+                "message", e.getMessage()
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
+                "success", false,
+                "message", movieConfig.getMessages().getGeneralError(),
+                "error", String.valueOf(e.getMessage())
+            ));
+        }
+    }
+
+    @GetMapping("/{movieId}/thumbnail")
+    public ResponseEntity<?> getThumbnail(@PathVariable Long movieId, @RequestParam(value = "w", required = false) Integer width, HttpServletRequest req) {
+        if (width != null && width <= 0) {
+            return ResponseEntity.badRequest().body(Map.of(
+                "success", false,
+                "message", movieConfig.getMessages().getInvalidThumbnailWidth()
+            ));
+        }
+        try {
+            Optional<Movie> movie = movieService.getMovieById(movieId);
+            if (movie.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of(
+                    "success", false,
+                    "message", movieConfig.getMessages().getMovieNotFound()
+                ));
             }
-        };
+            ThumbnailService.Thumbnail thumbnail = thumbnailService.getThumbnail(movie.get(), width);
+            // The source image stands in while a variant renders, don't let clients keep it
+            String cacheControl = thumbnail.isFallback() ? "no-cache"
+                : "public, max-age=" + movieConfig.getThumbnails().getCacheMaxAgeSeconds();
+            String ifNoneMatch = req.getHeader("If-None-Match");
+            if (ifNoneMatch != null && ConditionalRequests.matchesEtag(ifNoneMatch, thumbnail.getEtag(), false)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(thumbnail.getEtag())
+                    .header("Cache-Control", cacheControl)
+                    .build();
+            }
+            return ResponseEntity.ok()
+                .header("Content-Type", thumbnail.getContentType())
+                .header("Cache-Control", cacheControl)
+                .eTag(thumbnail.getEtag())
+                .lastModified(thumbnail.getLastModified())
+                .body(thumbnail.getBytes());
+        } catch (ThumbnailNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of(
+                "success", false,
+                "message", e.getMessage()
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
+                "success", false,
+                "message", movieConfig.getMessages().getGeneralError(),
+                "error", String.valueOf(e.getMessage())
+            ));
+        }
+    }
+    
+    private ResponseEntity<StreamingResponseBody> createFullStreamResponse(VideoInfo videoInfo, HttpServletRequest req, Long userId, BandwidthPacer pacer) {
+        long fileSize = videoInfo.getFileSize();
+        String contentType = videoInfo.getContentType();
+        StreamingResponseBody responseBody = null;
+        streamingMetricsService.recordResponse(contentType, StreamingMetricsService.FULL);
+        WatchProgressService.Tracker progress = watchProgressService.track(userId, videoInfo, 0);
+        if (trySendfile(req, videoInfo, 0, fileSize, pacer)) {
+            streamingMetricsService.recordSendfile(contentType, StreamingMetricsService.FULL, fileSize);
+        } else {
+            responseBody = streamBody(videoInfo, StreamingMetricsService.FULL, readAheadService.begin(userId, videoInfo, 0),
+                    progress, pacer, movieConfig.getMessages().getStreamingError(), (channel, target) -> copyRegion(channel, 0, fileSize, target));
+        }
         
         return ResponseEntity.ok()
             .header("Content-Type", contentType)
             .header("Content-Length", String.valueOf(fileSize))
             .header("Accept-Ranges", "bytes")
             .header("Cache-Control", "public, max-age=" + movieConfig.getStreaming().getCacheMaxAgeSeconds())
+            .eTag(videoInfo.getEtag())
+            .lastModified(videoInfo.getLastModified())
             .header("Access-Control-Allow-Origin", "*")
             .header("Access-Control-Allow-Methods", "GET, HEAD, OPTIONS")
             .header("Access-Control-Allow-Headers", "Range, Content-Type, Accept, Origin, X-Requested-With, X-User-Id")
-            .header("Access-Control-Expose-Headers", "Content-Length, Content-Range, Accept-Ranges")
+            .header("Access-Control-Expose-Headers", "Content-Length, Content-Range, Accept-Ranges, ETag, Last-Modified")
             .body(responseBody);
     }
 
-    private ResponseEntity<StreamingResponseBody> handleRangeRequest(File videoFile, String rangeHeader, long fileSize, String contentType) {
+    private ResponseEntity<StreamingResponseBody> handleRangeRequest(VideoInfo videoInfo, String rangeHeader, HttpServletRequest req, Long userId, BandwidthPacer pacer) {
         try {
-            // Parse range header: "bytes=start-end"
-            String rangeValue = rangeHeader.replace("bytes=", "").trim();
-            String[] ranges = rangeValue.split("-");
-            
-            long tempStart = 0;
-            long tempEnd = fileSize - 1;
-            
+            long fileSize = videoInfo.getFileSize();
+            String contentType = videoInfo.getContentType();
+
+            // Parse range header: "bytes=start-end[, start-end...]"
+            List<ByteRange> ranges;
             try {
-                if (!ranges[0].isEmpty()) {
-                    tempStart = Long.parseLong(ranges[0]);
-                }
-                if (ranges.length > 1 && !ranges[1].isEmpty()) {
-                    tempEnd = Long.parseLong(ranges[1]);
-                }
-            } catch (NumberFormatException e) {
+                ranges = ByteRange.parse(rangeHeader, fileSize);
+            } catch (IllegalArgumentException e) {
+                streamingMetricsService.recordResponse(contentType, StreamingMetricsService.UNSATISFIABLE);
                 return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
                     .header("Content-Range", "bytes */" + fileSize)
                     .build();
             }
 
-            // Validate range bounds
-            if (tempStart < 0 || tempEnd >= fileSize || tempStart > tempEnd) {
+            // None of the requested ranges overlap the file
+            if (ranges.isEmpty()) {
+                streamingMetricsService.recordResponse(contentType, StreamingMetricsService.UNSATISFIABLE);
                 return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
                     .header("Content-Range", "bytes */" + fileSize)
                     .build();
             }
+            for (ByteRange range : ranges) {
+                streamingMetricsService.recordRangeSize(contentType, range.length());
+            }
+            if (ranges.size() > 1) {
+                return createMultipartRangeResponse(videoInfo, ranges, pacer);
+            }
             
-            final long start = tempStart;
-            final long end = tempEnd;
+            final long start = ranges.get(0).getStart();
+            final long end = ranges.get(0).getEnd();
             long contentLength = end - start + 1;
             
-            StreamingResponseBody responseBody = outputStream -> {
-                try (RandomAccessFile randomAccessFile = new RandomAccessFile(videoFile, "r")) {
-                    randomAccessFile.seek(start);
-
-                    byte[] buffer = new byte[16384]; // 16KB chunks for better performance
-                    long bytesToRead = contentLength;
-                    
-                    while (bytesToRead > 0) {
-                        int chunkSize = (int) Math.min(buffer.length, bytesToRead);
-                        int bytesRead = randomAccessFile.read(buffer, 0, chunkSize);
-                        if (bytesRead == -1) break;
-                        
-                        outputStream.write(buffer, 0, bytesRead);
-                        bytesToRead -= bytesRead;
-                    }
-                    outputStream.flush();
-                } catch (Exception e) {
-                    throw new RuntimeException("Error streaming video range", e);
-                }
-            };
+            StreamingResponseBody responseBody = null;
+            streamingMetricsService.recordResponse(contentType, StreamingMetricsService.PARTIAL);
+            WatchProgressService.Tracker progress = watchProgressService.track(userId, videoInfo, start);
+            if (trySendfile(req, videoInfo, start, end + 1, pacer)) {
+                streamingMetricsService.recordSendfile(contentType, StreamingMetricsService.PARTIAL, contentLength);
+            } else {
+                responseBody = streamBody(videoInfo, StreamingMetricsService.PARTIAL, readAheadService.begin(userId, videoInfo, start),
+                        progress, pacer, movieConfig.getMessages().getStreamingRangeError(), (channel, target) -> copyRegion(channel, start, contentLength, target));
+            }
             
             return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
                 .header("Content-Type", contentType)
@@ -304,10 +644,12 @@ public class MovieController {
                 .header("Content-Range", String.format("bytes %d-%d/%d", start, end, fileSize))
                 .header("Accept-Ranges", "bytes")
                 .header("Cache-Control", "public, max-age=" + movieConfig.getStreaming().getCacheMaxAgeSeconds())
+                .eTag(videoInfo.getEtag())
+                .lastModified(videoInfo.getLastModified())
                 .header("Access-Control-Allow-Origin", "*")
                 .header("Access-Control-Allow-Methods", "GET, HEAD, OPTIONS")
                 .header("Access-Control-Allow-Headers", "Range, Content-Type, Accept, Origin, X-Requested-With, X-User-Id")
-                .header("Access-Control-Expose-Headers", "Content-Length, Content-Range, Accept-Ranges")
+                .header("Access-Control-Expose-Headers", "Content-Length, Content-Range, Accept-Ranges, ETag, Last-Modified")
                 .body(responseBody);
                 
         } catch (Exception e) {
@@ -315,14 +657,202 @@ public class MovieController {
         }
     }
 
+    /**
+     * Serve several ranges in one multipart/byteranges response (RFC 7233 section 4.1)
+     * so probing clients don't need a round trip per range.
+     */
+    private ResponseEntity<StreamingResponseBody> createMultipartRangeResponse(VideoInfo videoInfo, List<ByteRange> ranges, BandwidthPacer pacer) {
+        long fileSize = videoInfo.getFileSize();
+        String contentType = videoInfo.getContentType();
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        long contentLength = 0;
+        for (ByteRange range : ranges) {
+            byte[] partHeader = range.partHeader(boundary, contentType, fileSize);
+            partHeaders.add(partHeader);
+            contentLength += partHeader.length + range.length();
+        }
+        byte[] closingBoundary = ByteRange.closingBoundary(boundary);
+        contentLength += closingBoundary.length;
+
+        streamingMetricsService.recordResponse(contentType, StreamingMetricsService.MULTIPART);
+        StreamingResponseBody responseBody = streamBody(videoInfo, StreamingMetricsService.MULTIPART, null, null, pacer, movieConfig.getMessages().getStreamingRangeError(),
+                (channel, target) -> {
+                    for (int i = 0; i < ranges.size(); i++) {
+                        target.write(partHeaders.get(i));
+                        copyRegion(channel, ranges.get(i).getStart(), ranges.get(i).length(), target);
+                    }
+                    target.write(closingBoundary);
+                });
+
+        return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+            .header("Content-Type", "multipart/byteranges; boundary=" + boundary)
+            .header("Content-Length", String.valueOf(contentLength))
+            .header("Accept-Ranges", "bytes")
+            .header("Cache-Control", "public, max-age=" + movieConfig.getStreaming().getCacheMaxAgeSeconds())
+            .eTag(videoInfo.getEtag())
+            .lastModified(videoInfo.getLastModified())
+            .header("Access-Control-Allow-Origin", "*")
+            .header("Access-Control-Allow-Methods", "GET, HEAD, OPTIONS")
+            .header("Access-Control-Allow-Headers", "Range, Content-Type, Accept, Origin, X-Requested-With, X-User-Id")
+            .header("Access-Control-Expose-Headers", "Content-Length, Content-Range, Accept-Ranges, ETag, Last-Modified")
+            .body(responseBody);
+    }
+
+    private ResponseEntity<StreamingResponseBody> createNotModifiedResponse(VideoInfo videoInfo) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+            .eTag(videoInfo.getEtag())
+            .lastModified(videoInfo.getLastModified())
+            .header("Cache-Control", "public, max-age=" + movieConfig.getStreaming().getCacheMaxAgeSeconds())
+            .header("Access-Control-Allow-Origin", "*")
+            .header("Access-Control-Expose-Headers", "Content-Length, Content-Range, Accept-Ranges, ETag, Last-Modified")
+            .build();
+    }
+
+    /**
+     * RFC 7232 evaluation for GET/HEAD: If-None-Match wins over If-Modified-Since.
+     */
+    private boolean isNotModified(HttpServletRequest req, VideoInfo videoInfo) {
+        return ConditionalRequests.isNotModified(req.getHeader("If-None-Match"), parseDateHeader(req, "If-Modified-Since"),
+                videoInfo.getEtag(), videoInfo.getLastModified());
+    }
+
+    private boolean isRangeApplicable(HttpServletRequest req, VideoInfo videoInfo) {
+        return ConditionalRequests.isRangeApplicable(req.getHeader("If-Range"), parseDateHeader(req, "If-Range"),
+                videoInfo.getEtag(), videoInfo.getLastModified());
+    }
+
+    private long parseDateHeader(HttpServletRequest req, String name) {
+        try {
+            return req.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Range header equivalent of ?t=, or null to stream from the start when the
+     * time is invalid or the container has no sample index.
+     */
+    private String seekRange(VideoInfo videoInfo, double seconds) {
+        if (Double.isNaN(seconds) || seconds <= 0) {
+            return null;
+        }
+        try {
+            return videoSeekService.seek(videoInfo, seconds).getRange();
+        } catch (Mp4FormatException e) {
+            return null;
+        }
+    }
+
+    private boolean isZeroCopy() {
+        return movieConfig.getStreaming().getTransferMode() == MovieConfiguration.Streaming.TransferMode.ZERO_COPY;
+    }
+
+    /**
+     * Hand the region [start, end) to Tomcat's sendfile so the kernel copies it
+     * straight from the page cache to the socket. Must run before the response is committed.
+     *
+     * The kernel can't be paced, so paced streams always use a body writer. Nor can it
+     * serve a faststart view, whose bytes don't match the file, or a video without a local file.
+     * Streams holding a limit slot skip it too: the container finishes a sendfile after the
+     * request is released, the slot would be free while the bytes are still going out.
+     *
+     * @return true when the connector accepted the region, false to fall back to a body writer
+     */
+    private boolean trySendfile(HttpServletRequest req, VideoInfo videoInfo, long start, long end, BandwidthPacer pacer) {
+        if (!isZeroCopy() || pacer != null || videoInfo.getFile() == null || videoInfo.getFaststartView() != null || !movieConfig.getStreaming().isSendfileEnabled()
+                || !Boolean.TRUE.equals(req.getAttribute(SENDFILE_SUPPORT_ATTR)) || req.getAttribute(StreamLimitService.LEASE_ATTRIBUTE) != null) {
+            return false;
+        }
+        try {
+            req.setAttribute(SENDFILE_FILENAME_ATTR, videoInfo.getFile().getCanonicalPath());
+        } catch (IOException e) {
+            return false;
+        }
+        req.setAttribute(SENDFILE_START_ATTR, start);
+        req.setAttribute(SENDFILE_END_ATTR, end); // exclusive
+        return true;
+    }
+
+    /**
+     * Writes a response body from an already opened channel.
+     */
+    @FunctionalInterface
+    private interface BodyWriter {
+        void write(FileChannelCache.Lease channel, OutputStream target) throws IOException;
+    }
+
+    /**
+     * Common body for every streamed response: leases the file's shared channel, meters
+     * and paces the output, and releases the lease whether or not the client stayed connected.
+     * The first failed write ends the copy loop, so no further disk reads happen
+     * once the client is gone.
+     *
+     * A read-ahead session serves what was prefetched for the viewer, keeps prefetching
+     * ahead of a body that keeps reading and learns where the body stopped.
+     * A progress tracker learns how far the body got, whether it completed or was aborted.
+     */
+    private StreamingResponseBody streamBody(VideoInfo videoInfo, String responseType, ReadAheadService.Session readAhead,
+                                             WatchProgressService.Tracker progress, BandwidthPacer pacer, String errorMessage, BodyWriter writer) {
+        long requestStart = System.nanoTime();
+        return outputStream -> {
+            StreamingMetricsService.StreamRecording recording = streamingMetricsService.startStream(videoInfo.getContentType(), responseType, requestStart);
+            try (FileChannelCache.Lease channel = fileChannelCache.acquire(videoInfo)) {
+                OutputStream target = paced(recording.wrap(outputStream), pacer);
+                channel.setReadAhead(readAhead);
+                writer.write(channel, target);
+                target.flush();
+            } catch (Exception e) {
+                if (ClientAborts.isClientAbort(e)) {
+                    // Seeks and closed tabs land here: the lease is released below and
+                    // there is nobody left to answer, so don't wrap, rethrow or log it
+                    recording.aborted();
+                    return;
+                }
+                recording.failed();
+                throw new RuntimeException(errorMessage, e);
+            } finally {
+                recording.finish();
+                if (readAhead != null) {
+                    readAhead.ended(recording.getBytesWritten());
+                }
+                if (progress != null) {
+                    progress.reached(recording.getBytesWritten());
+                }
+            }
+        };
+    }
+
+    private OutputStream paced(OutputStream outputStream, BandwidthPacer pacer) {
+        return pacer != null ? new PacedOutputStream(outputStream, pacer) : outputStream;
+    }
+
+    /**
+     * Copy [start, start + length) of the channel to the response through a heap buffer.
+     * Used whenever sendfile isn't possible, ZERO_COPY included: transferTo into a channel
+     * wrapping the servlet stream copies through the heap all the same.
+     */
+    private void copyRegion(FileChannelCache.Lease channel, long start, long length, OutputStream outputStream) throws IOException {
+        long position = start;
+        long remaining = length;
+        ByteBuffer buffer = ByteBuffer.allocate(movieConfig.getStreaming().getBufferSizeBytes()); // Configurable chunks for better performance
+        while (remaining > 0) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), remaining));
+            int bytesRead = channel.read(buffer, position);
+            if (bytesRead == -1) break;
+
+            outputStream.write(buffer.array(), 0, bytesRead);
+            position += bytesRead;
+            remaining -= bytesRead;
+        }
+    }
+
     // Temporary endpoint for testing video streaming without authentication
     @RequestMapping(value = "/{movieId}/stream-test", method = {org.springframework.web.bind.annotation.RequestMethod.GET, org.springframework.web.bind.annotation.RequestMethod.HEAD, org.springframework.web.bind.annotation.RequestMethod.OPTIONS})
     public ResponseEntity<StreamingResponseBody> streamVideoTest(@PathVariable Long movieId, @RequestHeader(value = "Range", required = false) String rangeHeader, HttpServletRequest req) {
         
-        System.out.println("=== VIDEO STREAMING DEBUG ===");
-        System.out.println("Movie ID: " + movieId);
-        System.out.println("Method: " + req.getMethod());
-        System.out.println("Range Header: " + rangeHeader);
+        log.debug("stream-test {} movie {} range {}", req.getMethod(), movieId, rangeHeader);
         
         // Handle OPTIONS preflight request
         if ("OPTIONS".equals(req.getMethod())) {
@@ -330,7 +860,7 @@ public class MovieController {
                 .header("Access-Control-Allow-Origin", "*")
                 .header("Access-Control-Allow-Methods", "GET, HEAD, OPTIONS")
                 .header("Access-Control-Allow-Headers", "Range, Content-Type, Accept, Origin, X-Requested-With")
-                .header("Access-Control-Expose-Headers", "Content-Length, Content-Range, Accept-Ranges")
+                .header("Access-Control-Expose-Headers", "Content-Length, Content-Range, Accept-Ranges, ETag, Last-Modified")
                 .header("Access-Control-Max-Age", "3600")
                 .build();
         }
@@ -339,44 +869,46 @@ public class MovieController {
             // Use dummy user ID for testing - REMOVE IN PRODUCTION
             Long testUserId = movieConfig.getTesting().getTestUserId();
             VideoInfo videoInfo = videoStreamingService.getVideoInfo(movieId, testUserId);
+            BandwidthPacer pacer = bandwidthPacingService.pacerFor(testUserId);
             
             if (videoInfo == null) {
-                System.out.println("ERROR: VideoInfo is null");
                 return ResponseEntity.notFound().build();
             }
-            File videoFile = videoInfo.getFile();
-            long fileSize = videoFile.length();
+            long fileSize = videoInfo.getFileSize();
             String contentType = videoInfo.getContentType();
             
-            System.out.println("Video File Path: " + videoFile.getAbsolutePath());
-            System.out.println("File Exists: " + videoFile.exists());
-            System.out.println("File Size: " + fileSize + " bytes");
-            System.out.println("Content Type: " + contentType);
-            System.out.println("File Name: " + videoFile.getName());
+            if (isNotModified(req, videoInfo)) {
+                streamingMetricsService.recordResponse(contentType, StreamingMetricsService.NOT_MODIFIED);
+                return createNotModifiedResponse(videoInfo);
+            }
             
             // Handle HEAD requests - return headers only
             if ("HEAD".equals(req.getMethod())) {
+                streamingMetricsService.recordResponse(contentType, StreamingMetricsService.HEAD);
                 return ResponseEntity.ok()
                     .header("Content-Type", contentType)
                     .header("Content-Length", String.valueOf(fileSize))
                     .header("Accept-Ranges", "bytes")
                     .header("Cache-Control", "public, max-age=" + movieConfig.getStreaming().getCacheMaxAgeSeconds())
+                    .eTag(videoInfo.getEtag())
+                    .lastModified(videoInfo.getLastModified())
                     .header("Access-Control-Allow-Origin", "*")
                     .header("Access-Control-Allow-Methods", "GET, HEAD, OPTIONS")
                     .header("Access-Control-Allow-Headers", "Range, Content-Type, Accept, Origin, X-Requested-With")
-                    .header("Access-Control-Expose-Headers", "Content-Length, Content-Range, Accept-Ranges")
+                    .header("Access-Control-Expose-Headers", "Content-Length, Content-Range, Accept-Ranges, ETag, Last-Modified")
                     .build();
             }
             
             // Handle range requests for video seeking
-            if (rangeHeader != null && rangeHeader.startsWith("bytes=")) {
-                return handleRangeRequest(videoFile, rangeHeader, fileSize, contentType);
+            if (rangeHeader != null && rangeHeader.startsWith("bytes=") && isRangeApplicable(req, videoInfo)) {
+                return handleRangeRequest(videoInfo, rangeHeader, req, testUserId, pacer);
             }
             // Full file streaming
-            return createFullStreamResponse(videoFile, fileSize, contentType);
+            return createFullStreamResponse(videoInfo, req, testUserId, pacer);
+        } catch (VideoNotFoundException e) {
+            return ResponseEntity.notFound().build();
         } catch (Exception e) {
-            System.out.println("ERROR in stream-test: " + e.getMessage());
-            e.printStackTrace();
+            log.warn("stream-test of movie {} failed", movieId, e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
@@ -0,0 +1,74 @@
+package com.gugugaga.movie.controller;
+import com.gugugaga.movie.config.MovieConfiguration;
+import com.gugugaga.movie.entity.PackagingJob;
+import com.gugugaga.movie.service.MovieService;
+import com.gugugaga.movie.service.PackagingService;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/api/movies/{movieId}/packaging")
+public class PackagingController {
+    private final PackagingService packagingService;
+    private final MovieService movieService;
+    private final MovieConfiguration movieConfig;
+
+    public PackagingController(PackagingService packagingService, MovieService movieService, MovieConfiguration movieConfig) {
+        this.packagingService = packagingService;
+        this.movieService = movieService;
+        this.movieConfig = movieConfig;
+    }
+
+    @PostMapping
+    public ResponseEntity<?> submitJob(@PathVariable Long movieId) {
+        try {
+            if (movieService.getMovieById(movieId).isEmpty()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of(
+                        "success", false,
+                        "message", movieConfig.getMessages().getMovieNotFound(),
+                        "id", movieId
+                ));
+            }
+            PackagingJob job = packagingService.submit(movieId);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of(
+                    "success", true,
+                    "data", job
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
+                    "success", false,
+                    "message", movieConfig.getMessages().getGeneralError(),
+                    "error", String.valueOf(e.getMessage())
+            ));
+        }
+    }
+
+    @GetMapping
+    public ResponseEntity<?> getJobStatus(@PathVariable Long movieId) {
+        try {
+            Optional<PackagingJob> job = packagingService.getLatestJob(movieId);
+            if (job.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of(
+                        "success", false,
+                        "message", movieConfig.getMessages().getPackagingJobNotFound(),
+                        "id", movieId
+                ));
+            }
+            return ResponseEntity.ok(Map.of(
+                    "success", true,
+                    "data", job.get()
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
+                    "success", false,
+                    "message", movieConfig.getMessages().getGetDataError(),
+                    "error", String.valueOf(e.getMessage())
+            ));
+        }
+    }
+}
@@ -0,0 +1,423 @@
+package com.gugugaga.movie.controller;
+
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ReactiveHttpOutputMessage;
+import org.springframework.http.ZeroCopyHttpOutputMessage;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.reactive.function.BodyInserter;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import com.gugugaga.movie.config.MovieConfiguration;
+import com.gugugaga.movie.entity.VideoInfo;
+import com.gugugaga.movie.exception.Mp4FormatException;
+import com.gugugaga.movie.exception.StreamLimitExceededException;
+import com.gugugaga.movie.exception.VideoNotFoundException;
+import com.gugugaga.movie.service.BandwidthPacingService;
+import com.gugugaga.movie.service.FileChannelCache;
+import com.gugugaga.movie.service.ReadAheadService;
+import com.gugugaga.movie.service.StreamLimitService;
+import com.gugugaga.movie.service.StreamingMetricsService;
+import com.gugugaga.movie.service.VideoSeekService;
+import com.gugugaga.movie.service.VideoStreamingService;
+import com.gugugaga.movie.service.ViewerStatsService;
+import com.gugugaga.movie.service.WatchProgressService;
+import com.gugugaga.movie.util.BandwidthPacer;
+import com.gugugaga.movie.util.ByteRange;
+import com.gugugaga.movie.util.ConditionalRequests;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * /api/movies/{movieId}/stream on the reactive stack: the same ranges, preconditions,
+ * plan pacing and stream limits as MovieController, written by Netty event loops
+ * instead of a thread per viewer.
+ *
+ * Business Flow:
+ * 1. Blocking lookups (VideoInfo, plan, stream slot, seek index) run on boundedElastic
+ * 2. In ZERO_COPY transfer mode, local files without a faststart view or pacing are
+ *    handed to Netty as a file region (ZeroCopyHttpOutputMessage, sendfile)
+ * 3. Everything else is read chunk by chunk only as fast as the socket drains, through
+ *    the same FileChannelCache lease as the servlet stack: hot regions, read-ahead and
+ *    the hot ranking apply to both
+ * 4. The stream slot is released when the write completes, fails or is cancelled
+ */
+@Component
+@Profile("reactive-streaming")
+public class ReactiveStreamHandler {
+    private static final String ALLOW_HEADERS = "Range, Content-Type, Accept, Origin, X-Requested-With, X-User-Id";
+    private static final String EXPOSE_HEADERS = "Content-Length, Content-Range, Accept-Ranges, ETag, Last-Modified";
+
+    private final VideoStreamingService videoStreamingService;
+    private final VideoSeekService videoSeekService;
+    private final BandwidthPacingService bandwidthPacingService;
+    private final StreamLimitService streamLimitService;
+    private final StreamingMetricsService streamingMetricsService;
+    private final FileChannelCache fileChannelCache;
+    private final ReadAheadService readAheadService;
+    private final WatchProgressService watchProgressService;
+    private final ViewerStatsService viewerStatsService;
+    private final MovieConfiguration movieConfig;
+
+    public ReactiveStreamHandler(VideoStreamingService videoStreamingService, VideoSeekService videoSeekService,
+                                 BandwidthPacingService bandwidthPacingService, StreamLimitService streamLimitService,
+                                 StreamingMetricsService streamingMetricsService, FileChannelCache fileChannelCache,
+                                 ReadAheadService readAheadService, WatchProgressService watchProgressService, ViewerStatsService viewerStatsService, MovieConfiguration movieConfig) {
+        this.videoStreamingService = videoStreamingService;
+        this.videoSeekService = videoSeekService;
+        this.bandwidthPacingService = bandwidthPacingService;
+        this.streamLimitService = streamLimitService;
+        this.streamingMetricsService = streamingMetricsService;
+        this.fileChannelCache = fileChannelCache;
+        this.readAheadService = readAheadService;
+        this.watchProgressService = watchProgressService;
+        this.viewerStatsService = viewerStatsService;
+        this.movieConfig = movieConfig;
+    }
+
+    public Mono<ServerResponse> stream(ServerRequest request) {
+        Long movieId;
+        Long userId;
+        try {
+            movieId = Long.valueOf(request.pathVariable("movieId"));
+            String effectiveUserId = request.headers().firstHeader(movieConfig.getSecurity().getUserIdHeader());
+            if (effectiveUserId == null) {
+                effectiveUserId = request.queryParam("userId").orElse(null);
+            }
+            if (effectiveUserId == null || effectiveUserId.trim().isEmpty()) {
+                return ServerResponse.status(HttpStatus.UNAUTHORIZED).build();
+            }
+            userId = Long.valueOf(effectiveUserId.trim());
+        } catch (NumberFormatException e) {
+            return ServerResponse.badRequest().bodyValue(Map.of(
+                    "success", false,
+                    "message", movieConfig.getMessages().getInvalidUserIdFormat()
+            ));
+        }
+        return Mono.fromCallable(() -> videoStreamingService.getVideoInfo(movieId, userId))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(videoInfo -> respond(request, videoInfo, movieId, userId))
+                .onErrorResume(StreamLimitExceededException.class, e -> ServerResponse.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                        .bodyValue(Map.of(
+                                "success", false,
+                                "message", e.getMessage(),
+                                "maxStreams", e.getMaxStreams()
+                        )))
+                .onErrorResume(VideoNotFoundException.class, e -> ServerResponse.status(HttpStatus.NOT_FOUND).bodyValue(Map.of(
+                        "success", false,
+                        "message", e.getMessage()
+                )))
+                .onErrorResume(e -> ServerResponse.status(HttpStatus.INTERNAL_SERVER_ERROR).build());
+    }
+
+    private Mono<ServerResponse> respond(ServerRequest request, VideoInfo videoInfo, Long movieId, Long userId) {
+        HttpHeaders headers = request.headers().asHttpHeaders();
+        String contentType = videoInfo.getContentType();
+        if (ConditionalRequests.isNotModified(headers.getFirst(HttpHeaders.IF_NONE_MATCH), dateHeader(headers, HttpHeaders.IF_MODIFIED_SINCE),
+                videoInfo.getEtag(), videoInfo.getLastModified())) {
+            streamingMetricsService.recordResponse(contentType, StreamingMetricsService.NOT_MODIFIED);
+            return ServerResponse.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(videoInfo.getEtag())
+                    .lastModified(Instant.ofEpochMilli(videoInfo.getLastModified()))
+                    .header(HttpHeaders.CACHE_CONTROL, "public, max-age=" + movieConfig.getStreaming().getCacheMaxAgeSeconds())
+                    .header(HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, "*")
+                    .header(HttpHeaders.ACCESS_CONTROL_EXPOSE_HEADERS, EXPOSE_HEADERS)
+                    .build();
+        }
+        if (HttpMethod.HEAD.equals(request.method())) {
+            streamingMetricsService.recordResponse(contentType, StreamingMetricsService.HEAD);
+            return videoHeaders(ServerResponse.ok(), videoInfo, videoInfo.getFileSize()).build();
+        }
+        String rangeHeader = headers.getFirst(HttpHeaders.RANGE);
+        Double seekSeconds = request.queryParam("t").map(ReactiveStreamHandler::parseSeconds).orElse(null);
+        return Mono.fromCallable(() -> admit(videoInfo, movieId, userId, rangeHeader, seekSeconds))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(admission -> {
+                    String range = admission.rangeHeader;
+                    if (range != null && range.startsWith("bytes=") && ConditionalRequests.isRangeApplicable(headers.getFirst(HttpHeaders.IF_RANGE),
+                            dateHeader(headers, HttpHeaders.IF_RANGE), videoInfo.getEtag(), videoInfo.getLastModified())) {
+                        return rangeResponse(videoInfo, range, admission);
+                    }
+                    return fullResponse(videoInfo, admission);
+                });
+    }
+
+    /**
+     * Everything that may block before the first byte: plan lookup, a stream slot and the
+     * sample index for ?t=.
+     */
+    private Admission admit(VideoInfo videoInfo, Long movieId, Long userId, String rangeHeader, Double seekSeconds) {
+        StreamLimitService.Lease lease = streamLimitService.acquire(userId, movieId);
+        try {
+            BandwidthPacer pacer = bandwidthPacingService.pacerFor(userId);
+            if (rangeHeader == null && seekSeconds != null) {
+                rangeHeader = seekRange(videoInfo, seekSeconds);
+            }
+            return new Admission(userId, lease, viewerStatsService.open(userId, movieId), pacer, rangeHeader);
+        } catch (RuntimeException e) {
+            if (lease != null) {
+                lease.close();
+            }
+            throw e;
+        }
+    }
+
+    private Mono<ServerResponse> fullResponse(VideoInfo videoInfo, Admission admission) {
+        long fileSize = videoInfo.getFileSize();
+        streamingMetricsService.recordResponse(videoInfo.getContentType(), StreamingMetricsService.FULL);
+        WatchProgressService.Tracker progress = watchProgressService.track(admission.userId, videoInfo, 0);
+        return withLease(videoHeaders(ServerResponse.ok(), videoInfo, fileSize)
+                .body(region(videoInfo, 0, fileSize, StreamingMetricsService.FULL, admission, progress)), admission);
+    }
+
+    private Mono<ServerResponse> rangeResponse(VideoInfo videoInfo, String rangeHeader, Admission admission) {
+        long fileSize = videoInfo.getFileSize();
+        String contentType = videoInfo.getContentType();
+        List<ByteRange> ranges;
+        try {
+            ranges = ByteRange.parse(rangeHeader, fileSize);
+        } catch (IllegalArgumentException e) {
+            ranges = List.of();
+        }
+        if (ranges.isEmpty()) {
+            admission.release();
+            streamingMetricsService.recordResponse(contentType, StreamingMetricsService.UNSATISFIABLE);
+            return ServerResponse.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes */" + fileSize)
+                    .build();
+        }
+        for (ByteRange range : ranges) {
+            streamingMetricsService.recordRangeSize(contentType, range.length());
+        }
+        if (ranges.size() > 1) {
+            return multipartResponse(videoInfo, ranges, admission);
+        }
+        ByteRange range = ranges.get(0);
+        streamingMetricsService.recordResponse(contentType, StreamingMetricsService.PARTIAL);
+        WatchProgressService.Tracker progress = watchProgressService.track(admission.userId, videoInfo, range.getStart());
+        return withLease(videoHeaders(ServerResponse.status(HttpStatus.PARTIAL_CONTENT), videoInfo, range.length())
+                .header(HttpHeaders.CONTENT_RANGE, String.format("bytes %d-%d/%d", range.getStart(), range.getEnd(), fileSize))
+                .body(region(videoInfo, range.getStart(), range.length(), StreamingMetricsService.PARTIAL, admission, progress)), admission);
+    }
+
+    /**
+     * multipart/byteranges with the part headers MovieController writes, see ByteRange#partHeader.
+     */
+    private Mono<ServerResponse> multipartResponse(VideoInfo videoInfo, List<ByteRange> ranges, Admission admission) {
+        long fileSize = videoInfo.getFileSize();
+        String contentType = videoInfo.getContentType();
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        long contentLength = 0;
+        for (ByteRange range : ranges) {
+            byte[] partHeader = range.partHeader(boundary, contentType, fileSize);
+            partHeaders.add(partHeader);
+            contentLength += partHeader.length + range.length();
+        }
+        byte[] closingBoundary = ByteRange.closingBoundary(boundary);
+        contentLength += closingBoundary.length;
+
+        streamingMetricsService.recordResponse(contentType, StreamingMetricsService.MULTIPART);
+        BodyInserter<Void, ReactiveHttpOutputMessage> body = (message, context) -> {
+            DataBufferFactory factory = message.bufferFactory();
+            List<Flux<DataBuffer>> parts = new ArrayList<>();
+            for (int i = 0; i < ranges.size(); i++) {
+                byte[] partHeader = partHeaders.get(i);
+                parts.add(Flux.defer(() -> Flux.just(factory.wrap(partHeader))));
+                parts.add(read(videoInfo, ranges.get(i).getStart(), ranges.get(i).length(), factory, null));
+            }
+            parts.add(Flux.defer(() -> Flux.just(factory.wrap(closingBoundary))));
+            return message.writeWith(paced(Flux.concat(parts), admission.pacer))
+                    .doFinally(signal -> admission.release());
+        };
+        return withLease(videoHeaders(ServerResponse.status(HttpStatus.PARTIAL_CONTENT), videoInfo, contentLength)
+                .contentType(MediaType.parseMediaType("multipart/byteranges; boundary=" + boundary))
+                .body(body), admission);
+    }
+
+    /**
+     * Body for [start, start + length) of the served bytes.
+     *
+     * @param progress reports how far the body got once it ends, may be null
+     */
+    private BodyInserter<Void, ReactiveHttpOutputMessage> region(VideoInfo videoInfo, long start, long length, String responseType,
+                                                                 Admission admission, WatchProgressService.Tracker progress) {
+        return (message, context) -> {
+            AtomicLong written = new AtomicLong();
+            ReadAheadService.Session readAhead = null;
+            Mono<Void> write;
+            if (canZeroCopy(videoInfo, admission) && message instanceof ZeroCopyHttpOutputMessage zeroCopy) {
+                streamingMetricsService.recordSendfile(videoInfo.getContentType(), responseType, length);
+                // The kernel doesn't report progress, only a completed region counts
+                write = zeroCopy.writeWith(videoInfo.getFile().toPath(), start, length)
+                        .doOnSuccess(done -> written.set(length));
+            } else {
+                readAhead = readAheadService.begin(admission.userId, videoInfo, start);
+                write = message.writeWith(paced(read(videoInfo, start, length, message.bufferFactory(), readAhead), admission.pacer)
+                        .doOnNext(buffer -> written.addAndGet(buffer.readableByteCount())));
+            }
+            ReadAheadService.Session session = readAhead;
+            return write.doFinally(signal -> {
+                admission.release();
+                if (session != null) {
+                    session.ended(written.get());
+                }
+                if (progress != null) {
+                    progress.reached(written.get());
+                }
+            });
+        };
+    }
+
+    /**
+     * Only in ZERO_COPY transfer mode, like MovieController. The kernel can't be paced and
+     * can't serve a faststart view, whose bytes don't match the file, or a video without a
+     * local file.
+     */
+    private boolean canZeroCopy(VideoInfo videoInfo, Admission admission) {
+        MovieConfiguration.Streaming streaming = movieConfig.getStreaming();
+        return streaming.getTransferMode() == MovieConfiguration.Streaming.TransferMode.ZERO_COPY
+                && streaming.isSendfileEnabled() && admission.pacer == null
+                && videoInfo.getFile() != null && videoInfo.getFaststartView() == null;
+    }
+
+    /**
+     * Chunks are only read when Netty asks for more, so a slow viewer never has more
+     * than a few buffers of its movie in memory. Reads block, so they run on boundedElastic.
+     *
+     * @param readAhead the viewer's read-ahead session, may be null
+     */
+    private Flux<DataBuffer> read(VideoInfo videoInfo, long start, long length, DataBufferFactory factory, ReadAheadService.Session readAhead) {
+        int bufferSize = movieConfig.getStreaming().getBufferSizeBytes();
+        return Flux.using(() -> {
+                            FileChannelCache.Lease lease = fileChannelCache.acquire(videoInfo);
+                            lease.setReadAhead(readAhead);
+                            return lease;
+                        },
+                        channel -> Flux.<DataBuffer, Long>generate(() -> start, (position, sink) -> {
+                            long remaining = start + length - position;
+                            if (remaining <= 0) {
+                                sink.complete();
+                                return position;
+                            }
+                            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(bufferSize, remaining));
+                            try {
+                                int read = channel.read(buffer, position);
+                                if (read < 0) {
+                                    sink.error(new EOFException("Video berakhir sebelum posisi " + (start + length)));
+                                    return position;
+                                }
+                                buffer.flip();
+                                sink.next(factory.wrap(buffer));
+                                return position + read;
+                            } catch (Exception e) {
+                                sink.error(e);
+                                return position;
+                            }
+                        }),
+                        FileChannelCache.Lease::close)
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private Flux<DataBuffer> paced(Flux<DataBuffer> buffers, BandwidthPacer pacer) {
+        if (pacer == null) {
+            return buffers;
+        }
+        return buffers.concatMap(buffer -> {
+                    long waitNanos = pacer.reserve(buffer.readableByteCount());
+                    return waitNanos > 0 ? Mono.just(buffer).delayElement(Duration.ofNanos(waitNanos)) : Mono.just(buffer);
+                })
+                .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+    }
+
+    private Mono<ServerResponse> withLease(Mono<ServerResponse> response, Admission admission) {
+        // The body never runs when the exchange is cancelled before the response is written
+        return response.doOnCancel(admission::release).doOnError(e -> admission.release());
+    }
+
+    private ServerResponse.BodyBuilder videoHeaders(ServerResponse.BodyBuilder builder, VideoInfo videoInfo, long contentLength) {
+        return builder
+                .header(HttpHeaders.CONTENT_TYPE, videoInfo.getContentType())
+                .contentLength(contentLength)
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .header(HttpHeaders.CACHE_CONTROL, "public, max-age=" + movieConfig.getStreaming().getCacheMaxAgeSeconds())
+                .eTag(videoInfo.getEtag())
+                .lastModified(Instant.ofEpochMilli(videoInfo.getLastModified()))
+                .header(HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, "*")
+                .header(HttpHeaders.ACCESS_CONTROL_ALLOW_METHODS, "GET, HEAD, OPTIONS")
+                .header(HttpHeaders.ACCESS_CONTROL_ALLOW_HEADERS, ALLOW_HEADERS)
+                .header(HttpHeaders.ACCESS_CONTROL_EXPOSE_HEADERS, EXPOSE_HEADERS);
+    }
+
+    private String seekRange(VideoInfo videoInfo, double seconds) {
+        if (Double.isNaN(seconds) || seconds <= 0) {
+            return null;
+        }
+        try {
+            return videoSeekService.seek(videoInfo, seconds).getRange();
+        } catch (Mp4FormatException e) {
+            return null;
+        }
+    }
+
+    private static Double parseSeconds(String value) {
+        try {
+            return Double.valueOf(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static long dateHeader(HttpHeaders headers, String name) {
+        try {
+            return headers.getFirstDate(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    private static final class Admission {
+        private final Long userId;
+        private final StreamLimitService.Lease lease;
+        private final ViewerStatsService.Viewing viewing;
+        private final BandwidthPacer pacer;
+        private final String rangeHeader;
+
+        private Admission(Long userId, StreamLimitService.Lease lease, ViewerStatsService.Viewing viewing, BandwidthPacer pacer, String rangeHeader) {
+            this.userId = userId;
+            this.lease = lease;
+            this.viewing = viewing;
+            this.pacer = pacer;
+            this.rangeHeader = rangeHeader;
+        }
+
+        void release() {
+            if (lease != null) {
+                lease.close();
+            }
+            if (viewing != null) {
+                viewing.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.gugugaga.movie.controller;
+import com.gugugaga.movie.config.MovieConfiguration;
+import com.gugugaga.movie.dto.InitUploadRequest;
+import com.gugugaga.movie.dto.UploadStatus;
+import com.gugugaga.movie.exception.UploadSessionNotFoundException;
+import com.gugugaga.movie.service.UploadService;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * Resumable chunked upload of video files.
+ *
+ * POST /api/uploads starts a session, PUT /api/uploads/{id}/chunks/{index} sends a
+ * chunk with its SHA-256 in X-Chunk-Sha256 (chunks may be sent in parallel), GET
+ * /api/uploads/{id} lists what arrived and POST /api/uploads/{id}/complete moves the
+ * file into the library. The returned videoFileName is then used to create the movie.
+ */
+@RestController
+@RequestMapping("/api/uploads")
+public class UploadController {
+    private final UploadService uploadService;
+    private final MovieConfiguration movieConfig;
+
+    public UploadController(UploadService uploadService, MovieConfiguration movieConfig) {
+        this.uploadService = uploadService;
+        this.movieConfig = movieConfig;
+    }
+
+    @PostMapping
+    public ResponseEntity<?> initUpload(@Valid @RequestBody InitUploadRequest request) {
+        try {
+            UploadStatus status = uploadService.init(request.getFileName(), request.getSize(), request.getChunkSize());
+            return ResponseEntity.created(URI.create("/api/uploads/" + status.getUploadId())).body(Map.of(
+                    "success", true,
+                    "data", status
+            ));
+        } catch (Exception e) {
+            return errorResponse(e, movieConfig.getMessages().getCreateError());
+        }
+    }
+
+    @GetMapping("/{uploadId}")
+    public ResponseEntity<?> getUpload(@PathVariable String uploadId) {
+        try {
+            return ResponseEntity.ok(Map.of(
+                    "success", true,
+                    "data", uploadService.getStatus(uploadId)
+            ));
+        } catch (Exception e) {
+            return errorResponse(e, movieConfig.getMessages().getGetDataError());
+        }
+    }
+
+    @PutMapping("/{uploadId}/chunks/{index}")
+    public ResponseEntity<?> uploadChunk(@PathVariable String uploadId, @PathVariable int index, HttpServletRequest req) {
+        try {
+            String checksum = req.getHeader(movieConfig.getSecurity().getChunkChecksumHeader());
+            boolean written = uploadService.writeChunk(uploadId, index, req.getContentLengthLong(), checksum, req.getInputStream());
+            return ResponseEntity.ok(Map.of(
+                    "success", true,
+                    "message", movieConfig.getMessages().getSaveSuccess(),
+                    "index", index,
+                    "alreadyReceived", !written
+            ));
+        } catch (Exception e) {
+            return errorResponse(e, movieConfig.getMessages().getCreateError());
+        }
+    }
+
+    @PostMapping("/{uploadId}/complete")
+    public ResponseEntity<?> completeUpload(@PathVariable String uploadId) {
+        try {
+            String fileName = uploadService.complete(uploadId);
+            return ResponseEntity.ok(Map.of(
+                    "success", true,
+                    "message", movieConfig.getMessages().getSaveSuccess(),
+                    "videoFileName", fileName
+            ));
+        } catch (Exception e) {
+            return errorResponse(e, movieConfig.getMessages().getCreateError());
+        }
+    }
+
+    @DeleteMapping("/{uploadId}")
+    public ResponseEntity<?> abortUpload(@PathVariable String uploadId) {
+        try {
+            uploadService.abort(uploadId);
+            return ResponseEntity.ok(Map.of(
+                    "success", true,
+                    "message", movieConfig.getMessages().getDeleteSuccess()
+            ));
+        } catch (Exception e) {
+            return errorResponse(e, movieConfig.getMessages().getDeleteError());
+        }
+    }
+
+    private ResponseEntity<?> errorResponse(Exception e, String generalMessage) {
+        if (e instanceof UploadSessionNotFoundException) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of(
+                    "success", false,
+                    "message", e.getMessage()
+            ));
+        }
+        if (e instanceof IllegalArgumentException) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "message", e.getMessage()
+            ));
+        }
+        if (e instanceof IllegalStateException) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of(
+                    "success", false,
+                    "message", e.getMessage()
+            ));
+        }
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
+                "success", false,
+                "message", generalMessage,
+                "error", String.valueOf(e.getMessage())
+        ));
+    }
+}
@@ -0,0 +1,96 @@
+package com.gugugaga.movie.controller;
+import com.gugugaga.movie.config.MovieConfiguration;
+import com.gugugaga.movie.dto.ViewerSketches;
+import com.gugugaga.movie.service.ViewerStatsService;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Live and daily viewer counts from ViewerStatsService, plus the sketches to merge
+ * the counts of several nodes.
+ */
+@RestController
+public class ViewerStatsController {
+    private static final int MAX_LIMIT = 100;
+
+    private final ViewerStatsService viewerStatsService;
+    private final MovieConfiguration movieConfig;
+
+    public ViewerStatsController(ViewerStatsService viewerStatsService, MovieConfiguration movieConfig) {
+        this.viewerStatsService = viewerStatsService;
+        this.movieConfig = movieConfig;
+    }
+
+    @GetMapping("/api/movies/{movieId}/viewers")
+    public ResponseEntity<?> getMovieViewers(@PathVariable Long movieId) {
+        LocalDate today = viewerStatsService.today();
+        return ResponseEntity.ok(Map.of(
+                "success", true,
+                "data", Map.of(
+                        "movieId", movieId,
+                        "activeStreams", viewerStatsService.getActiveStreams(movieId),
+                        "uniqueViewersToday", viewerStatsService.getUniqueViewers(movieId, today),
+                        "date", today.toString()
+                )
+        ));
+    }
+
+    @GetMapping("/api/viewers")
+    public ResponseEntity<?> getViewers(@RequestParam(value = "limit", defaultValue = "10") int limit) {
+        LocalDate today = viewerStatsService.today();
+        return ResponseEntity.ok(Map.of(
+                "success", true,
+                "data", Map.of(
+                        "activeStreams", viewerStatsService.getActiveStreams(),
+                        "uniqueViewersToday", viewerStatsService.getUniqueViewers(today),
+                        "date", today.toString(),
+                        "mostWatched", viewerStatsService.getMostWatched(Math.max(1, Math.min(limit, MAX_LIMIT)))
+                )
+        ));
+    }
+
+    /**
+     * This node's sketches of a day (default today), to be merged with those of other nodes.
+     */
+    @GetMapping("/api/viewers/sketches")
+    public ResponseEntity<?> exportSketches(@RequestParam(value = "date", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        return ResponseEntity.ok(Map.of(
+                "success", true,
+                "data", viewerStatsService.export(date != null ? date : viewerStatsService.today())
+        ));
+    }
+
+    /**
+     * Merge exports of several nodes; returns the merged sketches and their estimates.
+     */
+    @PostMapping("/api/viewers/sketches/merge")
+    public ResponseEntity<?> mergeSketches(@RequestBody List<ViewerSketches> exports) {
+        try {
+            ViewerSketches merged = viewerStatsService.merge(exports);
+            return ResponseEntity.ok(Map.of(
+                    "success", true,
+                    "data", merged,
+                    "estimate", viewerStatsService.estimate(merged)
+            ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "message", movieConfig.getMessages().getInvalidViewerSketch(),
+                    "error", String.valueOf(e.getMessage())
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
+                    "success", false,
+                    "message", movieConfig.getMessages().getGeneralError(),
+                    "error", String.valueOf(e.getMessage())
+            ));
+        }
+    }
+}
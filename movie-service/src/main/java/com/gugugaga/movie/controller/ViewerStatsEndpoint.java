@@ -0,0 +1,48 @@
+package com.gugugaga.movie.controller;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import com.gugugaga.movie.service.ViewerStatsService;
+
+/**
+ * /actuator/viewers and /actuator/viewers/{movieId}, the same counts as /api/viewers for ops tooling.
+ */
+@Component
+@Endpoint(id = "viewers")
+public class ViewerStatsEndpoint {
+    private static final int MOST_WATCHED_LIMIT = 20;
+
+    private final ViewerStatsService viewerStatsService;
+
+    public ViewerStatsEndpoint(ViewerStatsService viewerStatsService) {
+        this.viewerStatsService = viewerStatsService;
+    }
+
+    @ReadOperation
+    public Map<String, Object> viewers() {
+        LocalDate today = viewerStatsService.today();
+        return Map.of(
+                "activeStreams", viewerStatsService.getActiveStreams(),
+                "uniqueViewersToday", viewerStatsService.getUniqueViewers(today),
+                "date", today.toString(),
+                "mostWatched", viewerStatsService.getMostWatched(MOST_WATCHED_LIMIT)
+        );
+    }
+
+    @ReadOperation
+    public Map<String, Object> movieViewers(@Selector Long movieId) {
+        LocalDate today = viewerStatsService.today();
+        return Map.of(
+                "movieId", movieId,
+                "activeStreams", viewerStatsService.getActiveStreams(movieId),
+                "uniqueViewersToday", viewerStatsService.getUniqueViewers(movieId, today),
+                "date", today.toString()
+        );
+    }
+}
@@ -0,0 +1,99 @@
+package com.gugugaga.movie.controller;
+import com.gugugaga.movie.config.MovieConfiguration;
+import com.gugugaga.movie.dto.WatchProgress;
+import com.gugugaga.movie.service.WatchProgressService;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Resume positions recorded from the user's stream requests, see WatchProgressService.
+ */
+@RestController
+@RequestMapping("/api/watch-progress")
+public class WatchProgressController {
+    private static final int MAX_LIMIT = 100;
+
+    private final WatchProgressService watchProgressService;
+    private final MovieConfiguration movieConfig;
+
+    public WatchProgressController(WatchProgressService watchProgressService, MovieConfiguration movieConfig) {
+        this.watchProgressService = watchProgressService;
+        this.movieConfig = movieConfig;
+    }
+
+    /**
+     * "Continue watching": unfinished movies, most recently watched first.
+     */
+    @GetMapping
+    public ResponseEntity<?> getInProgress(@RequestHeader(value = "X-User-Id", required = false) String userId, @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        if (userId == null || userId.trim().isEmpty()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of(
+                    "success", false,
+                    "message", movieConfig.getMessages().getUserNotAuthenticated()
+            ));
+        }
+        try {
+            List<WatchProgress> progress = watchProgressService.getInProgress(Long.valueOf(userId.trim()), Math.max(1, Math.min(limit, MAX_LIMIT)));
+            return ResponseEntity.ok(Map.of(
+                    "success", true,
+                    "data", progress
+            ));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "message", movieConfig.getMessages().getInvalidUserIdFormat()
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
+                    "success", false,
+                    "message", movieConfig.getMessages().getGetDataError(),
+                    "error", String.valueOf(e.getMessage())
+            ));
+        }
+    }
+
+    /**
+     * Where to resume one movie: /stream?t=positionSeconds, or Range: bytes=byteOffset- when
+     * positionSeconds is null.
+     */
+    @GetMapping("/{movieId}")
+    public ResponseEntity<?> getProgress(@PathVariable Long movieId, @RequestHeader(value = "X-User-Id", required = false) String userId) {
+        if (userId == null || userId.trim().isEmpty()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of(
+                    "success", false,
+                    "message", movieConfig.getMessages().getUserNotAuthenticated()
+            ));
+        }
+        try {
+            Optional<WatchProgress> progress = watchProgressService.getProgress(Long.valueOf(userId.trim()), movieId);
+            if (progress.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of(
+                        "success", false,
+                        "message", movieConfig.getMessages().getWatchProgressNotFound(),
+                        "id", movieId
+                ));
+            }
+            return ResponseEntity.ok(Map.of(
+                    "success", true,
+                    "data", progress.get()
+            ));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "message", movieConfig.getMessages().getInvalidUserIdFormat()
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
+                    "success", false,
+                    "message", movieConfig.getMessages().getGetDataError(),
+                    "error", String.valueOf(e.getMessage())
+            ));
+        }
+    }
+}
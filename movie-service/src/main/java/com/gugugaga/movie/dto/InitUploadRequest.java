@@ -0,0 +1,41 @@
+package com.gugugaga.movie.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+public class InitUploadRequest {
+    @NotBlank(message = "Harap memasukkan nama file video")
+    private String fileName;
+
+    @NotNull(message = "Harap memasukkan ukuran file")
+    @Positive(message = "Ukuran file harus lebih dari 0")
+    private Long size;
+
+    // Optional, the server default is used when empty
+    private Integer chunkSize;
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public Long getSize() {
+        return size;
+    }
+
+    public void setSize(Long size) {
+        this.size = size;
+    }
+
+    public Integer getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(Integer chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+}
@@ -0,0 +1,30 @@
+package com.gugugaga.movie.dto;
+
+import java.util.List;
+
+import com.gugugaga.movie.entity.Movie;
+
+/**
+ * One page of the catalog. nextCursor is the ?after= of the next page, null on the last one.
+ */
+public class MoviePage {
+    private List<Movie> movies;
+    private Long nextCursor;
+
+    public MoviePage(List<Movie> movies, Long nextCursor) {
+        this.movies = movies;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Movie> getMovies() {
+        return movies;
+    }
+
+    public Long getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,39 @@
+package com.gugugaga.movie.dto;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * Catalog orders of GET /api/movies?sort=, each backed by a (key, id) index.
+ */
+public enum MovieSort {
+    ID("id"),         // oldest first
+    TITLE("title"),   // A-Z
+    YEAR("year");     // newest release first
+
+    private final String param;
+
+    MovieSort(String param) {
+        this.param = param;
+    }
+
+    public String getParam() {
+        return param;
+    }
+
+    /**
+     * @throws IllegalArgumentException for an unknown sort
+     */
+    public static MovieSort fromParam(String param) {
+        for (MovieSort sort : values()) {
+            if (sort.param.equalsIgnoreCase(param.trim())) {
+                return sort;
+            }
+        }
+        throw new IllegalArgumentException("Unknown sort: " + param);
+    }
+
+    public static String params() {
+        return Arrays.stream(values()).map(MovieSort::getParam).collect(Collectors.joining(", "));
+    }
+}
@@ -0,0 +1,35 @@
+package com.gugugaga.movie.dto;
+
+/**
+ * Where playback of a given time can start: the closest keyframe at or before it
+ * and the byte offset of the stream endpoint to request from there.
+ */
+public class SeekPosition {
+    private double requestedSeconds;
+    private double keyframeSeconds;
+    private long byteOffset;
+    private String range;
+
+    public SeekPosition(double requestedSeconds, double keyframeSeconds, long byteOffset) {
+        this.requestedSeconds = requestedSeconds;
+        this.keyframeSeconds = keyframeSeconds;
+        this.byteOffset = byteOffset;
+        this.range = "bytes=" + byteOffset + "-";
+    }
+
+    public double getRequestedSeconds() {
+        return requestedSeconds;
+    }
+
+    public double getKeyframeSeconds() {
+        return keyframeSeconds;
+    }
+
+    public long getByteOffset() {
+        return byteOffset;
+    }
+
+    public String getRange() {
+        return range;
+    }
+}
@@ -0,0 +1,56 @@
+package com.gugugaga.movie.dto;
+
+import java.util.List;
+
+/**
+ * State of a resumable upload. A client that lost its connection asks for this and
+ * sends only the chunks missing from receivedChunks.
+ */
+public class UploadStatus {
+    private String uploadId;
+    private String fileName;
+    private long size;
+    private int chunkSize;
+    private int totalChunks;
+    private List<Integer> receivedChunks;
+    private long receivedBytes;
+
+    public UploadStatus(String uploadId, String fileName, long size, int chunkSize, int totalChunks,
+                        List<Integer> receivedChunks, long receivedBytes) {
+        this.uploadId = uploadId;
+        this.fileName = fileName;
+        this.size = size;
+        this.chunkSize = chunkSize;
+        this.totalChunks = totalChunks;
+        this.receivedChunks = receivedChunks;
+        this.receivedBytes = receivedBytes;
+    }
+
+    public String getUploadId() {
+        return uploadId;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getTotalChunks() {
+        return totalChunks;
+    }
+
+    public List<Integer> getReceivedChunks() {
+        return receivedChunks;
+    }
+
+    public long getReceivedBytes() {
+        return receivedBytes;
+    }
+}
@@ -0,0 +1,22 @@
+package com.gugugaga.movie.dto;
+
+public class UserSubscriptionResponse {
+    private Long limit;
+    private String planName;
+
+    public Long getLimit() {
+        return limit;
+    }
+
+    public void setLimit(Long limit) {
+        this.limit = limit;
+    }
+
+    public String getPlanName() {
+        return planName;
+    }
+
+    public void setPlanName(String planName) {
+        this.planName = planName;
+    }
+}
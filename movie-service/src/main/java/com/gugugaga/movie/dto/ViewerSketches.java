@@ -0,0 +1,59 @@
+package com.gugugaga.movie.dto;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One day of unique-viewer sketches of a node, base64 of HyperLogLog#toBytes.
+ * Sketches of every node merged together count each viewer once.
+ */
+public class ViewerSketches {
+    private LocalDate date;
+    private int precision;
+    // All movies together, a viewer of several movies is counted once
+    private String total;
+    private Map<Long, String> movies = new HashMap<>();
+
+    public ViewerSketches() {
+    }
+
+    public ViewerSketches(LocalDate date, int precision, String total, Map<Long, String> movies) {
+        this.date = date;
+        this.precision = precision;
+        this.total = total;
+        this.movies = movies;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public void setDate(LocalDate date) {
+        this.date = date;
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    public void setPrecision(int precision) {
+        this.precision = precision;
+    }
+
+    public String getTotal() {
+        return total;
+    }
+
+    public void setTotal(String total) {
+        this.total = total;
+    }
+
+    public Map<Long, String> getMovies() {
+        return movies;
+    }
+
+    public void setMovies(Map<Long, String> movies) {
+        this.movies = movies;
+    }
+}
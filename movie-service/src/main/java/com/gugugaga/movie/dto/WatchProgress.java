@@ -0,0 +1,66 @@
+package com.gugugaga.movie.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Where a user stopped watching a movie. positionSeconds is null when the container
+ * has no sample index; resume from byteOffset (Range: bytes=<byteOffset>-) then.
+ */
+public class WatchProgress {
+    private long userId;
+    private long movieId;
+    private Double positionSeconds;
+    private Double durationSeconds;
+    private long byteOffset;
+    private long fileSize;
+    private boolean completed;
+    private LocalDateTime updatedAt;
+
+    public WatchProgress(long userId, long movieId, Double positionSeconds, Double durationSeconds, long byteOffset,
+                         long fileSize, boolean completed, LocalDateTime updatedAt) {
+        this.userId = userId;
+        this.movieId = movieId;
+        this.positionSeconds = positionSeconds;
+        this.durationSeconds = durationSeconds;
+        this.byteOffset = byteOffset;
+        this.fileSize = fileSize;
+        this.completed = completed;
+        this.updatedAt = updatedAt;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public long getMovieId() {
+        return movieId;
+    }
+
+    public Double getPositionSeconds() {
+        return positionSeconds;
+    }
+
+    public Double getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public long getByteOffset() {
+        return byteOffset;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public double getPercent() {
+        return fileSize > 0 ? Math.min(100.0, byteOffset * 100.0 / fileSize) : 0;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+}
@@ -0,0 +1,168 @@
+package com.gugugaga.movie.entity;
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * A video file found in the storage directory by the library watcher, with what was
+ * learned about it before any movie points at it.
+ */
+@Entity
+@Table(name = "tb_library_files")
+public class LibraryFile {
+    @Id
+    @GeneratedValue( strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Relative to the storage directory, the value to use as videoFileName
+    @Column(name = "file_name", nullable = false, unique = true)
+    private String fileName;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private LibraryFileStatus status = LibraryFileStatus.PENDING;
+
+    @Column(name = "file_size")
+    private Long fileSize;
+
+    @Column(name = "file_last_modified")
+    private Long fileLastModified;
+
+    // Sniffed from the leading bytes, not taken from the extension
+    private String container;
+
+    @Column(name = "video_codec")
+    private String videoCodec;
+
+    @Column(name = "audio_codec")
+    private String audioCodec;
+
+    @Column(name = "duration_seconds")
+    private Double durationSeconds;
+
+    private Boolean faststart;
+
+    @Column(name = "error_message")
+    private String errorMessage;
+
+    @Column(name = "discovered_at", updatable = false)
+    private LocalDateTime discoveredAt;
+
+    @Column(name = "indexed_at")
+    private LocalDateTime indexedAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public LibraryFileStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(LibraryFileStatus status) {
+        this.status = status;
+    }
+
+    public Long getFileSize() {
+        return fileSize;
+    }
+
+    public void setFileSize(Long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public Long getFileLastModified() {
+        return fileLastModified;
+    }
+
+    public void setFileLastModified(Long fileLastModified) {
+        this.fileLastModified = fileLastModified;
+    }
+
+    public String getContainer() {
+        return container;
+    }
+
+    public void setContainer(String container) {
+        this.container = container;
+    }
+
+    public String getVideoCodec() {
+        return videoCodec;
+    }
+
+    public void setVideoCodec(String videoCodec) {
+        this.videoCodec = videoCodec;
+    }
+
+    public String getAudioCodec() {
+        return audioCodec;
+    }
+
+    public void setAudioCodec(String audioCodec) {
+        this.audioCodec = audioCodec;
+    }
+
+    public Double getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public void setDurationSeconds(Double durationSeconds) {
+        this.durationSeconds = durationSeconds;
+    }
+
+    public Boolean getFaststart() {
+        return faststart;
+    }
+
+    public void setFaststart(Boolean faststart) {
+        this.faststart = faststart;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    public LocalDateTime getDiscoveredAt() {
+        return discoveredAt;
+    }
+
+    public void setDiscoveredAt(LocalDateTime discoveredAt) {
+        this.discoveredAt = discoveredAt;
+    }
+
+    public LocalDateTime getIndexedAt() {
+        return indexedAt;
+    }
+
+    public void setIndexedAt(LocalDateTime indexedAt) {
+        this.indexedAt = indexedAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
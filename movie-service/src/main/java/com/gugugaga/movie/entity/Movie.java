@@ -2,11 +2,15 @@ package com.gugugaga.movie.entity;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
 
+import org.hibernate.annotations.SQLRestriction;
+
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "tb_movies")
+// Soft-deleted movies are invisible to every JPA read, including findById
+@SQLRestriction("is_deleted = false")
 public class Movie {
     @Id
     @GeneratedValue( strategy = GenerationType.IDENTITY)
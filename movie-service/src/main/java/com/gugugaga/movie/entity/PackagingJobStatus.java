@@ -0,0 +1,8 @@
+package com.gugugaga.movie.entity;
+
+public enum PackagingJobStatus {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
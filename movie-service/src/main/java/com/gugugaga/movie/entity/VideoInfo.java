@@ -2,6 +2,10 @@ package com.gugugaga.movie.entity;
 
 import java.io.File;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.gugugaga.movie.mp4.Mp4FaststartView;
+import com.gugugaga.movie.storage.StoredVideo;
+
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -12,9 +16,17 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 public class VideoInfo {
+    // Null when the video lives in a remote storage, read those through storedVideo
     private File file;
+    @JsonIgnore
+    private StoredVideo storedVideo;
     private String contentType;
     private Movie movie;
     private long fileSize;
     private String quality;
+    private long lastModified;
+    private String etag;
+    // Set when an MP4 with a trailing moov is served as a moov-first view
+    @JsonIgnore
+    private Mp4FaststartView faststartView;
 }
@@ -1,5 +1,7 @@
 package com.gugugaga.movie.exception;
 
+import com.gugugaga.movie.config.MovieConfiguration;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -8,6 +10,7 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.server.ServerWebExchange;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -15,6 +18,12 @@ import java.util.stream.Collectors;
 
 @RestControllerAdvice
 public class GlobalExceptionHandler {
+        private final MovieConfiguration movieConfig;
+
+        public GlobalExceptionHandler(MovieConfiguration movieConfig) {
+                this.movieConfig = movieConfig;
+        }
+
         @ExceptionHandler(MethodArgumentNotValidException.class)
         public ResponseEntity<ValidationErrorResponse> handleArgumentNotValid( MethodArgumentNotValidException ex, HttpServletRequest request ) {
                 Map<String, String> errors = new HashMap<>();
@@ -32,4 +41,32 @@ public class GlobalExceptionHandler {
                         "path", path
                 ));
         }
+        @ExceptionHandler(StreamLimitExceededException.class)
+        public ResponseEntity<?> handleStreamLimitExceeded(StreamLimitExceededException ex, HttpServletRequest request) {
+                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header("Retry-After", String.valueOf(ex.getRetryAfterSeconds()))
+                        .body(Map.of(
+                                "success", false,
+                                "message", ex.getMessage(),
+                                "maxStreams", ex.getMaxStreams(),
+                                "path", request.getRequestURI()
+                        ));
+        }
+        /**
+         * The streaming executor is saturated. The stream's status and headers (Content-Length,
+         * Content-Range) are already on the response, so it is reset before answering 503.
+         */
+        @ExceptionHandler(TaskRejectedException.class)
+        public ResponseEntity<?> handleTaskRejected(TaskRejectedException ex, HttpServletRequest request, HttpServletResponse response) {
+                if (!response.isCommitted()) {
+                        response.reset();
+                }
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header("Retry-After", String.valueOf(movieConfig.getStreaming().getExecutor().getRejectedRetryAfterSeconds()))
+                        .body(Map.of(
+                                "success", false,
+                                "message", movieConfig.getMessages().getStreamingBusy(),
+                                "path", request.getRequestURI()
+                        ));
+        }
 }
@@ -0,0 +1,14 @@
+package com.gugugaga.movie.exception;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.UNSUPPORTED_MEDIA_TYPE)
+public class Mp4FormatException extends RuntimeException {
+    public Mp4FormatException(String message) {
+        super(message);
+    }
+
+    public Mp4FormatException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
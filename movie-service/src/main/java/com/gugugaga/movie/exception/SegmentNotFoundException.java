@@ -0,0 +1,10 @@
+package com.gugugaga.movie.exception;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class SegmentNotFoundException extends RuntimeException {
+    public SegmentNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,23 @@
+package com.gugugaga.movie.exception;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class StreamLimitExceededException extends RuntimeException {
+    private final int maxStreams;
+    private final long retryAfterSeconds;
+
+    public StreamLimitExceededException(String message, int maxStreams, long retryAfterSeconds) {
+        super(message);
+        this.maxStreams = maxStreams;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getMaxStreams() {
+        return maxStreams;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,10 @@
+package com.gugugaga.movie.exception;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class ThumbnailNotFoundException extends RuntimeException {
+    public ThumbnailNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,97 @@
+package com.gugugaga.movie.limits;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Slots of this node, counted without locks.
+ *
+ * Every user has an open-slot counter and one reference count per slot, all updated
+ * with compare-and-set; the maps are ConcurrentHashMaps, which stripe their updates
+ * per bin, so streams of different users never contend. A counter that dropped to
+ * zero is retired (set to -1) before it is removed, and a thread that finds a retired
+ * counter starts over, so a late joiner can't bump a counter nobody reads any more.
+ */
+public class InMemoryStreamSlotStore implements StreamSlotStore {
+    private static final int RETIRED = -1;
+
+    private final Map<String, UserSlots> users = new ConcurrentHashMap<>();
+    private final LongAdder totalSlots = new LongAdder();
+
+    @Override
+    public boolean tryAcquire(String userKey, String slotKey, int maxSlots) {
+        while (true) {
+            UserSlots user = users.computeIfAbsent(userKey, key -> new UserSlots());
+            AtomicInteger slot = user.slots.get(slotKey);
+            if (slot != null) {
+                int references = slot.get();
+                if (references >= 0 && slot.compareAndSet(references, references + 1)) {
+                    return true; // same movie already playing, join its slot
+                }
+                if (references == RETIRED) {
+                    user.slots.remove(slotKey, slot);
+                }
+                continue;
+            }
+            int open = user.open.get();
+            if (open == RETIRED) {
+                users.remove(userKey, user);
+                continue;
+            }
+            if (open >= maxSlots) {
+                return false;
+            }
+            if (!user.open.compareAndSet(open, open + 1)) {
+                continue;
+            }
+            if (user.slots.putIfAbsent(slotKey, new AtomicInteger(1)) == null) {
+                totalSlots.increment();
+                return true;
+            }
+            // Another request opened this slot first: give the count back and join theirs
+            releaseOpen(userKey, user);
+        }
+    }
+
+    @Override
+    public void release(String userKey, String slotKey) {
+        UserSlots user = users.get(userKey);
+        if (user == null) {
+            return;
+        }
+        AtomicInteger slot = user.slots.get(slotKey);
+        if (slot == null) {
+            return;
+        }
+        if (slot.decrementAndGet() == 0 && slot.compareAndSet(0, RETIRED)) {
+            user.slots.remove(slotKey, slot);
+            totalSlots.decrement();
+            releaseOpen(userKey, user);
+        }
+    }
+
+    @Override
+    public int activeSlots(String userKey) {
+        UserSlots user = users.get(userKey);
+        return user != null ? Math.max(0, user.open.get()) : 0;
+    }
+
+    @Override
+    public long totalActiveSlots() {
+        return totalSlots.sum();
+    }
+
+    private void releaseOpen(String userKey, UserSlots user) {
+        if (user.open.decrementAndGet() == 0 && user.open.compareAndSet(0, RETIRED)) {
+            users.remove(userKey, user);
+        }
+    }
+
+    private static final class UserSlots {
+        private final AtomicInteger open = new AtomicInteger();
+        // slotKey -> requests currently using the slot
+        private final Map<String, AtomicInteger> slots = new ConcurrentHashMap<>();
+    }
+}
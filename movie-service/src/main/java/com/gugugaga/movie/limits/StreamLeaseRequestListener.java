@@ -0,0 +1,28 @@
+package com.gugugaga.movie.limits;
+
+import org.springframework.stereotype.Component;
+
+import com.gugugaga.movie.service.StreamLimitService;
+import com.gugugaga.movie.service.ViewerStatsService;
+
+import jakarta.servlet.ServletRequestEvent;
+import jakarta.servlet.ServletRequestListener;
+
+/**
+ * Gives a stream's slot back and stops counting it as watched once its request is over.
+ * For an async stream the container fires this after the body finished, failed or the
+ * client went away, so no path through the controller can leak a slot or a viewer.
+ */
+@Component
+public class StreamLeaseRequestListener implements ServletRequestListener {
+
+    @Override
+    public void requestDestroyed(ServletRequestEvent event) {
+        if (event.getServletRequest().getAttribute(StreamLimitService.LEASE_ATTRIBUTE) instanceof StreamLimitService.Lease lease) {
+            lease.close();
+        }
+        if (event.getServletRequest().getAttribute(ViewerStatsService.VIEWING_ATTRIBUTE) instanceof ViewerStatsService.Viewing viewing) {
+            viewing.close();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.gugugaga.movie.limits;
+
+/**
+ * Counts the streams each user has open. A slot is one movie being watched; parallel
+ * range requests of the same player for that movie share it, so seeking and moov
+ * probing never count twice.
+ *
+ * The in-memory store limits per node. A store shared by all nodes (Redis, a database)
+ * limits per account, and should expire the slots of a node that died while holding them.
+ */
+public interface StreamSlotStore {
+
+    /**
+     * Join the user's slot for {@code slotKey}, or open a new one when the user holds
+     * fewer than {@code maxSlots}. Every successful call must be paired with a release.
+     *
+     * @return false when the user already holds maxSlots other slots
+     */
+    boolean tryAcquire(String userKey, String slotKey, int maxSlots);
+
+    void release(String userKey, String slotKey);
+
+    int activeSlots(String userKey);
+
+    long totalActiveSlots();
+}
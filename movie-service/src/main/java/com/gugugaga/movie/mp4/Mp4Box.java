@@ -0,0 +1,43 @@
+package com.gugugaga.movie.mp4;
+
+/**
+ * Position of an ISO-BMFF box inside the file.
+ */
+public final class Mp4Box {
+    private final String type;
+    private final long offset;
+    private final long size;
+    private final int headerSize;
+
+    public Mp4Box(String type, long offset, long size, int headerSize) {
+        this.type = type;
+        this.offset = offset;
+        this.size = size;
+        this.headerSize = headerSize;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public int getHeaderSize() {
+        return headerSize;
+    }
+
+    public long getEnd() {
+        return offset + size;
+    }
+
+    @Override
+    public String toString() {
+        return type + "@" + offset + "+" + size;
+    }
+}
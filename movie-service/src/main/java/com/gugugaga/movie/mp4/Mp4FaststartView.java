@@ -0,0 +1,166 @@
+package com.gugugaga.movie.mp4;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.gugugaga.movie.exception.Mp4FormatException;
+import com.gugugaga.movie.storage.VideoReader;
+
+/**
+ * Moov-first byte view of an MP4 whose moov sits behind its media, laid out the way
+ * qt-faststart would rewrite it but without touching the file on disk:
+ *
+ * <pre>
+ *   view [0, P)            = file [0, P)             ftyp and whatever precedes the first mdat
+ *   view [P, P + M)        = patched moov            held in memory
+ *   view [P + M, moovEnd)  = file [P, moovOffset)    the media, shifted by M
+ *   view [moovEnd, size)   = file [moovEnd, size)    anything stored after moov
+ * </pre>
+ *
+ * The view is exactly as long as the file. stco/co64 chunk offsets in the in-memory
+ * moov are rewritten once so they point into the view.
+ */
+public final class Mp4FaststartView {
+    private final long size;
+    private final long mediaStart;
+    private final long moovOffset;
+    private final byte[] moov;
+
+    private Mp4FaststartView(long size, long mediaStart, long moovOffset, byte[] moov) {
+        this.size = size;
+        this.mediaStart = mediaStart;
+        this.moovOffset = moovOffset;
+        this.moov = moov;
+    }
+
+    /**
+     * @return the view, or null when the file already starts with its moov
+     */
+    public static Mp4FaststartView create(VideoReader reader, Mp4Index index) throws IOException {
+        Mp4Box moov = index.getMoov();
+        Mp4Box mdat = index.findBox("mdat");
+        if (moov == null || mdat == null || index.isFaststart()) {
+            return null;
+        }
+        if (moov.getSize() > Mp4Parser.MAX_MOOV_SIZE) {
+            throw new Mp4FormatException("Box moov terlalu besar: " + moov.getSize());
+        }
+        ByteBuffer data = Mp4Parser.readFully(reader, moov.getOffset(), (int) moov.getSize());
+        Mp4FaststartView view = new Mp4FaststartView(index.getFileSize(), mdat.getOffset(), moov.getOffset(), data.array());
+        view.patchChunkOffsets(ByteBuffer.wrap(view.moov), moov.getHeaderSize(), view.moov.length);
+        return view;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Size of the in-memory moov, what a cache of views should weigh.
+     */
+    public int getHeaderSize() {
+        return moov.length;
+    }
+
+    /**
+     * ftyp..moov of the view, everything a player needs before the first sample.
+     */
+    public Mp4Box getInitSection() {
+        return new Mp4Box("init", 0, mediaStart + moov.length, 0);
+    }
+
+    /**
+     * Where a byte of the file ends up in the view.
+     */
+    public long toViewOffset(long fileOffset) {
+        if (fileOffset < mediaStart || fileOffset >= getMoovEnd()) {
+            return fileOffset;
+        }
+        if (fileOffset < moovOffset) {
+            return fileOffset + moov.length;
+        }
+        return fileOffset - moovOffset + mediaStart;
+    }
+
+    /**
+     * @return the file offset backing a view position, or -1 when it falls in the in-memory moov
+     */
+    public long toFileOffset(long viewOffset) {
+        if (viewOffset < mediaStart) {
+            return viewOffset;
+        }
+        if (viewOffset < mediaStart + moov.length) {
+            return -1;
+        }
+        if (viewOffset < getMoovEnd()) {
+            return viewOffset - moov.length;
+        }
+        return viewOffset;
+    }
+
+    /**
+     * Bytes from a view position to the end of its piece, i.e. how far a single
+     * contiguous file read (or moov copy) may go.
+     */
+    public long contiguousLength(long viewOffset) {
+        if (viewOffset < mediaStart) {
+            return mediaStart - viewOffset;
+        }
+        if (viewOffset < mediaStart + moov.length) {
+            return mediaStart + moov.length - viewOffset;
+        }
+        if (viewOffset < getMoovEnd()) {
+            return getMoovEnd() - viewOffset;
+        }
+        return size - viewOffset;
+    }
+
+    /**
+     * @return a read-only view of up to maxLength moov bytes at the position, or null when
+     *         the position is backed by the file
+     */
+    public ByteBuffer headerSlice(long viewOffset, long maxLength) {
+        long offset = viewOffset - mediaStart;
+        if (offset < 0 || offset >= moov.length) {
+            return null;
+        }
+        int length = (int) Math.min(maxLength, moov.length - offset);
+        return ByteBuffer.wrap(moov, (int) offset, length).slice().asReadOnlyBuffer();
+    }
+
+    private long getMoovEnd() {
+        return moovOffset + moov.length;
+    }
+
+    private void patchChunkOffsets(ByteBuffer data, int start, int end) {
+        Mp4Parser.forEachChild(data, start, end, (type, childStart, childEnd) -> {
+            if (type.equals("trak") || type.equals("mdia") || type.equals("minf") || type.equals("stbl")) {
+                patchChunkOffsets(data, childStart, childEnd);
+            } else if (type.equals("stco")) {
+                patchEntries(data, childStart, childEnd, 4);
+            } else if (type.equals("co64")) {
+                patchEntries(data, childStart, childEnd, 8);
+            }
+        });
+    }
+
+    private void patchEntries(ByteBuffer data, int start, int end, int entrySize) {
+        long count = data.getInt(start + 4) & 0xFFFFFFFFL;
+        if (start + 8 + count * entrySize > end) {
+            throw new Mp4FormatException("Box chunk offset rusak");
+        }
+        for (int i = 0; i < count; i++) {
+            int position = start + 8 + i * entrySize;
+            if (entrySize == 4) {
+                long offset = toViewOffset(data.getInt(position) & 0xFFFFFFFFL);
+                if (offset > 0xFFFFFFFFL) {
+                    // Would need a stco -> co64 upgrade, which changes the moov size
+                    throw new Mp4FormatException("Offset stco melebihi 32 bit");
+                }
+                data.putInt(position, (int) offset);
+            } else {
+                data.putLong(position, toViewOffset(data.getLong(position)));
+            }
+        }
+    }
+}
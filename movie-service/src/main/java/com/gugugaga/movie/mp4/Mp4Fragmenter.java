@@ -0,0 +1,301 @@
+package com.gugugaga.movie.mp4;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.gugugaga.movie.exception.Mp4FormatException;
+import com.gugugaga.movie.storage.VideoReader;
+
+/**
+ * Remuxes a progressive MP4 into fragmented MP4 (CMAF-style) pieces for HLS, without
+ * touching the media itself:
+ *
+ * <pre>
+ *   init segment  = ftyp + the file's moov with empty sample tables and an mvex box
+ *   media segment = moof (one traf/trun per track) + mdat holding the segment's samples
+ * </pre>
+ *
+ * Only audio and video tracks are carried over; the samples of a media segment are
+ * copied from the file, see {@link Fragment#getRegions()}.
+ */
+public final class Mp4Fragmenter {
+    private static final int TFHD_DEFAULT_BASE_IS_MOOF = 0x020000;
+    private static final int TRUN_DATA_OFFSET = 0x000001;
+    private static final int TRUN_SAMPLE_DURATION = 0x000100;
+    private static final int TRUN_SAMPLE_SIZE = 0x000200;
+    private static final int TRUN_SAMPLE_FLAGS = 0x000400;
+    private static final int TRUN_COMPOSITION_OFFSET = 0x000800;
+    // sample_depends_on = 2 (an I-frame) versus 1 plus sample_is_non_sync_sample
+    private static final int SYNC_SAMPLE_FLAGS = 0x02000000;
+    private static final int NON_SYNC_SAMPLE_FLAGS = 0x01010000;
+
+    private Mp4Fragmenter() {
+    }
+
+    public static boolean isFragmented(Mp4Track track) {
+        return "vide".equals(track.getHandlerType()) || "soun".equals(track.getHandlerType());
+    }
+
+    /**
+     * Build the init segment from the moov box of the file.
+     */
+    public static byte[] initSegment(VideoReader reader, Mp4Index index) throws IOException {
+        Mp4Box moovBox = index.getMoov();
+        if (moovBox == null || moovBox.getSize() > Mp4Parser.MAX_MOOV_SIZE) {
+            throw new Mp4FormatException("Box moov tidak dapat dibaca");
+        }
+        ByteBuffer moovData = Mp4Parser.readFully(reader, moovBox.getOffset(), (int) moovBox.getSize());
+        int headerSize = moovBox.getHeaderSize();
+        Set<Integer> trackIds = new HashSet<>();
+        for (Mp4Track track : index.getTracks()) {
+            if (isFragmented(track)) {
+                trackIds.add(track.getTrackId());
+            }
+        }
+        if (trackIds.isEmpty()) {
+            throw new Mp4FormatException("Tidak ada track audio atau video");
+        }
+        BoxWriter moov = new BoxWriter();
+        Mp4Parser.forEachChild(moovData, headerSize, moovData.limit(), (type, start, end) -> {
+            if (type.equals("trak")) {
+                int trackId = trackId(moovData, start, end);
+                if (trackIds.contains(trackId)) {
+                    moov.box("trak", rewriteContainer(moovData, start, end));
+                }
+            } else if (!type.equals("mvex")) {
+                moov.copy(moovData, type, start, end);
+            }
+        });
+        BoxWriter mvex = new BoxWriter();
+        for (Mp4Track track : index.getTracks()) {
+            if (isFragmented(track)) {
+                // trex: track id, sample description 1, no defaults, every trun spells them out
+                mvex.box("trex", fullBox(0, 0).putInt(track.getTrackId()).putInt(1).putInt(0).putInt(0).putInt(0));
+            }
+        }
+        moov.box("mvex", mvex.toByteArray());
+
+        BoxWriter init = new BoxWriter();
+        init.box("ftyp", ByteBuffer.allocate(16).put(ascii("iso6")).putInt(0).put(ascii("iso6")).put(ascii("mp41")));
+        init.box("moov", moov.toByteArray());
+        return init.toByteArray();
+    }
+
+    /**
+     * Build the moof and mdat header of a segment; the mdat payload is the file regions
+     * of the returned fragment, in order.
+     *
+     * @param sequence 0-based segment number, written 1-based into mfhd
+     */
+    public static Fragment fragment(Mp4Index index, Mp4Segment segment, int sequence) {
+        List<Mp4Track> tracks = index.getTracks();
+        List<long[]> regions = new ArrayList<>();
+        List<Integer> dataOffsetPositions = new ArrayList<>();
+        List<Long> trackDataStarts = new ArrayList<>();
+
+        BoxWriter moof = new BoxWriter();
+        moof.box("mfhd", fullBox(0, 0).putInt(sequence + 1));
+        long dataLength = 0;
+        for (int t = 0; t < tracks.size(); t++) {
+            Mp4Track track = tracks.get(t);
+            int from = segment.getFirstSample(t);
+            int to = segment.getEndSample(t);
+            if (!isFragmented(track) || from >= to) {
+                continue;
+            }
+            boolean composition = track.hasCompositionOffsets();
+            int flags = TRUN_DATA_OFFSET | TRUN_SAMPLE_DURATION | TRUN_SAMPLE_SIZE | TRUN_SAMPLE_FLAGS
+                    | (composition ? TRUN_COMPOSITION_OFFSET : 0);
+            int sampleCount = to - from;
+            ByteBuffer trun = fullBox(composition ? 1 : 0, flags, 8 + (long) sampleCount * (composition ? 16 : 12))
+                    .putInt(sampleCount)
+                    .putInt(0); // data_offset, patched once the moof size is known
+            long trackData = 0;
+            for (int sample = from; sample < to; sample++) {
+                int size = track.getSampleSize(sample);
+                trun.putInt((int) track.getSampleDuration(sample))
+                        .putInt(size)
+                        .putInt(track.isSyncSample(sample) ? SYNC_SAMPLE_FLAGS : NON_SYNC_SAMPLE_FLAGS);
+                if (composition) {
+                    trun.putInt(track.getCompositionOffset(sample));
+                }
+                addRegion(regions, track.getSampleOffset(sample), size);
+                trackData += size;
+            }
+
+            BoxWriter traf = new BoxWriter();
+            traf.box("tfhd", fullBox(0, TFHD_DEFAULT_BASE_IS_MOOF).putInt(track.getTrackId()));
+            traf.box("tfdt", fullBox(1, 0).putLong(track.getSampleTime(from)));
+            // Position of data_offset inside the moof: traf header, then the trun header
+            int trafStart = moof.size();
+            int trunStart = trafStart + 8 + traf.size();
+            traf.box("trun", trun);
+            moof.box("traf", traf.toByteArray());
+            dataOffsetPositions.add(trunStart + 16);
+            trackDataStarts.add(dataLength);
+            dataLength += trackData;
+        }
+        if (dataOffsetPositions.isEmpty()) {
+            throw new Mp4FormatException("Segmen " + sequence + " tidak memiliki sampel");
+        }
+
+        boolean largeMdat = dataLength + 8 > 0xFFFFFFFFL;
+        int mdatHeaderSize = largeMdat ? 16 : 8;
+        byte[] moofPayload = moof.toByteArray();
+        ByteBuffer header = ByteBuffer.allocate(8 + moofPayload.length + mdatHeaderSize);
+        header.putInt(8 + moofPayload.length).put(ascii("moof")).put(moofPayload);
+        if (largeMdat) {
+            header.putInt(1).put(ascii("mdat")).putLong(16 + dataLength);
+        } else {
+            header.putInt((int) (8 + dataLength)).put(ascii("mdat"));
+        }
+        for (int i = 0; i < dataOffsetPositions.size(); i++) {
+            // data_offset counts from the first byte of the moof (default-base-is-moof)
+            header.putInt(8 + dataOffsetPositions.get(i), (int) (header.capacity() + trackDataStarts.get(i)));
+        }
+        return new Fragment(header.array(), dataLength, regions);
+    }
+
+    // Consecutive samples usually sit back to back in the file, read them in one go
+    private static void addRegion(List<long[]> regions, long offset, long length) {
+        if (!regions.isEmpty()) {
+            long[] last = regions.get(regions.size() - 1);
+            if (last[0] + last[1] == offset) {
+                last[1] += length;
+                return;
+            }
+        }
+        regions.add(new long[] {offset, length});
+    }
+
+    private static int trackId(ByteBuffer data, int trakStart, int trakEnd) {
+        int[] trackId = {-1};
+        Mp4Parser.forEachChild(data, trakStart, trakEnd, (type, start, end) -> {
+            if (type.equals("tkhd")) {
+                Mp4Parser.requirePayload(type, start, end, 16);
+                trackId[0] = data.getInt(start + (data.get(start) == 1 ? 20 : 12));
+            }
+        });
+        return trackId[0];
+    }
+
+    // trak, mdia, minf and stbl are rebuilt, everything else inside them is copied as is
+    private static byte[] rewriteContainer(ByteBuffer data, int containerStart, int containerEnd) {
+        BoxWriter writer = new BoxWriter();
+        Mp4Parser.forEachChild(data, containerStart, containerEnd, (type, start, end) -> {
+            switch (type) {
+                case "mdia":
+                case "minf":
+                    writer.box(type, rewriteContainer(data, start, end));
+                    break;
+                case "stbl":
+                    writer.box(type, emptySampleTable(data, start, end));
+                    break;
+                default:
+                    writer.copy(data, type, start, end);
+                    break;
+            }
+        });
+        return writer.toByteArray();
+    }
+
+    // The sample descriptions stay, the tables describing samples move into the fragments
+    private static byte[] emptySampleTable(ByteBuffer data, int stblStart, int stblEnd) {
+        BoxWriter writer = new BoxWriter();
+        Mp4Parser.forEachChild(data, stblStart, stblEnd, (type, start, end) -> {
+            if (type.equals("stsd")) {
+                writer.copy(data, type, start, end);
+            }
+        });
+        writer.box("stts", fullBox(0, 0).putInt(0));
+        writer.box("stsc", fullBox(0, 0).putInt(0));
+        writer.box("stsz", fullBox(0, 0).putInt(0).putInt(0));
+        writer.box("stco", fullBox(0, 0).putInt(0));
+        return writer.toByteArray();
+    }
+
+    private static ByteBuffer fullBox(int version, int flags) {
+        return fullBox(version, flags, 32);
+    }
+
+    private static ByteBuffer fullBox(int version, int flags, long payloadSize) {
+        if (payloadSize > Integer.MAX_VALUE - 4) {
+            throw new Mp4FormatException("Segmen terlalu besar");
+        }
+        return ByteBuffer.allocate(4 + (int) payloadSize).putInt((version << 24) | flags);
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * moof + mdat header of one media segment, followed on the wire by the file regions.
+     */
+    public static final class Fragment {
+        private final byte[] header;
+        private final long dataLength;
+        private final List<long[]> regions;
+
+        private Fragment(byte[] header, long dataLength, List<long[]> regions) {
+            this.header = header;
+            this.dataLength = dataLength;
+            this.regions = regions;
+        }
+
+        public byte[] getHeader() {
+            return header;
+        }
+
+        public long getLength() {
+            return header.length + dataLength;
+        }
+
+        /**
+         * File regions making up the mdat payload, each as {offset, length}.
+         */
+        public List<long[]> getRegions() {
+            return regions;
+        }
+    }
+
+    private static final class BoxWriter {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        void box(String type, byte[] payload) {
+            header(type, payload.length);
+            out.writeBytes(payload);
+        }
+
+        // Writes only the filled part of the buffer
+        void box(String type, ByteBuffer payload) {
+            header(type, payload.position());
+            out.write(payload.array(), 0, payload.position());
+        }
+
+        void copy(ByteBuffer data, String type, int start, int end) {
+            byte[] payload = new byte[end - start];
+            data.get(start, payload);
+            box(type, payload);
+        }
+
+        int size() {
+            return out.size();
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+
+        private void header(String type, int payloadLength) {
+            ByteBuffer header = ByteBuffer.allocate(8).putInt(8 + payloadLength).put(ascii(type));
+            out.write(header.array(), 0, 8);
+        }
+    }
+}
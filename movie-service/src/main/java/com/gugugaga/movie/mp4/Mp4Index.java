@@ -0,0 +1,166 @@
+package com.gugugaga.movie.mp4;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Parsed layout of an MP4 file: top-level boxes plus the sample tables of every track.
+ * Built once per file by {@link Mp4Parser} and shared read-only between requests.
+ */
+public final class Mp4Index {
+    private final long fileSize;
+    private final List<Mp4Box> boxes;
+    private final long movieTimescale;
+    private final long movieDuration;
+    private final List<Mp4Track> tracks;
+    // Segment maps per target duration, computed once and shared
+    private final Map<Double, List<Mp4Segment>> segmentCache = new ConcurrentHashMap<>();
+
+    public Mp4Index(long fileSize, List<Mp4Box> boxes, long movieTimescale, long movieDuration, List<Mp4Track> tracks) {
+        this.fileSize = fileSize;
+        this.boxes = Collections.unmodifiableList(boxes);
+        this.movieTimescale = movieTimescale;
+        this.movieDuration = movieDuration;
+        this.tracks = Collections.unmodifiableList(tracks);
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public List<Mp4Box> getBoxes() {
+        return boxes;
+    }
+
+    public List<Mp4Track> getTracks() {
+        return tracks;
+    }
+
+    /**
+     * Samples of all tracks together, what the sample tables grow with.
+     */
+    public long getSampleCount() {
+        long count = 0;
+        for (Mp4Track track : tracks) {
+            count += track.getSampleCount();
+        }
+        return count;
+    }
+
+    public Mp4Box findBox(String type) {
+        for (Mp4Box box : boxes) {
+            if (box.getType().equals(type)) {
+                return box;
+            }
+        }
+        return null;
+    }
+
+    public Mp4Box getMoov() {
+        return findBox("moov");
+    }
+
+    public double getDurationSeconds() {
+        if (movieTimescale > 0 && movieDuration > 0) {
+            return (double) movieDuration / movieTimescale;
+        }
+        double longest = 0;
+        for (Mp4Track track : tracks) {
+            longest = Math.max(longest, track.getDurationSeconds());
+        }
+        return longest;
+    }
+
+    /**
+     * @return the first video track, or the first track of an audio-only file
+     */
+    public Mp4Track getReferenceTrack() {
+        for (Mp4Track track : tracks) {
+            if (track.isVideo()) {
+                return track;
+            }
+        }
+        return tracks.isEmpty() ? null : tracks.get(0);
+    }
+
+    /**
+     * moov ahead of mdat means a player can start after reading the head of the file.
+     */
+    public boolean isFaststart() {
+        Mp4Box moov = getMoov();
+        Mp4Box mdat = findBox("mdat");
+        return moov != null && (mdat == null || moov.getOffset() < mdat.getOffset());
+    }
+
+    /**
+     * Byte span a player needs before the first sample: ftyp..moov for faststart files,
+     * just the moov box otherwise.
+     */
+    public Mp4Box getInitSection() {
+        Mp4Box moov = getMoov();
+        if (moov != null && isFaststart()) {
+            return new Mp4Box("init", 0, moov.getEnd(), 0);
+        }
+        return moov;
+    }
+
+    public List<Mp4Segment> getSegments(double targetSeconds) {
+        return segmentCache.computeIfAbsent(targetSeconds, target -> Collections.unmodifiableList(buildSegments(target)));
+    }
+
+    /**
+     * Cut the file into segments that start on a reference-track keyframe, each at least
+     * targetSeconds long (except the last one). The byte span of a segment covers the
+     * samples of every track decoded inside its time window.
+     */
+    private List<Mp4Segment> buildSegments(double targetSeconds) {
+        Mp4Track reference = getReferenceTrack();
+        List<Mp4Segment> segments = new ArrayList<>();
+        if (reference == null || reference.getSampleCount() == 0) {
+            return segments;
+        }
+
+        List<Double> boundaries = new ArrayList<>();
+        boundaries.add(reference.getSampleSeconds(0));
+        double nextBoundary = boundaries.get(0) + targetSeconds;
+        for (int n = 0; n < reference.getSyncSampleCount(); n++) {
+            double time = reference.getSampleSeconds(reference.getSyncSample(n));
+            if (time >= nextBoundary) {
+                boundaries.add(time);
+                nextBoundary = time + targetSeconds;
+            }
+        }
+        double endTime = Math.max(getDurationSeconds(), reference.getDurationSeconds());
+        boundaries.add(Math.max(endTime, boundaries.get(boundaries.size() - 1)));
+
+        for (int i = 0; i + 1 < boundaries.size(); i++) {
+            double start = boundaries.get(i);
+            double end = boundaries.get(i + 1);
+            boolean last = i + 2 == boundaries.size();
+            long minOffset = Long.MAX_VALUE;
+            long maxEnd = -1;
+            int[] firstSamples = new int[tracks.size()];
+            int[] endSamples = new int[tracks.size()];
+            for (int t = 0; t < tracks.size(); t++) {
+                Mp4Track track = tracks.get(t);
+                int from = i == 0 ? 0 : track.firstSampleAtOrAfter(track.toTicks(start));
+                int to = last ? track.getSampleCount() : track.firstSampleAtOrAfter(track.toTicks(end));
+                firstSamples[t] = from;
+                endSamples[t] = to;
+                for (int sample = from; sample < to; sample++) {
+                    long offset = track.getSampleOffset(sample);
+                    minOffset = Math.min(minOffset, offset);
+                    maxEnd = Math.max(maxEnd, offset + track.getSampleSize(sample));
+                }
+            }
+            if (maxEnd < 0) {
+                continue;
+            }
+            segments.add(new Mp4Segment(segments.size(), start, end - start, minOffset, maxEnd - minOffset, firstSamples, endSamples));
+        }
+        return segments;
+    }
+}
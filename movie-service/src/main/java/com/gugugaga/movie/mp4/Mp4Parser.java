@@ -0,0 +1,434 @@
+package com.gugugaga.movie.mp4;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.gugugaga.movie.exception.Mp4FormatException;
+import com.gugugaga.movie.storage.VideoReader;
+
+/**
+ * Minimal ISO-BMFF reader. Walks the top-level boxes with positional reads, loads the
+ * moov box into memory and flattens each track's stbl into a {@link Mp4Track}.
+ * Media data (mdat) is never read.
+ */
+public final class Mp4Parser {
+    // A two hour movie has a moov of a few MB, anything far above that is not worth indexing
+    static final long MAX_MOOV_SIZE = 64L * 1024 * 1024;
+
+    private Mp4Parser() {
+    }
+
+    public static Mp4Index parse(VideoReader reader) throws IOException {
+        long fileSize = reader.size();
+        List<Mp4Box> boxes = readTopLevelBoxes(reader, fileSize);
+        Mp4Box moov = null;
+        for (Mp4Box box : boxes) {
+            if (box.getType().equals("moov")) {
+                moov = box;
+                break;
+            }
+        }
+        if (moov == null) {
+            throw new Mp4FormatException("Box moov tidak ditemukan");
+        }
+        if (moov.getSize() > MAX_MOOV_SIZE) {
+            throw new Mp4FormatException("Box moov terlalu besar: " + moov.getSize());
+        }
+        ByteBuffer moovData = readFully(reader, moov.getOffset(), (int) moov.getSize());
+        return parseMoov(moovData, moov.getHeaderSize(), fileSize, boxes);
+    }
+
+    /**
+     * Parse an in-memory moov box (header included) against the given top-level layout.
+     */
+    public static Mp4Index parseMoov(ByteBuffer moovData, int headerSize, long fileSize, List<Mp4Box> boxes) {
+        try {
+            MovieHeader header = new MovieHeader();
+            List<Mp4Track> tracks = new ArrayList<>();
+            forEachChild(moovData, headerSize, moovData.limit(), (type, start, end) -> {
+                if (type.equals("mvhd")) {
+                    readMediaHeader(moovData, type, start, end, header);
+                } else if (type.equals("trak")) {
+                    Mp4Track track = parseTrack(moovData, start, end, fileSize);
+                    if (track != null) {
+                        tracks.add(track);
+                    }
+                }
+            });
+            return new Mp4Index(fileSize, boxes, header.timescale, header.duration, tracks);
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            // Whatever slipped past the size checks is still a broken file, not a server error
+            throw new Mp4FormatException("Box moov rusak: " + e.getMessage(), e);
+        }
+    }
+
+    public static List<Mp4Box> readTopLevelBoxes(VideoReader reader, long fileSize) throws IOException {
+        List<Mp4Box> boxes = new ArrayList<>();
+        long position = 0;
+        while (position + 8 <= fileSize) {
+            ByteBuffer header = readFully(reader, position, (int) Math.min(16, fileSize - position));
+            long size = header.getInt(0) & 0xFFFFFFFFL;
+            String type = fourcc(header, 4);
+            int headerSize = 8;
+            if (size == 1) {
+                if (header.limit() < 16) {
+                    throw new Mp4FormatException("Box " + type + " rusak");
+                }
+                size = header.getLong(8);
+                headerSize = 16;
+            } else if (size == 0) {
+                size = fileSize - position;
+            }
+            if (size < headerSize || position + size > fileSize) {
+                throw new Mp4FormatException("Box " + type + " rusak pada offset " + position);
+            }
+            boxes.add(new Mp4Box(type, position, size, headerSize));
+            position += size;
+        }
+        if (boxes.isEmpty() || !boxes.get(0).getType().equals("ftyp")) {
+            throw new Mp4FormatException("Bukan file MP4 (ftyp tidak ditemukan)");
+        }
+        return boxes;
+    }
+
+    private static Mp4Track parseTrack(ByteBuffer data, int trakStart, int trakEnd, long fileSize) {
+        TrackBuilder builder = new TrackBuilder();
+        forEachChild(data, trakStart, trakEnd, (type, start, end) -> {
+            if (type.equals("tkhd")) {
+                requirePayload(type, start, end, 4);
+                int version = data.get(start);
+                requirePayload(type, start, end, version == 1 ? 24 : 16);
+                builder.trackId = data.getInt(start + (version == 1 ? 20 : 12));
+            } else if (type.equals("mdia")) {
+                forEachChild(data, start, end, (mdiaType, mdiaStart, mdiaEnd) -> {
+                    if (mdiaType.equals("mdhd")) {
+                        MovieHeader header = new MovieHeader();
+                        readMediaHeader(data, mdiaType, mdiaStart, mdiaEnd, header);
+                        builder.timescale = header.timescale;
+                        builder.duration = header.duration;
+                    } else if (mdiaType.equals("hdlr")) {
+                        requirePayload(mdiaType, mdiaStart, mdiaEnd, 12);
+                        builder.handlerType = fourcc(data, mdiaStart + 8);
+                    } else if (mdiaType.equals("minf")) {
+                        forEachChild(data, mdiaStart, mdiaEnd, (minfType, minfStart, minfEnd) -> {
+                            if (minfType.equals("stbl")) {
+                                forEachChild(data, minfStart, minfEnd, (stblType, stblStart, stblEnd) ->
+                                        builder.readSampleTable(data, stblType, stblStart, stblEnd));
+                            }
+                        });
+                    }
+                });
+            }
+        });
+        return builder.build(fileSize);
+    }
+
+    private static void readMediaHeader(ByteBuffer data, String type, int start, int end, MovieHeader header) {
+        requirePayload(type, start, end, 4);
+        int version = data.get(start);
+        requirePayload(type, start, end, version == 1 ? 32 : 20);
+        if (version == 1) {
+            header.timescale = data.getInt(start + 20) & 0xFFFFFFFFL;
+            header.duration = data.getLong(start + 24);
+        } else {
+            header.timescale = data.getInt(start + 12) & 0xFFFFFFFFL;
+            header.duration = data.getInt(start + 16) & 0xFFFFFFFFL;
+        }
+    }
+
+    /**
+     * Visit the child boxes in [start, end) of an in-memory container; start/end passed
+     * to the visitor delimit the child's payload (after its header).
+     */
+    static void forEachChild(ByteBuffer data, int start, int end, BoxVisitor visitor) {
+        int position = start;
+        while (position + 8 <= end) {
+            long size = data.getInt(position) & 0xFFFFFFFFL;
+            String type = fourcc(data, position + 4);
+            int headerSize = 8;
+            if (size == 1) {
+                if (position + 16 > end) {
+                    throw new Mp4FormatException("Box " + type + " rusak");
+                }
+                size = data.getLong(position + 8);
+                headerSize = 16;
+            } else if (size == 0) {
+                size = end - position;
+            }
+            if (size < headerSize || position + size > end) {
+                throw new Mp4FormatException("Box " + type + " rusak");
+            }
+            visitor.visit(type, position + headerSize, (int) (position + size));
+            position += (int) size;
+        }
+    }
+
+    static void requirePayload(String type, int start, int end, long length) {
+        if (end - start < length) {
+            throw new Mp4FormatException("Box " + type + " terlalu pendek");
+        }
+    }
+
+    static String fourcc(ByteBuffer data, int position) {
+        byte[] bytes = new byte[4];
+        for (int i = 0; i < 4; i++) {
+            bytes[i] = data.get(position + i);
+        }
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    static ByteBuffer readFully(VideoReader reader, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            int read = reader.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException("Unexpected end of file at " + (position + buffer.position()));
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @FunctionalInterface
+    interface BoxVisitor {
+        void visit(String type, int start, int end);
+    }
+
+    private static final class MovieHeader {
+        private long timescale;
+        private long duration;
+    }
+
+    /**
+     * Collects the raw stbl tables of a track and turns them into the lookup tables of
+     * {@link Mp4Track}. Entry counts are checked against the box size before anything is
+     * allocated, so a corrupt count fails fast instead of exhausting the heap.
+     */
+    private static final class TrackBuilder {
+        private int trackId;
+        private String handlerType;
+        private String codec;
+        private long timescale;
+        private long duration;
+        private long[] sttsCounts = new long[0];
+        private long[] sttsDeltas = new long[0];
+        private long[] cttsCounts;
+        private int[] cttsOffsets;
+        private int[] syncSamples;
+        private long[] stscFirstChunks = new long[0];
+        private long[] stscSamplesPerChunk = new long[0];
+        private int sampleCount = -1;
+        private int constantSampleSize;
+        private int[] sampleSizes;
+        private long[] chunkOffsets;
+
+        private void readSampleTable(ByteBuffer data, String type, int start, int end) {
+            int entries;
+            switch (type) {
+                case "stsd":
+                    if (entryCount(data, type, start, end, 0) > 0) {
+                        requirePayload(type, start, end, 16);
+                        codec = fourcc(data, start + 12);
+                    }
+                    break;
+                case "stts":
+                    entries = entryCount(data, type, start, end, 8);
+                    sttsCounts = new long[entries];
+                    sttsDeltas = new long[entries];
+                    for (int i = 0; i < entries; i++) {
+                        sttsCounts[i] = data.getInt(start + 8 + i * 8) & 0xFFFFFFFFL;
+                        sttsDeltas[i] = data.getInt(start + 12 + i * 8) & 0xFFFFFFFFL;
+                    }
+                    break;
+                case "ctts":
+                    entries = entryCount(data, type, start, end, 8);
+                    cttsCounts = new long[entries];
+                    cttsOffsets = new int[entries];
+                    for (int i = 0; i < entries; i++) {
+                        cttsCounts[i] = data.getInt(start + 8 + i * 8) & 0xFFFFFFFFL;
+                        // Signed in version 1, and version 0 writers rely on the same wrap-around
+                        cttsOffsets[i] = data.getInt(start + 12 + i * 8);
+                    }
+                    break;
+                case "stss":
+                    entries = entryCount(data, type, start, end, 4);
+                    syncSamples = new int[entries];
+                    for (int i = 0; i < entries; i++) {
+                        syncSamples[i] = data.getInt(start + 8 + i * 4) - 1;
+                    }
+                    break;
+                case "stsc":
+                    entries = entryCount(data, type, start, end, 12);
+                    stscFirstChunks = new long[entries];
+                    stscSamplesPerChunk = new long[entries];
+                    for (int i = 0; i < entries; i++) {
+                        stscFirstChunks[i] = data.getInt(start + 8 + i * 12) & 0xFFFFFFFFL;
+                        stscSamplesPerChunk[i] = data.getInt(start + 12 + i * 12) & 0xFFFFFFFFL;
+                    }
+                    break;
+                case "stsz": {
+                    requirePayload(type, start, end, 12);
+                    constantSampleSize = data.getInt(start + 4);
+                    long count = data.getInt(start + 8) & 0xFFFFFFFFL;
+                    if (constantSampleSize < 0 || count > Integer.MAX_VALUE) {
+                        throw new Mp4FormatException("Box stsz rusak");
+                    }
+                    sampleCount = (int) count;
+                    if (constantSampleSize == 0) {
+                        requirePayload(type, start, end, 12 + count * 4);
+                        sampleSizes = new int[sampleCount];
+                        for (int i = 0; i < sampleCount; i++) {
+                            sampleSizes[i] = sampleSize(data.getInt(start + 12 + i * 4));
+                        }
+                    }
+                    break;
+                }
+                case "stz2": {
+                    requirePayload(type, start, end, 12);
+                    int fieldSize = data.get(start + 7) & 0xFF;
+                    long count = data.getInt(start + 8) & 0xFFFFFFFFL;
+                    if ((fieldSize != 4 && fieldSize != 8 && fieldSize != 16) || count > Integer.MAX_VALUE) {
+                        throw new Mp4FormatException("Box stz2 rusak");
+                    }
+                    requirePayload(type, start, end, 12 + (count * fieldSize + 7) / 8);
+                    sampleCount = (int) count;
+                    sampleSizes = new int[sampleCount];
+                    for (int i = 0; i < sampleCount; i++) {
+                        if (fieldSize == 4) {
+                            int packed = data.get(start + 12 + i / 2) & 0xFF;
+                            sampleSizes[i] = i % 2 == 0 ? packed >> 4 : packed & 0x0F;
+                        } else if (fieldSize == 8) {
+                            sampleSizes[i] = data.get(start + 12 + i) & 0xFF;
+                        } else {
+                            sampleSizes[i] = data.getShort(start + 12 + i * 2) & 0xFFFF;
+                        }
+                    }
+                    break;
+                }
+                case "stco":
+                    entries = entryCount(data, type, start, end, 4);
+                    chunkOffsets = new long[entries];
+                    for (int i = 0; i < entries; i++) {
+                        chunkOffsets[i] = data.getInt(start + 8 + i * 4) & 0xFFFFFFFFL;
+                    }
+                    break;
+                case "co64":
+                    entries = entryCount(data, type, start, end, 8);
+                    chunkOffsets = new long[entries];
+                    for (int i = 0; i < entries; i++) {
+                        chunkOffsets[i] = data.getLong(start + 8 + i * 8);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private Mp4Track build(long fileSize) {
+            if (sampleCount <= 0 || chunkOffsets == null || stscFirstChunks.length == 0) {
+                return null;
+            }
+            if (sampleSizes == null && (long) sampleCount * constantSampleSize > fileSize) {
+                throw new Mp4FormatException("Tabel sampel track " + trackId + " lebih besar dari file");
+            }
+
+            // stsc: the first sample of every chunk
+            int[] chunkFirstSamples = new int[chunkOffsets.length];
+            long sample = 0;
+            int chunk = 0;
+            for (int entry = 0; entry < stscFirstChunks.length && sample < sampleCount; entry++) {
+                long firstChunk = stscFirstChunks[entry];
+                long lastChunk = entry + 1 < stscFirstChunks.length ? stscFirstChunks[entry + 1] - 1 : chunkOffsets.length;
+                if (firstChunk != chunk + 1 || lastChunk > chunkOffsets.length) {
+                    throw new Mp4FormatException("Tabel stsc merujuk chunk yang tidak ada: " + firstChunk);
+                }
+                for (; chunk < lastChunk; chunk++) {
+                    chunkFirstSamples[chunk] = (int) Math.min(sample, sampleCount);
+                    sample += stscSamplesPerChunk[entry];
+                }
+            }
+            if (sample < sampleCount) {
+                throw new Mp4FormatException("Tabel sampel track " + trackId + " tidak lengkap");
+            }
+            for (; chunk < chunkOffsets.length; chunk++) {
+                chunkFirstSamples[chunk] = sampleCount;
+            }
+
+            // stts: one run per entry, samples past the table keep the end time
+            int[] runFirstSamples = new int[sttsCounts.length + 1];
+            long[] runStartTimes = new long[sttsCounts.length + 1];
+            long[] runDeltas = new long[sttsCounts.length + 1];
+            int runs = 0;
+            long time = 0;
+            sample = 0;
+            for (int entry = 0; entry < sttsCounts.length && sample < sampleCount; entry++) {
+                if (sttsCounts[entry] == 0) {
+                    continue;
+                }
+                runFirstSamples[runs] = (int) sample;
+                runStartTimes[runs] = time;
+                runDeltas[runs] = sttsDeltas[entry];
+                runs++;
+                long count = Math.min(sttsCounts[entry], sampleCount - sample);
+                sample += count;
+                time += count * sttsDeltas[entry];
+            }
+            if (runs == 0 || sample < sampleCount) {
+                runFirstSamples[runs] = (int) sample;
+                runStartTimes[runs] = time;
+                runDeltas[runs] = 0;
+                runs++;
+            }
+
+            // ctts: composition offset runs, samples past the table get none
+            int[] compositionFirstSamples = null;
+            int[] compositionOffsets = null;
+            if (cttsCounts != null && cttsCounts.length > 0) {
+                compositionFirstSamples = new int[cttsCounts.length + 1];
+                compositionOffsets = new int[cttsCounts.length + 1];
+                int compositionRuns = 0;
+                sample = 0;
+                for (int entry = 0; entry < cttsCounts.length && sample < sampleCount; entry++) {
+                    if (cttsCounts[entry] == 0) {
+                        continue;
+                    }
+                    compositionFirstSamples[compositionRuns] = (int) sample;
+                    compositionOffsets[compositionRuns] = cttsOffsets[entry];
+                    compositionRuns++;
+                    sample += Math.min(cttsCounts[entry], sampleCount - sample);
+                }
+                if (compositionRuns == 0 || sample < sampleCount) {
+                    compositionFirstSamples[compositionRuns] = (int) sample;
+                    compositionOffsets[compositionRuns] = 0;
+                    compositionRuns++;
+                }
+                compositionFirstSamples = Arrays.copyOf(compositionFirstSamples, compositionRuns);
+                compositionOffsets = Arrays.copyOf(compositionOffsets, compositionRuns);
+            }
+            return new Mp4Track(trackId, handlerType, codec, timescale, Math.max(duration, time),
+                    sampleCount, constantSampleSize, sampleSizes, chunkOffsets, chunkFirstSamples,
+                    Arrays.copyOf(runFirstSamples, runs), Arrays.copyOf(runStartTimes, runs), Arrays.copyOf(runDeltas, runs),
+                    compositionFirstSamples, compositionOffsets, syncSamples);
+        }
+
+        private static int sampleSize(int size) {
+            if (size < 0) {
+                throw new Mp4FormatException("Ukuran sampel tidak valid: " + (size & 0xFFFFFFFFL));
+            }
+            return size;
+        }
+
+        // Entry count of a full box whose entries follow version/flags and the count
+        private static int entryCount(ByteBuffer data, String type, int start, int end, int entrySize) {
+            requirePayload(type, start, end, 8);
+            long entries = data.getInt(start + 4) & 0xFFFFFFFFL;
+            requirePayload(type, start, end, 8 + entries * entrySize);
+            return (int) entries;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.gugugaga.movie.mp4;
+
+/**
+ * Keyframe-aligned slice of the file: a time window, the samples of every track decoded
+ * inside it and the byte span holding them.
+ */
+public final class Mp4Segment {
+    private final int sequence;
+    private final double startSeconds;
+    private final double durationSeconds;
+    private final long offset;
+    private final long length;
+    // Samples [firstSamples[i], endSamples[i]) of the i-th track of the index
+    private final int[] firstSamples;
+    private final int[] endSamples;
+
+    public Mp4Segment(int sequence, double startSeconds, double durationSeconds, long offset, long length,
+                      int[] firstSamples, int[] endSamples) {
+        this.sequence = sequence;
+        this.startSeconds = startSeconds;
+        this.durationSeconds = durationSeconds;
+        this.offset = offset;
+        this.length = length;
+        this.firstSamples = firstSamples;
+        this.endSamples = endSamples;
+    }
+
+    public int getSequence() {
+        return sequence;
+    }
+
+    public double getStartSeconds() {
+        return startSeconds;
+    }
+
+    public double getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public int getFirstSample(int track) {
+        return firstSamples[track];
+    }
+
+    public int getEndSample(int track) {
+        return endSamples[track];
+    }
+}
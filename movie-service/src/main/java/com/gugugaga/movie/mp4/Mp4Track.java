@@ -0,0 +1,237 @@
+package com.gugugaga.movie.mp4;
+
+import java.util.Arrays;
+
+/**
+ * Sample table (stbl) of one track: where every sample lives in the file, how big it is,
+ * when it is decoded and whether it is a keyframe.
+ *
+ * Kept as compact as the stbl itself: per chunk and per stts run, plus one size per sample
+ * only when the sizes differ. Offsets and times are resolved on lookup, so a hostile stsz
+ * claiming billions of constant-size samples costs no memory.
+ */
+public final class Mp4Track {
+    private static final int CHECKPOINT_INTERVAL = 64;
+
+    private final int trackId;
+    private final String handlerType;
+    private final String codec;
+    private final long timescale;
+    private final long duration;
+    private final int sampleCount;
+    // Used when sampleSizes is null (stsz with a constant size)
+    private final int constantSampleSize;
+    private final int[] sampleSizes;
+    // Sum of the sizes of every CHECKPOINT_INTERVAL samples, so an offset adds up at most that many sizes
+    private final long[] sizeCheckpoints;
+    private final long[] chunkOffsets;
+    // First sample of each chunk, chunks without samples share the next one's
+    private final int[] chunkFirstSamples;
+    // stts runs: first sample, decode time of that sample and the delta of every sample in the run
+    private final int[] runFirstSamples;
+    private final long[] runStartTimes;
+    private final long[] runDeltas;
+    // ctts runs: first sample and composition offset, null when decode order is presentation order
+    private final int[] compositionFirstSamples;
+    private final int[] compositionOffsets;
+    // 0-based sync sample indices, null when every sample is a sync sample (no stss)
+    private final int[] syncSamples;
+
+    public Mp4Track(int trackId, String handlerType, String codec, long timescale, long duration,
+                    int sampleCount, int constantSampleSize, int[] sampleSizes,
+                    long[] chunkOffsets, int[] chunkFirstSamples,
+                    int[] runFirstSamples, long[] runStartTimes, long[] runDeltas,
+                    int[] compositionFirstSamples, int[] compositionOffsets, int[] syncSamples) {
+        this.trackId = trackId;
+        this.handlerType = handlerType;
+        this.codec = codec;
+        this.timescale = timescale;
+        this.duration = duration;
+        this.sampleCount = sampleCount;
+        this.constantSampleSize = constantSampleSize;
+        this.sampleSizes = sampleSizes;
+        this.sizeCheckpoints = sampleSizes != null ? checkpoints(sampleSizes) : null;
+        this.chunkOffsets = chunkOffsets;
+        this.chunkFirstSamples = chunkFirstSamples;
+        this.runFirstSamples = runFirstSamples;
+        this.runStartTimes = runStartTimes;
+        this.runDeltas = runDeltas;
+        this.compositionFirstSamples = compositionFirstSamples;
+        this.compositionOffsets = compositionOffsets;
+        this.syncSamples = syncSamples;
+    }
+
+    public int getTrackId() {
+        return trackId;
+    }
+
+    public String getHandlerType() {
+        return handlerType;
+    }
+
+    public String getCodec() {
+        return codec;
+    }
+
+    public long getTimescale() {
+        return timescale;
+    }
+
+    public long getDuration() {
+        return duration;
+    }
+
+    public boolean isVideo() {
+        return "vide".equals(handlerType);
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    public long getSampleOffset(int sample) {
+        int chunk = lastAtOrBefore(chunkFirstSamples, sample);
+        return chunkOffsets[chunk] + sizeBefore(sample) - sizeBefore(chunkFirstSamples[chunk]);
+    }
+
+    // Total size of the samples [0, sample)
+    private long sizeBefore(int sample) {
+        if (sampleSizes == null) {
+            return (long) sample * constantSampleSize;
+        }
+        int from = sample / CHECKPOINT_INTERVAL * CHECKPOINT_INTERVAL;
+        long size = sizeCheckpoints[sample / CHECKPOINT_INTERVAL];
+        for (int i = from; i < sample; i++) {
+            size += sampleSizes[i];
+        }
+        return size;
+    }
+
+    public int getSampleSize(int sample) {
+        return sampleSizes != null ? sampleSizes[sample] : constantSampleSize;
+    }
+
+    public long getSampleTime(int sample) {
+        int run = lastAtOrBefore(runFirstSamples, sample);
+        return runStartTimes[run] + (sample - runFirstSamples[run]) * runDeltas[run];
+    }
+
+    public long getSampleDuration(int sample) {
+        return runDeltas[lastAtOrBefore(runFirstSamples, sample)];
+    }
+
+    public boolean hasCompositionOffsets() {
+        return compositionOffsets != null;
+    }
+
+    /**
+     * @return presentation time minus decode time of the sample, in timescale units
+     */
+    public int getCompositionOffset(int sample) {
+        if (compositionOffsets == null) {
+            return 0;
+        }
+        int run = lastAtOrBefore(compositionFirstSamples, sample);
+        return run >= 0 ? compositionOffsets[run] : 0;
+    }
+
+    public double getSampleSeconds(int sample) {
+        return toSeconds(getSampleTime(sample));
+    }
+
+    public double getDurationSeconds() {
+        return toSeconds(duration);
+    }
+
+    public double toSeconds(long ticks) {
+        return timescale > 0 ? (double) ticks / timescale : 0;
+    }
+
+    public long toTicks(double seconds) {
+        return (long) Math.floor(seconds * timescale);
+    }
+
+    public boolean isSyncSample(int sample) {
+        return syncSamples == null || Arrays.binarySearch(syncSamples, sample) >= 0;
+    }
+
+    public int getSyncSampleCount() {
+        return syncSamples != null ? syncSamples.length : sampleCount;
+    }
+
+    /**
+     * @return the 0-based sample index of the n-th keyframe in decode order
+     */
+    public int getSyncSample(int n) {
+        return syncSamples != null ? syncSamples[n] : n;
+    }
+
+    /**
+     * @return first sample decoded at or after the given time, or the sample count when none is
+     */
+    public int firstSampleAtOrAfter(long ticks) {
+        // Decode times never decrease, so the first match is a lower bound
+        int low = 0;
+        int high = sampleCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (getSampleTime(mid) < ticks) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return closest keyframe decoded at or before the given time (the first keyframe when the time precedes it)
+     */
+    public int keyframeAtOrBefore(long ticks) {
+        int sample = firstSampleAtOrAfter(ticks);
+        if (sample >= getSampleCount() || getSampleTime(sample) > ticks) {
+            sample--;
+        }
+        if (sample < 0) {
+            sample = 0;
+        }
+        if (syncSamples == null) {
+            return sample;
+        }
+        int index = Arrays.binarySearch(syncSamples, sample);
+        if (index >= 0) {
+            return syncSamples[index];
+        }
+        int insertion = -index - 1;
+        return insertion == 0 ? syncSamples[0] : syncSamples[insertion - 1];
+    }
+
+    private static long[] checkpoints(int[] sizes) {
+        long[] checkpoints = new long[sizes.length / CHECKPOINT_INTERVAL + 1];
+        long size = 0;
+        for (int i = 0; i <= sizes.length; i++) {
+            if (i % CHECKPOINT_INTERVAL == 0) {
+                checkpoints[i / CHECKPOINT_INTERVAL] = size;
+            }
+            if (i < sizes.length) {
+                size += sizes[i];
+            }
+        }
+        return checkpoints;
+    }
+
+    // Index of the last entry <= value in a sorted array whose first entry is <= value
+    private static int lastAtOrBefore(int[] sorted, int value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] <= value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low - 1;
+    }
+}
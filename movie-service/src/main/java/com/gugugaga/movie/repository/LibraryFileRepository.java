@@ -0,0 +1,16 @@
+package com.gugugaga.movie.repository;
+import com.gugugaga.movie.entity.LibraryFile;
+import com.gugugaga.movie.entity.LibraryFileStatus;
+
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+
+public interface LibraryFileRepository extends JpaRepository<LibraryFile, Long> {
+    Optional<LibraryFile> findByFileName(String fileName);
+
+    List<LibraryFile> findByStatusOrderByFileName(LibraryFileStatus status);
+
+    List<LibraryFile> findAllByOrderByFileName();
+}
@@ -3,10 +3,32 @@ import com.gugugaga.movie.entity.Movie;
 
 import java.util.List;
 import java.util.Optional;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 
 public interface MovieRepository extends JpaRepository<Movie, Long> {
     List<Movie> findById(long id);
 
+    List<Movie> findByVideoFileName(String videoFileName);
+
+    // The cursor movie of a catalog page may have been deleted since, native SQL skips the restriction
+    @Query(value = "SELECT * FROM tb_movies WHERE id = :id", nativeQuery = true)
+    Optional<Movie> findCursorById(@Param("id") long id);
+
+    // Keyset pages of the catalog: rows after the (key, id) of the previous page's last movie.
+    // "key >= cursor" lets the (key, id) index seek to the cursor, the OR breaks ties on id.
+    // Deleted movies are filtered by the entity's @SQLRestriction, see the partial indexes in V7.
+
+    @Query("SELECT m FROM Movie m WHERE m.id > :afterId ORDER BY m.id")
+    List<Movie> findCatalogPageById(@Param("afterId") long afterId, Limit limit);
+
+    @Query("SELECT m FROM Movie m WHERE m.title >= :title AND (m.title > :title OR m.id > :afterId) ORDER BY m.title, m.id")
+    List<Movie> findCatalogPageByTitle(@Param("title") String title, @Param("afterId") long afterId, Limit limit);
+
+    @Query("SELECT m FROM Movie m WHERE m.releaseYear <= :releaseYear AND (m.releaseYear < :releaseYear OR m.id < :afterId) "
+            + "ORDER BY m.releaseYear DESC, m.id DESC")
+    List<Movie> findCatalogPageByReleaseYear(@Param("releaseYear") int releaseYear, @Param("afterId") long afterId, Limit limit);
 }
@@ -0,0 +1,28 @@
+package com.gugugaga.movie.repository;
+import com.gugugaga.movie.entity.PackagingJob;
+import com.gugugaga.movie.entity.PackagingJobStatus;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+
+public interface PackagingJobRepository extends JpaRepository<PackagingJob, Long> {
+    Optional<PackagingJob> findFirstByMovieIdOrderByIdDesc(Long movieId);
+
+    List<PackagingJob> findByStatusIn(Collection<PackagingJobStatus> statuses);
+
+    List<PackagingJob> findByStatusAndUpdatedAtBefore(PackagingJobStatus status, LocalDateTime updatedAt);
+
+    // Atomically move a job from QUEUED to RUNNING so only one worker (or node) picks it up
+    @Modifying
+    @Transactional
+    @Query("UPDATE PackagingJob j SET j.status = :running, j.attempts = j.attempts + 1, j.startedAt = :now, j.updatedAt = :now WHERE j.id = :id AND j.status = :queued")
+    int claim(@Param("id") Long id, @Param("queued") PackagingJobStatus queued, @Param("running") PackagingJobStatus running, @Param("now") LocalDateTime now);
+}
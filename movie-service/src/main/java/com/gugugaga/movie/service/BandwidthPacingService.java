@@ -0,0 +1,53 @@
+package com.gugugaga.movie.service;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.gugugaga.movie.config.MovieConfiguration;
+import com.gugugaga.movie.util.BandwidthPacer;
+
+@Service
+public class BandwidthPacingService {
+    private final UserPlanService userPlanService;
+    private final MovieConfiguration movieConfig;
+    // One bucket per user, shared by all of their parallel streams
+    private final Cache<Long, BandwidthPacer> pacers;
+
+    public BandwidthPacingService(UserPlanService userPlanService, MovieConfiguration movieConfig) {
+        this.userPlanService = userPlanService;
+        this.movieConfig = movieConfig;
+        this.pacers = Caffeine.newBuilder()
+                .expireAfterAccess(10, TimeUnit.MINUTES)
+                .maximumSize(100_000)
+                .build();
+    }
+
+    /**
+     * The plan's rate is looked up on every request (UserPlanService caches it), so an
+     * upgrade, or a plan unknown while auth-service was down, applies to the user's next
+     * request and to the streams already sharing the pacer.
+     *
+     * @return the user's pacer, or null when pacing is disabled
+     */
+    public BandwidthPacer pacerFor(Long userId) {
+        MovieConfiguration.Streaming.Pacing pacing = movieConfig.getStreaming().getPacing();
+        if (!pacing.isEnabled() || userId == null) {
+            return null;
+        }
+        long rate = rateFor(userId);
+        BandwidthPacer pacer = pacers.get(userId, id -> new BandwidthPacer(rate, pacing.getBurstBytes()));
+        pacer.setBytesPerSecond(rate);
+        return pacer;
+    }
+
+    private long rateFor(Long userId) {
+        MovieConfiguration.Streaming.Pacing pacing = movieConfig.getStreaming().getPacing();
+        String plan = userPlanService.getPlanName(userId).toLowerCase(Locale.ROOT);
+        Long rate = pacing.getPlanBytesPerSecond().get(plan);
+        return rate != null && rate > 0 ? rate : pacing.getDefaultBytesPerSecond();
+    }
+}
@@ -0,0 +1,378 @@
+package com.gugugaga.movie.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.gugugaga.movie.config.MovieConfiguration;
+import com.gugugaga.movie.entity.VideoInfo;
+import com.gugugaga.movie.mp4.Mp4FaststartView;
+import com.gugugaga.movie.storage.StoredVideo;
+import com.gugugaga.movie.storage.VideoReader;
+import com.gugugaga.movie.storage.VideoStorage;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Reference-counted cache of read-only FileChannels, one per video file version.
+ *
+ * Streams share a channel through positional reads, which don't touch the channel's
+ * own position. Idle channels are closed by a periodic sweep and the number of cached
+ * descriptors is capped; when every cached channel is busy, a stream gets a private
+ * channel that is closed on release, like before.
+ *
+ * Videos without a local file are read through their {@link VideoStorage} instead,
+ * one reader per lease.
+ */
+@Component
+public class FileChannelCache {
+    private static final Logger log = LoggerFactory.getLogger(FileChannelCache.class);
+    private static final int MAX_REOPEN_ATTEMPTS = 3;
+
+    private final HotRegionCache hotRegionCache;
+    private final VideoStorage videoStorage;
+    private final MovieConfiguration movieConfig;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public FileChannelCache(HotRegionCache hotRegionCache, VideoStorage videoStorage, MovieConfiguration movieConfig, MeterRegistry meterRegistry) {
+        this.hotRegionCache = hotRegionCache;
+        this.videoStorage = videoStorage;
+        this.movieConfig = movieConfig;
+        Gauge.builder("movie.stream.channels.open", entries, Map::size)
+                .description("Read-only file channels held open by the channel cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Lease a channel for the video. Always close the lease, the channel itself
+     * stays open for the next stream until it goes idle.
+     */
+    public Lease acquire(VideoInfo videoInfo) {
+        return acquire(videoInfo, true);
+    }
+
+    /**
+     * Like {@link #acquire}, for reads no viewer asked for (read-ahead): the request is
+     * not counted towards the hot region ranking.
+     */
+    Lease acquireUncounted(VideoInfo videoInfo) {
+        return acquire(videoInfo, false);
+    }
+
+    private Lease acquire(VideoInfo videoInfo, boolean viewerRequest) {
+        if (videoInfo.getFile() == null) {
+            return new Lease(new RemoteSource(videoStorage, videoInfo.getStoredVideo()), null, videoInfo.getFaststartView());
+        }
+        Path path = videoInfo.getFile().toPath();
+        HotRegionCache.MappedRegions regions = viewerRequest ? hotRegionCache.lookup(videoInfo) : hotRegionCache.peek(videoInfo);
+        MovieConfiguration.Streaming.ChannelCache config = movieConfig.getStreaming().getChannelCache();
+        if (!config.isEnabled()) {
+            return new Lease(new Entry(null, path), regions, videoInfo.getFaststartView());
+        }
+        // The ETag changes when the file is replaced, so a new version gets a new channel
+        String key = path + "|" + videoInfo.getEtag();
+        while (true) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                if (entries.size() >= config.getMaxOpenChannels() && !evictIdle(entries.size() - config.getMaxOpenChannels() + 1)) {
+                    // Budget exhausted by busy channels: don't cache this one
+                    return new Lease(new Entry(null, path), regions, videoInfo.getFaststartView());
+                }
+                Entry created = new Entry(key, path);
+                entry = entries.putIfAbsent(key, created);
+                if (entry == null) {
+                    entry = created;
+                }
+            }
+            if (entry.retain()) {
+                return new Lease(entry, regions, videoInfo.getFaststartView());
+            }
+            // Lost a race with eviction, the retired entry is gone from the map
+            entries.remove(key, entry);
+        }
+    }
+
+    /**
+     * Close channels that no stream has used for idle-close-seconds.
+     */
+    @Scheduled(fixedDelayString = "${app.movie.streaming.channel-cache.sweep-interval-millis:15000}")
+    public void closeIdleChannels() {
+        long idleNanos = TimeUnit.SECONDS.toNanos(movieConfig.getStreaming().getChannelCache().getIdleCloseSeconds());
+        long now = System.nanoTime();
+        for (Entry entry : entries.values()) {
+            if (entry.isUnused() && now - entry.lastReleased >= idleNanos && entry.retireIfIdle()) {
+                entries.remove(entry.key, entry);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void closeAll() {
+        for (Entry entry : entries.values()) {
+            entry.retire();
+        }
+        entries.clear();
+    }
+
+    /**
+     * Retire up to {@code count} unused channels, least recently released first.
+     *
+     * @return true when at least one descriptor was freed
+     */
+    private boolean evictIdle(int count) {
+        List<Entry> idle = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (entry.isUnused()) {
+                idle.add(entry);
+            }
+        }
+        idle.sort(Comparator.comparingLong(entry -> entry.lastReleased));
+        int evicted = 0;
+        for (Entry entry : idle) {
+            if (evicted >= count) {
+                break;
+            }
+            if (entry.retireIfIdle()) {
+                entries.remove(entry.key, entry);
+                evicted++;
+            }
+        }
+        return evicted > 0;
+    }
+
+    /**
+     * A video this node has no file for, opened on first read.
+     */
+    private static final class RemoteSource {
+        private final VideoStorage storage;
+        private final StoredVideo video;
+        private VideoReader reader;
+
+        private RemoteSource(VideoStorage storage, StoredVideo video) {
+            this.storage = storage;
+            this.video = video;
+        }
+
+        synchronized VideoReader reader() throws IOException {
+            if (reader == null) {
+                reader = storage.open(video);
+            }
+            return reader;
+        }
+
+        synchronized void close() {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    log.warn("Failed to close reader of {}: {}", video.getName(), e.getMessage());
+                }
+                reader = null;
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final String key; // null for uncached, single-use channels
+        private final Path path;
+        private volatile FileChannel channel;
+        private int references;
+        private boolean retired;
+        private volatile long lastReleased = System.nanoTime();
+
+        private Entry(String key, Path path) {
+            this.key = key;
+            this.path = path;
+        }
+
+        synchronized boolean retain() {
+            if (retired) {
+                return false;
+            }
+            references++;
+            return true;
+        }
+
+        synchronized void release() {
+            references--;
+            lastReleased = System.nanoTime();
+            if (references == 0 && (retired || key == null)) {
+                closeQuietly();
+            }
+        }
+
+        synchronized boolean isUnused() {
+            return !retired && references == 0;
+        }
+
+        synchronized boolean retireIfIdle() {
+            if (retired || references > 0) {
+                return false;
+            }
+            retire();
+            return true;
+        }
+
+        synchronized void retire() {
+            retired = true;
+            if (references == 0) {
+                closeQuietly();
+            }
+        }
+
+        /**
+         * The channel, opened on first use. Replaces it when it was closed under us:
+         * an interrupt on any thread blocked in I/O closes a FileChannel for all its users.
+         */
+        synchronized FileChannel channel(FileChannel stale) throws IOException {
+            if (channel == null || (channel == stale && !channel.isOpen())) {
+                channel = FileChannel.open(path, StandardOpenOption.READ);
+            }
+            return channel;
+        }
+
+        private void closeQuietly() {
+            FileChannel current = channel;
+            channel = null;
+            if (current != null) {
+                try {
+                    current.close();
+                } catch (IOException e) {
+                    log.warn("Failed to close video channel {}: {}", path, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * One stream's hold on a cached channel. Only positional operations are exposed so
+     * concurrent streams never disturb each other. Regions mapped by the hot tier are
+     * served from memory.
+     *
+     * Positions are those of the served bytes: with a faststart view they are translated
+     * to the file, and the patched moov comes from memory.
+     */
+    public static final class Lease implements AutoCloseable {
+        private final Entry entry;
+        private final RemoteSource remote;
+        private final HotRegionCache.MappedRegions regions;
+        private final Mp4FaststartView view;
+        private ReadAheadService.Session readAhead;
+        private boolean closed;
+
+        private Lease(Entry entry, HotRegionCache.MappedRegions regions, Mp4FaststartView view) {
+            this.entry = entry;
+            this.remote = null;
+            this.regions = regions;
+            this.view = view;
+            if (entry.key == null) {
+                entry.retain();
+            }
+        }
+
+        private Lease(RemoteSource remote, HotRegionCache.MappedRegions regions, Mp4FaststartView view) {
+            this.entry = null;
+            this.remote = remote;
+            this.regions = regions;
+            this.view = view;
+        }
+
+        /**
+         * Serve positions covered by the viewer's prefetched window from memory.
+         */
+        public void setReadAhead(ReadAheadService.Session readAhead) {
+            this.readAhead = readAhead;
+        }
+
+        public int read(ByteBuffer buffer, long position) throws IOException {
+            int read = readServed(buffer, position);
+            if (readAhead != null && read > 0) {
+                readAhead.advanced(position + read);
+            }
+            return read;
+        }
+
+        private int readServed(ByteBuffer buffer, long position) throws IOException {
+            if (readAhead != null) {
+                int read = readAhead.read(buffer, position);
+                if (read >= 0) {
+                    return read;
+                }
+            }
+            if (view == null) {
+                return readFile(buffer, position);
+            }
+            ByteBuffer header = view.headerSlice(position, buffer.remaining());
+            if (header != null) {
+                int length = header.remaining();
+                buffer.put(header);
+                return length;
+            }
+            // Never read across a piece boundary of the view
+            int limit = buffer.limit();
+            long contiguous = view.contiguousLength(position);
+            if (contiguous < buffer.remaining()) {
+                buffer.limit(buffer.position() + (int) contiguous);
+            }
+            try {
+                return readFile(buffer, view.toFileOffset(position));
+            } finally {
+                buffer.limit(limit);
+            }
+        }
+
+        private int readFile(ByteBuffer buffer, long position) throws IOException {
+            ByteBuffer mapped = regions != null ? regions.slice(position, buffer.remaining()) : null;
+            if (mapped != null) {
+                int length = mapped.remaining();
+                buffer.put(mapped);
+                return length;
+            }
+            if (remote != null) {
+                return remote.reader().read(buffer, position);
+            }
+            FileChannel channel = entry.channel(null);
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    return channel.read(buffer, position);
+                } catch (ClosedByInterruptException e) {
+                    throw e; // this stream was cancelled
+                } catch (ClosedChannelException e) {
+                    if (attempt >= MAX_REOPEN_ATTEMPTS || Thread.currentThread().isInterrupted()) {
+                        throw e;
+                    }
+                    channel = entry.channel(channel);
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                if (remote != null) {
+                    remote.close();
+                } else {
+                    entry.release();
+                }
+            }
+        }
+    }
+}
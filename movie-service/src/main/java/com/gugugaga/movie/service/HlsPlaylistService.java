@@ -0,0 +1,118 @@
+package com.gugugaga.movie.service;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Locale;
+
+import org.springframework.stereotype.Service;
+
+import com.gugugaga.movie.config.MovieConfiguration;
+import com.gugugaga.movie.config.VideoProperties;
+import com.gugugaga.movie.entity.VideoInfo;
+import com.gugugaga.movie.exception.SegmentNotFoundException;
+import com.gugugaga.movie.mp4.Mp4Fragmenter;
+import com.gugugaga.movie.mp4.Mp4Index;
+import com.gugugaga.movie.mp4.Mp4Segment;
+import com.gugugaga.movie.storage.VideoReader;
+import com.gugugaga.movie.storage.VideoStorage;
+
+/**
+ * HLS on top of the original MP4, remuxed on the fly into fragmented MP4 (no transcoding).
+ */
+@Service
+public class HlsPlaylistService {
+    private final Mp4IndexService mp4IndexService;
+    private final VideoStorage videoStorage;
+    private final VideoProperties videoProperties;
+    private final MovieConfiguration movieConfig;
+
+    public HlsPlaylistService(Mp4IndexService mp4IndexService, VideoStorage videoStorage, VideoProperties videoProperties,
+                              MovieConfiguration movieConfig) {
+        this.mp4IndexService = mp4IndexService;
+        this.videoStorage = videoStorage;
+        this.videoProperties = videoProperties;
+        this.movieConfig = movieConfig;
+    }
+
+    /**
+     * Build an HLS media playlist of fMP4 segments cut from the original MP4.
+     *
+     * Business Flow:
+     * 1. Load (or parse once) the moov sample tables of the file
+     * 2. Cut segments on keyframes close to app.video.segment-duration
+     * 3. Point EXT-X-MAP at the init segment and emit one entry per media segment,
+     *    both relative to the playlist (hls/init.mp4, hls/{n}.m4s)
+     *
+     * The byte-range slices of the progressive file are not valid HLS segments (they
+     * carry no moof), so each segment is remuxed when requested, see {@link #getFragment}.
+     */
+    public String buildMediaPlaylist(VideoInfo videoInfo, String query) {
+        Mp4Index index = mp4IndexService.getIndex(videoInfo);
+        List<Mp4Segment> segments = index.getSegments(videoProperties.getSegmentDuration());
+
+        long targetDuration = videoProperties.getSegmentDuration();
+        for (Mp4Segment segment : segments) {
+            targetDuration = Math.max(targetDuration, (long) Math.ceil(segment.getDurationSeconds()));
+        }
+
+        StringBuilder playlist = new StringBuilder(64 + segments.size() * 48);
+        playlist.append("#EXTM3U\n");
+        playlist.append("#EXT-X-VERSION:7\n");
+        playlist.append("#EXT-X-TARGETDURATION:").append(targetDuration).append('\n');
+        playlist.append("#EXT-X-MEDIA-SEQUENCE:0\n");
+        playlist.append("#EXT-X-PLAYLIST-TYPE:VOD\n");
+        playlist.append("#EXT-X-INDEPENDENT-SEGMENTS\n");
+        playlist.append("#EXT-X-MAP:URI=\"hls/init.mp4").append(query).append("\"\n");
+        for (Mp4Segment segment : segments) {
+            playlist.append("#EXTINF:").append(String.format(Locale.ROOT, "%.3f", segment.getDurationSeconds())).append(",\n");
+            playlist.append("hls/").append(segment.getSequence()).append(".m4s").append(query).append('\n');
+        }
+        playlist.append("#EXT-X-ENDLIST\n");
+        return playlist.toString();
+    }
+
+    public byte[] getInitSegment(VideoInfo videoInfo) {
+        return mp4IndexService.getInitSegment(videoInfo);
+    }
+
+    /**
+     * moof and mdat header of a media segment, plus the file regions its samples come from.
+     *
+     * @throws SegmentNotFoundException when the playlist has no such segment
+     */
+    public Mp4Fragmenter.Fragment getFragment(VideoInfo videoInfo, int sequence) {
+        Mp4Index index = mp4IndexService.getIndex(videoInfo);
+        List<Mp4Segment> segments = index.getSegments(videoProperties.getSegmentDuration());
+        if (sequence < 0 || sequence >= segments.size()) {
+            throw new SegmentNotFoundException(movieConfig.getMessages().getSegmentNotFound());
+        }
+        return Mp4Fragmenter.fragment(index, segments.get(sequence), sequence);
+    }
+
+    /**
+     * Write a media segment: the fragment header, then its samples read from the stored file.
+     */
+    public void writeFragment(VideoInfo videoInfo, Mp4Fragmenter.Fragment fragment, OutputStream outputStream) throws IOException {
+        outputStream.write(fragment.getHeader());
+        ByteBuffer buffer = ByteBuffer.allocate(movieConfig.getStreaming().getBufferSizeBytes());
+        try (VideoReader reader = videoStorage.open(videoInfo.getStoredVideo())) {
+            for (long[] region : fragment.getRegions()) {
+                long position = region[0];
+                long remaining = region[1];
+                while (remaining > 0) {
+                    buffer.clear().limit((int) Math.min(buffer.capacity(), remaining));
+                    int bytesRead = reader.read(buffer, position);
+                    if (bytesRead < 0) {
+                        throw new EOFException("Unexpected end of file at " + position);
+                    }
+                    outputStream.write(buffer.array(), 0, bytesRead);
+                    position += bytesRead;
+                    remaining -= bytesRead;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.gugugaga.movie.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.gugugaga.movie.config.MovieConfiguration;
+import com.gugugaga.movie.entity.VideoInfo;
+import com.gugugaga.movie.mp4.Mp4Box;
+import com.gugugaga.movie.mp4.Mp4Index;
+import com.gugugaga.movie.mp4.Mp4Track;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Optional tier that memory-maps the leading region (moov plus the first minutes)
+ * of the most requested titles, so startup and early seeks on trending movies are
+ * served from the mapping instead of queuing on the disk.
+ *
+ * Request counts decay by half on every refresh, so the top-K follows what is
+ * trending now rather than all-time totals. Mapping and paging in run on the
+ * videoProcessingExecutor, never on the scheduler thread shared with other jobs.
+ */
+@Component
+public class HotRegionCache {
+    private static final Logger log = LoggerFactory.getLogger(HotRegionCache.class);
+
+    private final Mp4IndexService mp4IndexService;
+    private final MovieConfiguration movieConfig;
+    private final TaskExecutor videoProcessingExecutor;
+    private final AtomicBoolean remapping = new AtomicBoolean();
+    private final Map<String, Candidate> candidates = new ConcurrentHashMap<>();
+    // Replaced wholesale on refresh, read lock-free by streams
+    private volatile Map<String, MappedRegions> mapped = Map.of();
+
+    public HotRegionCache(Mp4IndexService mp4IndexService, MovieConfiguration movieConfig, MeterRegistry meterRegistry,
+                          @Qualifier("videoProcessingExecutor") TaskExecutor videoProcessingExecutor) {
+        this.mp4IndexService = mp4IndexService;
+        this.movieConfig = movieConfig;
+        this.videoProcessingExecutor = videoProcessingExecutor;
+        Gauge.builder("movie.stream.hot.mapped.bytes", this, cache -> cache.mapped.values().stream().mapToLong(MappedRegions::getTotalBytes).sum())
+                .description("Bytes of video memory-mapped by the hot region tier")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Count a stream request for the video and return its mapped regions.
+     *
+     * @return the mappings, or null when the title is not hot, has no local file or the tier is disabled
+     */
+    public MappedRegions lookup(VideoInfo videoInfo) {
+        if (!movieConfig.getStreaming().getHotRegions().isEnabled() || videoInfo.getFile() == null) {
+            // Remote videos are already served from the local chunk cache
+            return null;
+        }
+        String key = keyOf(videoInfo);
+        Candidate candidate = candidates.computeIfAbsent(key, k -> new Candidate());
+        candidate.videoInfo = videoInfo;
+        candidate.hits.increment();
+        return mapped.get(key);
+    }
+
+    /**
+     * The video's mapped regions without counting a request, for reads no viewer made.
+     */
+    public MappedRegions peek(VideoInfo videoInfo) {
+        if (!movieConfig.getStreaming().getHotRegions().isEnabled() || videoInfo.getFile() == null) {
+            return null;
+        }
+        return mapped.get(keyOf(videoInfo));
+    }
+
+    /**
+     * Re-pick the top-K titles, map newly hot ones and drop the ones that cooled down.
+     * Dropped mappings are released by the GC once in-flight streams let go of them.
+     */
+    @Scheduled(fixedDelayString = "${app.movie.streaming.hot-regions.refresh-interval-millis:60000}")
+    public void refresh() {
+        MovieConfiguration.Streaming.HotRegions config = movieConfig.getStreaming().getHotRegions();
+        if (!config.isEnabled()) {
+            if (!mapped.isEmpty()) {
+                mapped = Map.of();
+            }
+            candidates.clear();
+            return;
+        }
+        List<Map.Entry<String, Long>> ranked = new ArrayList<>();
+        for (Map.Entry<String, Candidate> entry : candidates.entrySet()) {
+            long hits = entry.getValue().hits.sumThenReset();
+            if (hits >= config.getMinRequests()) {
+                ranked.add(Map.entry(entry.getKey(), hits));
+            }
+            // Decay: keep half of this period's hits for the next round
+            if (hits / 2 > 0) {
+                entry.getValue().hits.add(hits / 2);
+            } else {
+                candidates.remove(entry.getKey(), entry.getValue());
+            }
+        }
+        ranked.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+
+        // A remap still paging in files skips this round, the counts carry over
+        if (!remapping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            videoProcessingExecutor.execute(() -> {
+                try {
+                    remap(ranked, config);
+                } finally {
+                    remapping.set(false);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            remapping.set(false);
+            log.debug("Hot region remap skipped, video processing executor is full");
+        }
+    }
+
+    private void remap(List<Map.Entry<String, Long>> ranked, MovieConfiguration.Streaming.HotRegions config) {
+        Map<String, MappedRegions> current = mapped;
+        Map<String, MappedRegions> next = new HashMap<>();
+        long budget = config.getMaxTotalBytes();
+        for (Map.Entry<String, Long> entry : ranked) {
+            if (next.size() >= config.getTopK()) {
+                break;
+            }
+            String key = entry.getKey();
+            MappedRegions regions = current.get(key);
+            if (regions == null) {
+                Candidate candidate = candidates.get(key);
+                regions = candidate != null ? map(candidate.videoInfo, Math.min(budget, config.getMaxBytesPerTitle())) : null;
+            }
+            if (regions != null && regions.getTotalBytes() <= budget) {
+                next.put(key, regions);
+                budget -= regions.getTotalBytes();
+            }
+        }
+        if (!next.keySet().equals(current.keySet())) {
+            log.info("Hot region tier now maps {} titles ({} bytes)", next.size(), config.getMaxTotalBytes() - budget);
+        }
+        mapped = Map.copyOf(next);
+    }
+
+    private MappedRegions map(VideoInfo videoInfo, long maxBytes) {
+        if (maxBytes <= 0) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(videoInfo.getFile().toPath(), StandardOpenOption.READ)) {
+            List<long[]> regions = leadingRegions(videoInfo, maxBytes);
+            long[] starts = new long[regions.size()];
+            ByteBuffer[] buffers = new ByteBuffer[regions.size()];
+            for (int i = 0; i < regions.size(); i++) {
+                long start = regions.get(i)[0];
+                long end = regions.get(i)[1];
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                if (movieConfig.getStreaming().getHotRegions().isPreload()) {
+                    buffer.load();
+                }
+                starts[i] = start;
+                buffers[i] = buffer;
+            }
+            // The mapping stays valid after the channel is closed
+            return new MappedRegions(starts, buffers);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to map hot regions of {}: {}", videoInfo.getFile(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * [start, end) regions to map: the moov box plus the bytes of the first
+     * leading-seconds of media, or just the head of the file for other containers.
+     */
+    private List<long[]> leadingRegions(VideoInfo videoInfo, long maxBytes) {
+        long fileSize = videoInfo.getFileSize();
+        // A single mapping is limited to 2 GB
+        long budget = Math.min(Math.min(maxBytes, fileSize), Integer.MAX_VALUE);
+        List<long[]> regions = new ArrayList<>();
+        if (!mp4IndexService.isIsoMedia(videoInfo.getContentType())) {
+            regions.add(new long[] {0, budget});
+            return regions;
+        }
+        Mp4Index index = mp4IndexService.getIndex(videoInfo);
+        Mp4Box moov = index.getMoov();
+        long leadingEnd = fileSize;
+        Mp4Track track = index.getReferenceTrack();
+        if (track != null) {
+            int sample = track.firstSampleAtOrAfter(track.toTicks(movieConfig.getStreaming().getHotRegions().getLeadingSeconds()));
+            if (sample < track.getSampleCount()) {
+                leadingEnd = track.getSampleOffset(sample);
+            }
+        }
+        if (videoInfo.getFaststartView() != null) {
+            // The patched moov of a faststart view is already in memory
+            regions.add(new long[] {0, Math.min(leadingEnd, budget)});
+        } else if (index.isFaststart()) {
+            regions.add(new long[] {0, Math.min(Math.max(leadingEnd, moov.getEnd()), budget)});
+        } else {
+            // moov at the tail: players fetch it first, map it on its own
+            long moovSize = Math.min(moov.getSize(), budget);
+            regions.add(new long[] {moov.getOffset(), moov.getOffset() + moovSize});
+            if (budget > moovSize) {
+                regions.add(new long[] {0, Math.min(leadingEnd, budget - moovSize)});
+            }
+        }
+        regions.sort(Comparator.comparingLong(region -> region[0]));
+        return regions;
+    }
+
+    private static String keyOf(VideoInfo videoInfo) {
+        return videoInfo.getFile().getPath() + "|" + videoInfo.getEtag();
+    }
+
+    private static final class Candidate {
+        private final LongAdder hits = new LongAdder();
+        private volatile VideoInfo videoInfo;
+    }
+
+    /**
+     * Mapped [start, start + capacity) regions of one file version.
+     */
+    public static final class MappedRegions {
+        private final long[] starts;
+        private final ByteBuffer[] buffers;
+        private final long totalBytes;
+
+        private MappedRegions(long[] starts, ByteBuffer[] buffers) {
+            this.starts = starts;
+            this.buffers = buffers;
+            long total = 0;
+            for (ByteBuffer buffer : buffers) {
+                total += buffer.capacity();
+            }
+            this.totalBytes = total;
+        }
+
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+
+        /**
+         * @return an independent view of up to maxLength mapped bytes starting at position,
+         *         or null when position is not mapped
+         */
+        public ByteBuffer slice(long position, long maxLength) {
+            for (int i = 0; i < starts.length; i++) {
+                long offset = position - starts[i];
+                if (offset >= 0 && offset < buffers[i].capacity()) {
+                    int length = (int) Math.min(maxLength, buffers[i].capacity() - offset);
+                    return buffers[i].slice((int) offset, length);
+                }
+            }
+            return null;
+        }
+    }
+}
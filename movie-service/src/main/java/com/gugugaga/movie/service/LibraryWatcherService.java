@@ -0,0 +1,395 @@
+package com.gugugaga.movie.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+
+import com.gugugaga.movie.config.MovieConfiguration;
+import com.gugugaga.movie.config.VideoProperties;
+import com.gugugaga.movie.entity.LibraryFile;
+import com.gugugaga.movie.entity.LibraryFileStatus;
+import com.gugugaga.movie.entity.Movie;
+import com.gugugaga.movie.entity.VideoInfo;
+import com.gugugaga.movie.mp4.Mp4Index;
+import com.gugugaga.movie.mp4.Mp4Track;
+import com.gugugaga.movie.repository.LibraryFileRepository;
+import com.gugugaga.movie.repository.MovieRepository;
+import com.gugugaga.movie.storage.StoredVideo;
+import com.gugugaga.movie.storage.VideoReader;
+import com.gugugaga.movie.storage.VideoStorage;
+import com.gugugaga.movie.util.VideoSniffer;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Watches the video storage directory and prepares new files before anyone plays them.
+ *
+ * Business Flow:
+ * 1. A WatchService thread records create/modify events of video files (by extension)
+ * 2. A file counts as settled once no event arrived for debounceMillis and its size and
+ *    mtime did not change in between, so copies still in progress are left alone
+ * 3. Settled files are indexed on the videoProcessingExecutor: container sniffed from
+ *    the magic bytes, size, and for ISO media duration, codecs and the sample index,
+ *    which stays in Mp4IndexService's cache for the first viewer
+ * 4. The result is stored in tb_library_files; movies already pointing at the file get
+ *    their cached VideoInfo dropped and a packaging job queued
+ *
+ * Off by default (app.movie.watcher.enabled) and only for FILESYSTEM storage.
+ */
+@Service
+public class LibraryWatcherService {
+    private static final Logger log = LoggerFactory.getLogger(LibraryWatcherService.class);
+
+    private final LibraryFileRepository libraryFileRepository;
+    private final MovieRepository movieRepository;
+    private final VideoStorage videoStorage;
+    private final Mp4IndexService mp4IndexService;
+    private final VideoStreamingService videoStreamingService;
+    private final PackagingService packagingService;
+    private final VideoProperties videoProperties;
+    private final MovieConfiguration movieConfig;
+    private final TaskExecutor videoProcessingExecutor;
+
+    // Files with recent events, waiting to settle
+    private final Map<Path, PendingFile> pending = new ConcurrentHashMap<>();
+    private final Set<Path> indexing = ConcurrentHashMap.newKeySet();
+    private final Map<WatchKey, Path> watchedDirectories = new ConcurrentHashMap<>();
+    private volatile WatchService watchService;
+    private volatile Thread watcherThread;
+    private Path root;
+
+    public LibraryWatcherService(LibraryFileRepository libraryFileRepository, MovieRepository movieRepository, VideoStorage videoStorage,
+                                 Mp4IndexService mp4IndexService, VideoStreamingService videoStreamingService, PackagingService packagingService,
+                                 VideoProperties videoProperties, MovieConfiguration movieConfig,
+                                 @Qualifier("videoProcessingExecutor") TaskExecutor videoProcessingExecutor) {
+        this.libraryFileRepository = libraryFileRepository;
+        this.movieRepository = movieRepository;
+        this.videoStorage = videoStorage;
+        this.mp4IndexService = mp4IndexService;
+        this.videoStreamingService = videoStreamingService;
+        this.packagingService = packagingService;
+        this.videoProperties = videoProperties;
+        this.movieConfig = movieConfig;
+        this.videoProcessingExecutor = videoProcessingExecutor;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!movieConfig.getWatcher().isEnabled()) {
+            return;
+        }
+        Path storageRoot = videoStorage.localPath("");
+        if (storageRoot == null) {
+            log.warn("Library watcher needs FILESYSTEM storage, not starting");
+            return;
+        }
+        try {
+            root = Files.createDirectories(storageRoot);
+            watchService = FileSystems.getDefault().newWatchService();
+            registerTree(root);
+        } catch (IOException e) {
+            log.error("Could not watch {}: {}", storageRoot, e.getMessage());
+            return;
+        }
+        if (movieConfig.getWatcher().isScanOnStartup()) {
+            scan(root);
+        }
+        watcherThread = new Thread(this::watchLoop, "library-watcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+        log.info("Watching {} for new videos ({} directories)", root, watchedDirectories.size());
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (watcherThread != null) {
+            watcherThread.interrupt();
+        }
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    private void watchLoop() {
+        MovieConfiguration.Watcher config = movieConfig.getWatcher();
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                WatchKey key = watchService.poll(config.getSettleCheckIntervalMillis(), TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    handleEvents(key);
+                }
+                indexSettledFiles();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            } catch (RuntimeException e) {
+                log.warn("Library watcher iteration failed: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private void handleEvents(WatchKey key) {
+        Path directory = watchedDirectories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || directory == null) {
+                // Events were dropped, fall back to comparing the whole tree
+                scan(root);
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                pending.remove(path);
+                markMissing(path);
+            } else if (Files.isDirectory(path)) {
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                    try {
+                        registerTree(path);
+                    } catch (IOException e) {
+                        log.warn("Could not watch {}: {}", path, e.getMessage());
+                    }
+                    scan(path);
+                }
+            } else if (isVideoFile(path)) {
+                touch(path);
+            }
+        }
+        if (!key.reset()) {
+            watchedDirectories.remove(key);
+        }
+    }
+
+    /**
+     * Queue every video under the directory whose size or mtime differs from what was indexed.
+     */
+    private void scan(Path directory) {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.filter(Files::isRegularFile).filter(this::isVideoFile).forEach(path -> {
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                    LibraryFile known = libraryFileRepository.findByFileName(name(path)).orElse(null);
+                    if (known == null || known.getStatus() != LibraryFileStatus.READY
+                            || !Long.valueOf(attributes.size()).equals(known.getFileSize())
+                            || !Long.valueOf(attributes.lastModifiedTime().toMillis()).equals(known.getFileLastModified())) {
+                        touch(path);
+                    }
+                } catch (IOException e) {
+                    log.debug("Skipping {}: {}", path, e.getMessage());
+                }
+            });
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Could not scan {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private void touch(Path path) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            pending.put(path, new PendingFile(System.currentTimeMillis(), attributes.size(), attributes.lastModifiedTime().toMillis()));
+        } catch (IOException e) {
+            pending.remove(path);
+        }
+    }
+
+    private void indexSettledFiles() {
+        long now = System.currentTimeMillis();
+        long debounce = movieConfig.getWatcher().getDebounceMillis();
+        for (Iterator<Map.Entry<Path, PendingFile>> it = pending.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Path, PendingFile> entry = it.next();
+            Path path = entry.getKey();
+            PendingFile file = entry.getValue();
+            if (now - file.lastEventAt < debounce || indexing.contains(path)) {
+                continue;
+            }
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (IOException e) {
+                it.remove();
+                continue;
+            }
+            if (attributes.size() != file.size || attributes.lastModifiedTime().toMillis() != file.lastModified) {
+                // Still being written without events reaching us, wait another quiet period
+                entry.setValue(new PendingFile(now, attributes.size(), attributes.lastModifiedTime().toMillis()));
+                continue;
+            }
+            String name = name(path);
+            indexing.add(path);
+            try {
+                videoProcessingExecutor.execute(() -> {
+                    try {
+                        index(name);
+                    } finally {
+                        indexing.remove(path);
+                    }
+                });
+                pending.remove(path, file);
+            } catch (TaskRejectedException e) {
+                // Processing queue is full, try again on the next pass
+                indexing.remove(path);
+            }
+        }
+    }
+
+    private void index(String name) {
+        LibraryFile file = libraryFileRepository.findByFileName(name).orElseGet(() -> {
+            LibraryFile created = new LibraryFile();
+            created.setFileName(name);
+            created.setDiscoveredAt(LocalDateTime.now());
+            return created;
+        });
+        file.setUpdatedAt(LocalDateTime.now());
+        try {
+            StoredVideo storedVideo = videoStorage.stat(name);
+            file.setFileSize(storedVideo.getSize());
+            file.setFileLastModified(storedVideo.getLastModified());
+            file.setDurationSeconds(null);
+            file.setFaststart(null);
+            file.setAudioCodec(null);
+            VideoSniffer sniffed;
+            try (VideoReader reader = videoStorage.open(storedVideo)) {
+                sniffed = VideoSniffer.sniff(reader);
+            }
+            file.setContainer(sniffed.getContainer());
+            file.setVideoCodec(sniffed.getVideoCodec());
+            if (sniffed.getContainer() == null) {
+                file.setStatus(LibraryFileStatus.FAILED);
+                file.setErrorMessage(movieConfig.getMessages().getUnknownVideoContainer());
+                libraryFileRepository.save(file);
+                return;
+            }
+            VideoInfo videoInfo = VideoInfo.builder()
+                    .storedVideo(storedVideo)
+                    .contentType(videoStreamingService.getContentType(name))
+                    .fileSize(storedVideo.getSize())
+                    .lastModified(storedVideo.getLastModified())
+                    .build();
+            if (VideoSniffer.isIsoMedia(sniffed.getContainer()) && mp4IndexService.isIsoMedia(videoInfo.getContentType())) {
+                // Same key the stream path uses, so the first viewer finds the index cached
+                Mp4Index index = mp4IndexService.getIndex(videoInfo);
+                file.setDurationSeconds(index.getDurationSeconds());
+                file.setFaststart(index.isFaststart());
+                for (Mp4Track track : index.getTracks()) {
+                    if (track.isVideo() && file.getVideoCodec() == null) {
+                        file.setVideoCodec(track.getCodec());
+                    } else if ("soun".equals(track.getHandlerType()) && file.getAudioCodec() == null) {
+                        file.setAudioCodec(track.getCodec());
+                    }
+                }
+                if (movieConfig.getFaststart().isEnabled()) {
+                    mp4IndexService.getFaststartView(videoInfo);
+                }
+            }
+            file.setStatus(LibraryFileStatus.READY);
+            file.setErrorMessage(null);
+            file.setIndexedAt(LocalDateTime.now());
+            libraryFileRepository.save(file);
+            log.info("Indexed {} ({}, {} bytes)", name, file.getContainer(), file.getFileSize());
+            refreshMovies(name);
+        } catch (NoSuchFileException e) {
+            if (file.getId() != null) {
+                file.setStatus(LibraryFileStatus.MISSING);
+                libraryFileRepository.save(file);
+            }
+        } catch (Exception e) {
+            log.warn("Indexing {} failed: {}", name, e.getMessage());
+            file.setStatus(LibraryFileStatus.FAILED);
+            file.setErrorMessage(String.valueOf(e.getMessage()));
+            libraryFileRepository.save(file);
+        }
+    }
+
+    private void refreshMovies(String name) {
+        List<Movie> movies = movieRepository.findByVideoFileName(name);
+        for (Movie movie : movies) {
+            if (Boolean.TRUE.equals(movie.getIsDeleted())) {
+                continue;
+            }
+            videoStreamingService.evictVideoInfo(movie.getId());
+            if (movieConfig.getPackaging().isAutoSubmitOnCreate()) {
+                packagingService.submit(movie.getId());
+            }
+        }
+    }
+
+    private void markMissing(Path path) {
+        libraryFileRepository.findByFileName(name(path)).ifPresent(file -> {
+            file.setStatus(LibraryFileStatus.MISSING);
+            file.setUpdatedAt(LocalDateTime.now());
+            libraryFileRepository.save(file);
+        });
+    }
+
+    private void registerTree(Path directory) throws IOException {
+        if (!movieConfig.getWatcher().isRecursive()) {
+            register(directory);
+            return;
+        }
+        try (Stream<Path> directories = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) directories.filter(Files::isDirectory)::iterator) {
+                register(path);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void register(Path directory) throws IOException {
+        WatchKey key = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        watchedDirectories.put(key, directory);
+    }
+
+    private boolean isVideoFile(Path path) {
+        String fileName = path.getFileName().toString();
+        // Dot files are partial copies (rsync, the upload staging file), never titles
+        int dot = fileName.lastIndexOf('.');
+        if (fileName.startsWith(".") || dot < 0) {
+            return false;
+        }
+        String extension = fileName.substring(dot + 1);
+        return Arrays.stream(videoProperties.getSupportedFormats()).anyMatch(extension::equalsIgnoreCase);
+    }
+
+    private String name(Path path) {
+        return root.relativize(path).toString().replace(File.separatorChar, '/');
+    }
+
+    private static final class PendingFile {
+        private final long lastEventAt;
+        private final long size;
+        private final long lastModified;
+
+        private PendingFile(long lastEventAt, long size, long lastModified) {
+            this.lastEventAt = lastEventAt;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -1,8 +1,12 @@
 package com.gugugaga.movie.service;
+import com.gugugaga.movie.config.MovieConfiguration;
 import com.gugugaga.movie.dto.CreateMovieRequest;
+import com.gugugaga.movie.dto.MoviePage;
+import com.gugugaga.movie.dto.MovieSort;
 import com.gugugaga.movie.entity.Movie;
 import com.gugugaga.movie.repository.MovieRepository;
 import jakarta.persistence.EntityNotFoundException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
@@ -12,12 +16,60 @@ import java.util.Optional;
 @Service
 public class MovieService {
     private final MovieRepository movieRepository;
+    private final PackagingService packagingService;
+    private final VideoStreamingService videoStreamingService;
+    private final ThumbnailService thumbnailService;
+    private final MovieConfiguration movieConfig;
 
-    public MovieService(MovieRepository movieRepository) {
+    public MovieService(MovieRepository movieRepository, PackagingService packagingService, VideoStreamingService videoStreamingService, ThumbnailService thumbnailService, MovieConfiguration movieConfig) {
         this.movieRepository = movieRepository;
+        this.packagingService = packagingService;
+        this.videoStreamingService = videoStreamingService;
+        this.thumbnailService = thumbnailService;
+        this.movieConfig = movieConfig;
     }
-    public List<Movie> getAllMovies() {
-        return movieRepository.findAll();
+    /**
+     * One page of the catalog, soft-deleted movies are left out by Movie's @SQLRestriction.
+     *
+     * Business Flow:
+     * 1. Resolve the cursor: ?after= is the id of the last movie of the previous page,
+     *    its sort key is read from that row (one primary key lookup)
+     * 2. Fetch limit + 1 rows after (key, id) through the sort's index
+     * 3. The extra row only tells whether there is a next page, it is not returned
+     *
+     * The cost of a page is the same at the start and the end of the catalog.
+     *
+     * @param after id of the last movie already shown, null for the first page
+     * @throws IllegalArgumentException when {@code after} is not a movie
+     */
+    public MoviePage getMovies(Long after, int limit, MovieSort sort) {
+        Movie cursor = null;
+        if (after != null && sort != MovieSort.ID) {
+            cursor = movieRepository.findCursorById(after).orElseThrow(
+                    () -> new IllegalArgumentException("Unknown cursor: " + after)
+            );
+        }
+        Limit pageLimit = Limit.of(limit + 1);
+        List<Movie> movies;
+        switch (sort) {
+            case TITLE:
+                movies = cursor != null
+                        ? movieRepository.findCatalogPageByTitle(cursor.getTitle(), cursor.getId(), pageLimit)
+                        : movieRepository.findCatalogPageByTitle("", 0L, pageLimit);
+                break;
+            case YEAR:
+                movies = cursor != null
+                        ? movieRepository.findCatalogPageByReleaseYear(cursor.getReleaseYear(), cursor.getId(), pageLimit)
+                        : movieRepository.findCatalogPageByReleaseYear(Integer.MAX_VALUE, Long.MAX_VALUE, pageLimit);
+                break;
+            default:
+                movies = movieRepository.findCatalogPageById(after != null ? after : 0L, pageLimit);
+        }
+        if (movies.size() <= limit) {
+            return new MoviePage(movies, null);
+        }
+        List<Movie> page = movies.subList(0, limit);
+        return new MoviePage(page, page.get(limit - 1).getId());
     }
     public Optional<Movie> getMovieById(Long id) {
         return movieRepository.findById(id);
@@ -31,10 +83,21 @@ public class MovieService {
         movie.setReleaseYear(req.getReleaseYear());
         movie.setRating(req.getRating());
         movie.setIsDeleted(false);
-        return movieRepository.save(movie);
+        Movie savedMovie = movieRepository.save(movie);
+        videoStreamingService.evictVideoInfo(savedMovie.getId());
+        // Pre-compute index/segments/checksum in the background, not on first play
+        if (movieConfig.getPackaging().isAutoSubmitOnCreate()) {
+            packagingService.submit(savedMovie.getId());
+        }
+        // Catalog grids ask for small sizes, render them before the first page view
+        if (movieConfig.getThumbnails().isRenderOnCreate()) {
+            thumbnailService.submit(savedMovie);
+        }
+        return savedMovie;
     }
     public void deleteMovie(Long id) {
         movieRepository.deleteById(id);
+        videoStreamingService.evictVideoInfo(id);
     }
     public void softDeleteMovie(Long id) {
         Movie movie = movieRepository.findById(id).orElseThrow(
@@ -43,5 +106,6 @@ public class MovieService {
         movie.setDeleted(true);
         movie.setDeletedAt(LocalDateTime.now());
         movieRepository.save(movie);
+        videoStreamingService.evictVideoInfo(id);
     }
 }
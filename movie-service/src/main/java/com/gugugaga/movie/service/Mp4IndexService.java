@@ -0,0 +1,117 @@
+package com.gugugaga.movie.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.gugugaga.movie.config.MovieConfiguration;
+import com.gugugaga.movie.entity.VideoInfo;
+import com.gugugaga.movie.exception.Mp4FormatException;
+import com.gugugaga.movie.mp4.Mp4FaststartView;
+import com.gugugaga.movie.mp4.Mp4Fragmenter;
+import com.gugugaga.movie.mp4.Mp4Index;
+import com.gugugaga.movie.mp4.Mp4Parser;
+import com.gugugaga.movie.storage.VideoReader;
+import com.gugugaga.movie.storage.VideoStorage;
+
+@Service
+public class Mp4IndexService {
+    // Sample indexes, weighed by their sample count: a feature film holds far more than a trailer
+    private final Cache<String, Mp4Index> indexCache;
+    // Patched moov boxes of tail-moov files, weighed by their size
+    private final Cache<String, Optional<Mp4FaststartView>> faststartCache;
+    // fMP4 init segments for HLS, weighed by their size
+    private final Cache<String, byte[]> initSegmentCache;
+    private final VideoStorage videoStorage;
+    private final MovieConfiguration movieConfig;
+
+    public Mp4IndexService(VideoStorage videoStorage, MovieConfiguration movieConfig) {
+        this.videoStorage = videoStorage;
+        this.movieConfig = movieConfig;
+        this.indexCache = Caffeine.newBuilder()
+                .maximumWeight(movieConfig.getHls().getIndexCacheMaxSamples())
+                .weigher((String key, Mp4Index index) -> (int) Math.min(Integer.MAX_VALUE, index.getSampleCount() + 1))
+                .expireAfterAccess(movieConfig.getHls().getIndexExpireAfterAccessMinutes(), TimeUnit.MINUTES)
+                .build();
+        this.faststartCache = Caffeine.newBuilder()
+                .maximumWeight(movieConfig.getFaststart().getHeaderCacheMaxBytes())
+                .weigher((String key, Optional<Mp4FaststartView> view) -> view.map(Mp4FaststartView::getHeaderSize).orElse(0) + 64)
+                .expireAfterAccess(movieConfig.getHls().getIndexExpireAfterAccessMinutes(), TimeUnit.MINUTES)
+                .build();
+        this.initSegmentCache = Caffeine.newBuilder()
+                .maximumWeight(movieConfig.getHls().getInitSegmentCacheMaxBytes())
+                .weigher((String key, byte[] init) -> init.length)
+                .expireAfterAccess(movieConfig.getHls().getIndexExpireAfterAccessMinutes(), TimeUnit.MINUTES)
+                .build();
+    }
+
+    /**
+     * Get the sample index of a video, parsing its moov box only on the first call.
+     *
+     * The cache key includes size and mtime, so a file replaced on disk is parsed again
+     * instead of serving offsets of the old file. Offsets are those of the file itself,
+     * see {@link VideoInfo#getFaststartView()} for what the stream endpoint serves.
+     */
+    public Mp4Index getIndex(VideoInfo videoInfo) {
+        if (!isIsoMedia(videoInfo.getContentType())) {
+            throw new Mp4FormatException(movieConfig.getMessages().getUnsupportedContainer());
+        }
+        return indexCache.get(fileKey(videoInfo), k -> parse(videoInfo));
+    }
+
+    /**
+     * Moov-first view of an MP4 stored with its moov at the end, built once per file version.
+     *
+     * @return the view, or null when the file is already faststart
+     */
+    public Mp4FaststartView getFaststartView(VideoInfo videoInfo) {
+        Mp4Index index = getIndex(videoInfo);
+        return faststartCache.get(fileKey(videoInfo), k -> Optional.ofNullable(createFaststartView(videoInfo, index))).orElse(null);
+    }
+
+    /**
+     * fMP4 init segment of a video (its moov without sample tables), built once per file version.
+     */
+    public byte[] getInitSegment(VideoInfo videoInfo) {
+        Mp4Index index = getIndex(videoInfo);
+        return initSegmentCache.get(fileKey(videoInfo), k -> createInitSegment(videoInfo, index));
+    }
+
+    public boolean isIsoMedia(String contentType) {
+        return "video/mp4".equals(contentType) || "video/quicktime".equals(contentType);
+    }
+
+    private static String fileKey(VideoInfo videoInfo) {
+        // The file's identity, not the ETag: that one also depends on the served view
+        return videoInfo.getStoredVideo().getName() + ":" + videoInfo.getStoredVideo().getVersion() + ":" + videoInfo.getFileSize() + ":" + videoInfo.getLastModified();
+    }
+
+    private Mp4FaststartView createFaststartView(VideoInfo videoInfo, Mp4Index index) {
+        try (VideoReader reader = videoStorage.open(videoInfo.getStoredVideo())) {
+            return Mp4FaststartView.create(reader, index);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private byte[] createInitSegment(VideoInfo videoInfo, Mp4Index index) {
+        try (VideoReader reader = videoStorage.open(videoInfo.getStoredVideo())) {
+            return Mp4Fragmenter.initSegment(reader, index);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Mp4Index parse(VideoInfo videoInfo) {
+        try (VideoReader reader = videoStorage.open(videoInfo.getStoredVideo())) {
+            return Mp4Parser.parse(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
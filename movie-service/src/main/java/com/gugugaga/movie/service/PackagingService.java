@@ -0,0 +1,225 @@
+package com.gugugaga.movie.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+
+import com.gugugaga.movie.config.MovieConfiguration;
+import com.gugugaga.movie.config.VideoProperties;
+import com.gugugaga.movie.entity.PackagingJob;
+import com.gugugaga.movie.entity.PackagingJobStatus;
+import com.gugugaga.movie.entity.VideoInfo;
+import com.gugugaga.movie.mp4.Mp4Index;
+import com.gugugaga.movie.repository.PackagingJobRepository;
+import com.gugugaga.movie.storage.VideoReader;
+import com.gugugaga.movie.storage.VideoStorage;
+
+/**
+ * Background packaging of movie files on the videoProcessingExecutor.
+ *
+ * A job walks a fixed list of steps and persists its progress after each of them,
+ * so the expensive per-file work (moov parsing, segment map, checksum) happens once
+ * after ingest instead of on the first play request.
+ */
+@Service
+public class PackagingService {
+    private static final Logger log = LoggerFactory.getLogger(PackagingService.class);
+
+    public static final String STEP_INDEX = "INDEX";
+    public static final String STEP_SEGMENTS = "SEGMENTS";
+    public static final String STEP_CHECKSUM = "CHECKSUM";
+    public static final String STEP_DONE = "DONE";
+
+    private final PackagingJobRepository packagingJobRepository;
+    private final VideoStreamingService videoStreamingService;
+    private final Mp4IndexService mp4IndexService;
+    private final VideoStorage videoStorage;
+    private final VideoProperties videoProperties;
+    private final MovieConfiguration movieConfig;
+    private final TaskExecutor videoProcessingExecutor;
+
+    public PackagingService(PackagingJobRepository packagingJobRepository, VideoStreamingService videoStreamingService,
+                            Mp4IndexService mp4IndexService, VideoStorage videoStorage, VideoProperties videoProperties, MovieConfiguration movieConfig,
+                            @Qualifier("videoProcessingExecutor") TaskExecutor videoProcessingExecutor) {
+        this.packagingJobRepository = packagingJobRepository;
+        this.videoStreamingService = videoStreamingService;
+        this.mp4IndexService = mp4IndexService;
+        this.videoStorage = videoStorage;
+        this.videoProperties = videoProperties;
+        this.movieConfig = movieConfig;
+        this.videoProcessingExecutor = videoProcessingExecutor;
+    }
+
+    /**
+     * Queue a packaging job for a movie. A job that is already queued or running
+     * is returned as-is instead of starting a second one.
+     */
+    public PackagingJob submit(Long movieId) {
+        Optional<PackagingJob> latest = packagingJobRepository.findFirstByMovieIdOrderByIdDesc(movieId);
+        if (latest.isPresent() && (latest.get().getStatus() == PackagingJobStatus.QUEUED
+                || latest.get().getStatus() == PackagingJobStatus.RUNNING)) {
+            return latest.get();
+        }
+        PackagingJob job = new PackagingJob();
+        job.setMovieId(movieId);
+        job.setStatus(PackagingJobStatus.QUEUED);
+        job.setMaxAttempts(movieConfig.getPackaging().getMaxAttempts());
+        job.setCreatedAt(LocalDateTime.now());
+        job.setUpdatedAt(LocalDateTime.now());
+        job = packagingJobRepository.save(job);
+        dispatch(job.getId(), 0);
+        return job;
+    }
+
+    public Optional<PackagingJob> getLatestJob(Long movieId) {
+        return packagingJobRepository.findFirstByMovieIdOrderByIdDesc(movieId);
+    }
+
+    /**
+     * Pick up jobs that were queued, or orphaned while running, when the node went down.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumePendingJobs() {
+        if (!movieConfig.getPackaging().isResumeOnStartup()) {
+            return;
+        }
+        LocalDateTime staleBefore = LocalDateTime.now().minusMinutes(movieConfig.getPackaging().getStaleRunningMinutes());
+        for (PackagingJob job : packagingJobRepository.findByStatusAndUpdatedAtBefore(PackagingJobStatus.RUNNING, staleBefore)) {
+            job.setStatus(PackagingJobStatus.QUEUED);
+            job.setUpdatedAt(LocalDateTime.now());
+            packagingJobRepository.save(job);
+        }
+        List<PackagingJob> pending = packagingJobRepository.findByStatusIn(List.of(PackagingJobStatus.QUEUED));
+        if (!pending.isEmpty()) {
+            log.info("Resuming {} packaging job(s)", pending.size());
+        }
+        for (PackagingJob job : pending) {
+            dispatch(job.getId(), 0);
+        }
+    }
+
+    private void dispatch(Long jobId, long delaySeconds) {
+        if (delaySeconds > 0) {
+            // Wait outside the worker pool, then come back through the normal dispatch path
+            CompletableFuture.delayedExecutor(delaySeconds, TimeUnit.SECONDS).execute(() -> dispatch(jobId, 0));
+            return;
+        }
+        try {
+            videoProcessingExecutor.execute(() -> run(jobId));
+        } catch (TaskRejectedException e) {
+            log.warn("Packaging queue full, job {} rejected", jobId);
+            packagingJobRepository.findById(jobId).ifPresent(job -> {
+                job.setStatus(PackagingJobStatus.FAILED);
+                job.setErrorMessage(movieConfig.getMessages().getPackagingQueueFull());
+                job.setUpdatedAt(LocalDateTime.now());
+                job.setFinishedAt(LocalDateTime.now());
+                packagingJobRepository.save(job);
+            });
+        }
+    }
+
+    private void run(Long jobId) {
+        if (packagingJobRepository.claim(jobId, PackagingJobStatus.QUEUED, PackagingJobStatus.RUNNING, LocalDateTime.now()) == 0) {
+            return; // Already taken by another worker, or no longer queued
+        }
+        PackagingJob job = packagingJobRepository.findById(jobId).orElse(null);
+        if (job == null) {
+            return;
+        }
+        try {
+            VideoInfo videoInfo = videoStreamingService.getVideoInfo(job.getMovieId());
+            job.setFileSize(videoInfo.getFileSize());
+
+            if (mp4IndexService.isIsoMedia(videoInfo.getContentType())) {
+                updateStep(job, STEP_INDEX, 5);
+                Mp4Index index = mp4IndexService.getIndex(videoInfo);
+                job.setDurationSeconds(index.getDurationSeconds());
+                job.setFaststart(index.isFaststart());
+
+                updateStep(job, STEP_SEGMENTS, 10);
+                job.setSegmentCount(index.getSegments(videoProperties.getSegmentDuration()).size());
+            }
+
+            updateStep(job, STEP_CHECKSUM, 20);
+            job.setChecksumSha256(checksum(job, videoInfo));
+
+            job.setStatus(PackagingJobStatus.COMPLETED);
+            job.setCurrentStep(STEP_DONE);
+            job.setProgressPercent(100);
+            job.setErrorMessage(null);
+            job.setFinishedAt(LocalDateTime.now());
+            job.setUpdatedAt(LocalDateTime.now());
+            packagingJobRepository.save(job);
+            log.info("Packaging job {} for movie {} completed", jobId, job.getMovieId());
+        } catch (Exception e) {
+            handleFailure(job, e);
+        }
+    }
+
+    private void handleFailure(PackagingJob job, Exception e) {
+        job.setErrorMessage(String.valueOf(e.getMessage()));
+        job.setUpdatedAt(LocalDateTime.now());
+        if (job.getAttempts() < job.getMaxAttempts()) {
+            long delay = movieConfig.getPackaging().getRetryDelaySeconds() * job.getAttempts();
+            log.warn("Packaging job {} failed (attempt {}/{}), retrying in {}s: {}",
+                    job.getId(), job.getAttempts(), job.getMaxAttempts(), delay, e.getMessage());
+            job.setStatus(PackagingJobStatus.QUEUED);
+            packagingJobRepository.save(job);
+            dispatch(job.getId(), delay);
+        } else {
+            log.error("Packaging job {} failed permanently after {} attempts", job.getId(), job.getAttempts(), e);
+            job.setStatus(PackagingJobStatus.FAILED);
+            job.setFinishedAt(LocalDateTime.now());
+            packagingJobRepository.save(job);
+        }
+    }
+
+    private void updateStep(PackagingJob job, String step, int progressPercent) {
+        job.setCurrentStep(step);
+        job.setProgressPercent(progressPercent);
+        job.setUpdatedAt(LocalDateTime.now());
+        packagingJobRepository.save(job);
+    }
+
+    /**
+     * SHA-256 of the whole file, persisting progress every 5% (the checksum step covers 20-100%).
+     */
+    private String checksum(PackagingJob job, VideoInfo videoInfo) throws IOException, NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        long fileSize = Math.max(1, job.getFileSize());
+        long done = 0;
+        int reported = job.getProgressPercent();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(movieConfig.getPackaging().getChecksumBufferBytes());
+        try (VideoReader reader = videoStorage.open(videoInfo.getStoredVideo())) {
+            while (reader.read(buffer, done) != -1) {
+                buffer.flip();
+                done += buffer.remaining();
+                digest.update(buffer);
+                buffer.clear();
+
+                int percent = 20 + (int) (done * 80 / fileSize);
+                if (percent - reported >= 5 && percent < 100) {
+                    updateStep(job, STEP_CHECKSUM, percent);
+                    reported = percent;
+                }
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
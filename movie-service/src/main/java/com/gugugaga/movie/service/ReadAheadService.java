@@ -0,0 +1,358 @@
+package com.gugugaga.movie.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.gugugaga.movie.config.MovieConfiguration;
+import com.gugugaga.movie.entity.VideoInfo;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Read-ahead for viewers reading a movie front to back: a browser draining an open-ended
+ * bytes=N- body, or a player (Safari) requesting adjacent ranges back to back. Once a
+ * body keeps reading, or a (user, movie) pair's ranges follow each other, the next window
+ * is prefetched asynchronously so the reads are served from memory. The window doubles
+ * on every prefetch, like the kernel's read-ahead, and is dropped as soon as the viewer
+ * seeks elsewhere.
+ *
+ * A viewer holds at most two windows, the one being read and the one after it. Windows
+ * live in fixed-size buffers from a pool capped by max-total-bytes per node; when the
+ * pool is exhausted, prefetching simply pauses.
+ */
+@Service
+public class ReadAheadService {
+    private static final Logger log = LoggerFactory.getLogger(ReadAheadService.class);
+
+    private final FileChannelCache fileChannelCache;
+    private final AsyncTaskExecutor executor;
+    private final MovieConfiguration movieConfig;
+    private final Cache<String, Tracker> trackers;
+    private final Queue<ByteBuffer> freeBuffers = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pooledBytes = new AtomicLong();
+    private final Counter servedBytes;
+
+    public ReadAheadService(FileChannelCache fileChannelCache, @Qualifier("streamingTaskExecutor") AsyncTaskExecutor executor,
+                            MovieConfiguration movieConfig, MeterRegistry meterRegistry) {
+        this.fileChannelCache = fileChannelCache;
+        this.executor = executor;
+        this.movieConfig = movieConfig;
+        MovieConfiguration.Streaming.ReadAhead config = movieConfig.getStreaming().getReadAhead();
+        this.trackers = Caffeine.newBuilder()
+                .maximumSize(config.getMaxTrackers())
+                .expireAfterAccess(config.getTrackerExpireSeconds(), TimeUnit.SECONDS)
+                .removalListener((String key, Tracker tracker, com.github.benmanes.caffeine.cache.RemovalCause cause) -> {
+                    if (tracker != null) {
+                        tracker.close();
+                    }
+                })
+                .build();
+        this.servedBytes = Counter.builder("movie.stream.readahead.served")
+                .description("Bytes served from read-ahead windows instead of the file")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("movie.stream.readahead.pool", pooledBytes, AtomicLong::get)
+                .description("Bytes allocated to the read-ahead buffer pool")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Register a response body about to stream from {@code start}.
+     *
+     * @return the session to attach to the stream's lease, or null when read-ahead is disabled
+     */
+    public Session begin(Long userId, VideoInfo videoInfo, long start) {
+        if (!movieConfig.getStreaming().getReadAhead().isEnabled() || userId == null || videoInfo.getMovie() == null) {
+            return null;
+        }
+        Tracker tracker = trackers.get(userId + ":" + videoInfo.getMovie().getId(), key -> new Tracker());
+        boolean chained = tracker.begin(videoInfo.getEtag(), start);
+        return new Session(tracker, videoInfo, start, chained);
+    }
+
+    private ByteBuffer acquireBuffer() {
+        ByteBuffer buffer = freeBuffers.poll();
+        if (buffer != null) {
+            return buffer.clear();
+        }
+        MovieConfiguration.Streaming.ReadAhead config = movieConfig.getStreaming().getReadAhead();
+        int capacity = config.getMaxWindowBytes();
+        if (pooledBytes.addAndGet(capacity) > config.getMaxTotalBytes()) {
+            pooledBytes.addAndGet(-capacity);
+            return null;
+        }
+        return ByteBuffer.allocate(capacity);
+    }
+
+    private void releaseBuffer(ByteBuffer buffer) {
+        freeBuffers.offer(buffer);
+    }
+
+    /**
+     * Read-ahead state of one viewer on one movie. All fields are guarded by the tracker.
+     */
+    private final class Tracker {
+        private String etag;
+        private long expectedNext = -1;
+        private int sequentialHits;
+        private int windowSize;
+        private Window window; // being read
+        private Window next; // prefetched right behind it
+        private long generation;
+        private boolean prefetching;
+        private boolean closed;
+
+        synchronized boolean begin(String currentEtag, long start) {
+            if (!currentEtag.equals(etag)) {
+                // New viewer or the file changed: nothing carried over applies
+                etag = currentEtag;
+                expectedNext = -1;
+                seek();
+                return false;
+            }
+            boolean sequential = start == expectedNext || covers(start);
+            if (!sequential) {
+                seek();
+            }
+            return sequential;
+        }
+
+        private void seek() {
+            sequentialHits = 0;
+            windowSize = 0;
+            generation++; // discards prefetches still in flight
+            dropWindows();
+        }
+
+        private boolean covers(long position) {
+            return (window != null && window.covers(position)) || (next != null && next.covers(position));
+        }
+
+        boolean chainedEnough() {
+            return sequentialHits + 1 >= movieConfig.getStreaming().getReadAhead().getSequentialThreshold();
+        }
+
+        /**
+         * A live body read up to {@code position} (exclusive): keep a window ahead of it.
+         */
+        synchronized void advanced(VideoInfo videoInfo, boolean sequential, long position) {
+            if (next != null && position > next.start) {
+                // The reader moved on to the next window
+                drop(window);
+                window = next;
+                next = null;
+            }
+            if (!sequential) {
+                return;
+            }
+            Window last = next != null ? next : window;
+            if (last == null) {
+                prefetch(videoInfo, position);
+            } else if (position >= last.start + last.buffer.limit() / 2) {
+                // Halfway through the last window: fetch the one after it
+                prefetch(videoInfo, last.end());
+            }
+        }
+
+        /**
+         * The body stopped at {@code reached} (exclusive), completed or aborted.
+         */
+        synchronized void ended(VideoInfo videoInfo, boolean chained, long reached) {
+            expectedNext = reached;
+            if (!chained) {
+                return;
+            }
+            sequentialHits++;
+            if (sequentialHits >= movieConfig.getStreaming().getReadAhead().getSequentialThreshold() && !covers(reached)) {
+                prefetch(videoInfo, reached);
+            }
+        }
+
+        private void prefetch(VideoInfo videoInfo, long start) {
+            if (closed || prefetching || start >= videoInfo.getFileSize()) {
+                return;
+            }
+            MovieConfiguration.Streaming.ReadAhead config = movieConfig.getStreaming().getReadAhead();
+            windowSize = windowSize == 0 ? config.getInitialWindowBytes() : Math.min(windowSize * 2, config.getMaxWindowBytes());
+            ByteBuffer buffer = acquireBuffer();
+            if (buffer == null) {
+                return;
+            }
+            int length = (int) Math.min(Math.min(windowSize, buffer.capacity()), videoInfo.getFileSize() - start);
+            prefetching = true;
+            long prefetchGeneration = generation;
+            try {
+                executor.execute(() -> fill(videoInfo, start, length, buffer, prefetchGeneration));
+            } catch (RuntimeException e) {
+                prefetching = false;
+                releaseBuffer(buffer);
+            }
+        }
+
+        private void fill(VideoInfo videoInfo, long start, int length, ByteBuffer buffer, long prefetchGeneration) {
+            boolean filled = false;
+            // Not a viewer request, so it must not count towards the hot region ranking
+            try (FileChannelCache.Lease lease = fileChannelCache.acquireUncounted(videoInfo)) {
+                buffer.limit(length);
+                while (buffer.hasRemaining()) {
+                    int read = lease.read(buffer, start + buffer.position());
+                    if (read < 0) {
+                        break;
+                    }
+                }
+                buffer.flip();
+                filled = true;
+            } catch (IOException | RuntimeException e) {
+                log.debug("Read-ahead of {} failed: {}", videoInfo.getStoredVideo().getName(), e.getMessage());
+            }
+            synchronized (this) {
+                prefetching = false;
+                if (!filled || closed || generation != prefetchGeneration) {
+                    releaseBuffer(buffer);
+                    return;
+                }
+                Window filledWindow = new Window(start, buffer);
+                if (window != null && next == null && window.end() == start) {
+                    next = filledWindow;
+                } else {
+                    dropWindows();
+                    window = filledWindow;
+                }
+            }
+        }
+
+        synchronized Window pin(long position) {
+            Window pinned = window != null && window.covers(position) ? window
+                    : next != null && next.covers(position) ? next : null;
+            if (pinned != null) {
+                pinned.pins++;
+            }
+            return pinned;
+        }
+
+        synchronized void unpin(Window pinned) {
+            pinned.pins--;
+            if (pinned.dropped && pinned.pins == 0) {
+                releaseBuffer(pinned.buffer);
+            }
+        }
+
+        private void dropWindows() {
+            drop(window);
+            drop(next);
+            window = null;
+            next = null;
+        }
+
+        private void drop(Window dropped) {
+            if (dropped != null) {
+                dropped.dropped = true;
+                if (dropped.pins == 0) {
+                    releaseBuffer(dropped.buffer);
+                }
+            }
+        }
+
+        synchronized void close() {
+            closed = true;
+            generation++;
+            dropWindows();
+        }
+    }
+
+    private static final class Window {
+        private final long start;
+        private final ByteBuffer buffer; // [0, limit) holds file bytes [start, start + limit)
+        private int pins;
+        private boolean dropped;
+
+        Window(long start, ByteBuffer buffer) {
+            this.start = start;
+            this.buffer = buffer;
+        }
+
+        boolean covers(long position) {
+            return position >= start && position < end();
+        }
+
+        long end() {
+            return start + buffer.limit();
+        }
+
+        ByteBuffer slice(long position, long maxLength) {
+            int offset = (int) (position - start);
+            int length = (int) Math.min(maxLength, buffer.limit() - offset);
+            return buffer.duplicate().position(offset).limit(offset + length);
+        }
+    }
+
+    /**
+     * One response body's view of its viewer's read-ahead window.
+     */
+    public final class Session {
+        private final Tracker tracker;
+        private final VideoInfo videoInfo;
+        private final long start;
+        // Follows the previous body of the same viewer
+        private final boolean chained;
+
+        private Session(Tracker tracker, VideoInfo videoInfo, long start, boolean chained) {
+            this.tracker = tracker;
+            this.videoInfo = videoInfo;
+            this.start = start;
+            this.chained = chained;
+        }
+
+        /**
+         * @return bytes copied from the window, or -1 when it doesn't cover the position
+         */
+        public int read(ByteBuffer buffer, long position) {
+            Window window = tracker.pin(position);
+            if (window == null) {
+                return -1;
+            }
+            try {
+                ByteBuffer slice = window.slice(position, buffer.remaining());
+                int length = slice.remaining();
+                buffer.put(slice);
+                servedBytes.increment(length);
+                return length;
+            } finally {
+                tracker.unpin(window);
+            }
+        }
+
+        /**
+         * The body has read up to {@code position} (exclusive). A chained body, or one that
+         * kept reading for sequential-threshold initial windows, gets the next window prefetched.
+         */
+        public void advanced(long position) {
+            MovieConfiguration.Streaming.ReadAhead config = movieConfig.getStreaming().getReadAhead();
+            boolean sequential = (chained && tracker.chainedEnough())
+                    || position - start >= (long) config.getSequentialThreshold() * config.getInitialWindowBytes();
+            tracker.advanced(videoInfo, sequential, position);
+        }
+
+        /**
+         * The body is over, completed or aborted, after writing {@code bytesWritten} bytes.
+         */
+        public void ended(long bytesWritten) {
+            tracker.ended(videoInfo, chained, start + bytesWritten);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.gugugaga.movie.service;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.stereotype.Service;
+
+import com.gugugaga.movie.config.MovieConfiguration;
+import com.gugugaga.movie.exception.StreamLimitExceededException;
+import com.gugugaga.movie.limits.StreamSlotStore;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Caps how many movies a user can stream at the same time, by subscription plan.
+ *
+ * Business Flow:
+ * 1. Look up the user's plan (cached by UserPlanService) and its stream limit
+ * 2. Take a slot for the movie in the StreamSlotStore; requests for a movie the user is
+ *    already watching join that slot
+ * 3. Reject with 429 when every slot is taken by other movies
+ * 4. The caller keeps the lease on the request; it is released when the response is done
+ */
+@Service
+public class StreamLimitService {
+    public static final String LEASE_ATTRIBUTE = StreamLimitService.class.getName() + ".lease";
+
+    private final StreamSlotStore streamSlotStore;
+    private final UserPlanService userPlanService;
+    private final MovieConfiguration movieConfig;
+    private final MeterRegistry meterRegistry;
+
+    public StreamLimitService(StreamSlotStore streamSlotStore, UserPlanService userPlanService, MovieConfiguration movieConfig, MeterRegistry meterRegistry) {
+        this.streamSlotStore = streamSlotStore;
+        this.userPlanService = userPlanService;
+        this.movieConfig = movieConfig;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("movie.stream.limit.slots", streamSlotStore, StreamSlotStore::totalActiveSlots)
+                .description("Stream slots (user, movie) currently held")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return the lease to close once the response is done, or null when the user is not limited
+     * @throws StreamLimitExceededException when the user's plan has no free slot
+     */
+    public Lease acquire(Long userId, Long movieId) {
+        MovieConfiguration.Streaming.ConcurrencyLimit config = movieConfig.getStreaming().getConcurrencyLimit();
+        if (!config.isEnabled() || userId == null) {
+            return null;
+        }
+        String plan = userPlanService.getPlanName(userId).toLowerCase(Locale.ROOT);
+        Integer planLimit = config.getPlanMaxStreams().get(plan);
+        int maxStreams = planLimit != null ? planLimit : config.getDefaultMaxStreams();
+        if (maxStreams <= 0) {
+            return null; // unlimited plan
+        }
+        String userKey = userId.toString();
+        String slotKey = String.valueOf(movieId);
+        if (!streamSlotStore.tryAcquire(userKey, slotKey, maxStreams)) {
+            meterRegistry.counter("movie.stream.limit.rejected", "plan", plan).increment();
+            throw new StreamLimitExceededException(movieConfig.getMessages().getStreamLimitExceeded(),
+                    maxStreams, config.getRetryAfterSeconds());
+        }
+        return new Lease(streamSlotStore, userKey, slotKey);
+    }
+
+    /**
+     * One request's hold on a slot. Closing it more than once is harmless.
+     */
+    public static final class Lease implements AutoCloseable {
+        private final StreamSlotStore streamSlotStore;
+        private final String userKey;
+        private final String slotKey;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Lease(StreamSlotStore streamSlotStore, String userKey, String slotKey) {
+            this.streamSlotStore = streamSlotStore;
+            this.userKey = userKey;
+            this.slotKey = slotKey;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                streamSlotStore.release(userKey, slotKey);
+            }
+        }
+    }
+}
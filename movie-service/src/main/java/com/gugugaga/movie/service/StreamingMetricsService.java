@@ -0,0 +1,206 @@
+package com.gugugaga.movie.service;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Micrometer meters for the video stream hot path, tagged by content type so
+ * streaming nodes can be sized from /actuator/metrics (or /actuator/prometheus).
+ */
+@Service
+public class StreamingMetricsService {
+    public static final String FULL = "full";
+    public static final String PARTIAL = "partial";
+    public static final String MULTIPART = "multipart";
+    public static final String HEAD = "head";
+    public static final String NOT_MODIFIED = "not_modified";
+    public static final String UNSATISFIABLE = "unsatisfiable";
+
+    private static final String UNKNOWN_CONTENT_TYPE = "unknown";
+    // A long body reports its bytes as it goes instead of all at once when it ends
+    private static final long BYTES_FLUSH_THRESHOLD = 1024 * 1024;
+
+    private final MeterRegistry meterRegistry;
+    private final AtomicInteger activeStreams = new AtomicInteger();
+    // Builder-configured meters, looked up once per content type
+    private final Map<String, Timer> timeToFirstByte = new ConcurrentHashMap<>();
+    private final Map<String, Timer> streamDurations = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> rangeSizes = new ConcurrentHashMap<>();
+
+    public StreamingMetricsService(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("movie.stream.active", activeStreams, AtomicInteger::get)
+                .description("Video streams currently writing a response body")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Count a response by kind: full, partial, multipart, head, not_modified or unsatisfiable.
+     */
+    public void recordResponse(String contentType, String responseType) {
+        meterRegistry.counter("movie.stream.responses",
+                "content_type", tagValue(contentType), "type", responseType).increment();
+    }
+
+    public void recordRangeSize(String contentType, long bytes) {
+        rangeSizes.computeIfAbsent(tagValue(contentType), type -> DistributionSummary.builder("movie.stream.range.size")
+                .description("Size of each requested byte range")
+                .baseUnit("bytes")
+                .tag("content_type", type)
+                .publishPercentileHistogram()
+                .register(meterRegistry))
+            .record(bytes);
+    }
+
+    /**
+     * Bytes handed to the connector's sendfile. The kernel does the copy, so there
+     * is no first byte to time and no abort to observe from here.
+     */
+    public void recordSendfile(String contentType, String responseType, long bytes) {
+        bytesSent(tagValue(contentType), responseType, bytes);
+    }
+
+    /**
+     * Start metering one response body. Call from inside the body writer and
+     * always {@link StreamRecording#finish() finish} it.
+     *
+     * @param requestStartNanos System.nanoTime() when the handler accepted the request,
+     *                          time-to-first-byte is measured from there
+     */
+    public StreamRecording startStream(String contentType, String responseType, long requestStartNanos) {
+        activeStreams.incrementAndGet();
+        return new StreamRecording(tagValue(contentType), responseType, requestStartNanos);
+    }
+
+    private void bytesSent(String contentType, String responseType, long bytes) {
+        if (bytes > 0) {
+            bytesSentCounter(contentType, responseType).increment(bytes);
+        }
+    }
+
+    private Counter bytesSentCounter(String contentType, String responseType) {
+        return meterRegistry.counter("movie.stream.bytes.sent", "content_type", contentType, "type", responseType);
+    }
+
+    private Timer timeToFirstByte(String contentType) {
+        return timeToFirstByte.computeIfAbsent(contentType, type -> Timer.builder("movie.stream.ttfb")
+                .description("Time from accepting a stream request to writing its first body byte")
+                .tag("content_type", type)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+
+    private Timer streamDuration(String contentType) {
+        return streamDurations.computeIfAbsent(contentType, type -> Timer.builder("movie.stream.duration")
+                .description("Time spent writing a stream response body")
+                .tag("content_type", type)
+                .register(meterRegistry));
+    }
+
+    private static String tagValue(String contentType) {
+        return contentType != null && !contentType.isBlank() ? contentType : UNKNOWN_CONTENT_TYPE;
+    }
+
+    /**
+     * Meters a single response body. Used by one writer thread only.
+     */
+    public final class StreamRecording {
+        private final String contentType;
+        private final String responseType;
+        private final long requestStartNanos;
+        private final long bodyStartNanos = System.nanoTime();
+        private final Counter bytesSent;
+        private long bytesWritten;
+        private long bytesUnreported;
+        private boolean firstByteSeen;
+        private boolean finished;
+
+        private StreamRecording(String contentType, String responseType, long requestStartNanos) {
+            this.contentType = contentType;
+            this.responseType = responseType;
+            this.requestStartNanos = requestStartNanos;
+            this.bytesSent = bytesSentCounter(contentType, responseType);
+        }
+
+        /**
+         * Wrap the response stream so every byte that reaches it is counted.
+         */
+        public OutputStream wrap(OutputStream outputStream) {
+            return new FilterOutputStream(outputStream) {
+                @Override
+                public void write(int b) throws IOException {
+                    out.write(b);
+                    written(1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                    written(len);
+                }
+            };
+        }
+
+        private void written(long bytes) {
+            if (!firstByteSeen) {
+                firstByteSeen = true;
+                timeToFirstByte(contentType).record(System.nanoTime() - requestStartNanos, TimeUnit.NANOSECONDS);
+            }
+            bytesWritten += bytes;
+            bytesUnreported += bytes;
+            if (bytesUnreported >= BYTES_FLUSH_THRESHOLD) {
+                reportBytes();
+            }
+        }
+
+        private void reportBytes() {
+            if (bytesUnreported > 0) {
+                bytesSent.increment(bytesUnreported);
+                bytesUnreported = 0;
+            }
+        }
+
+        public long getBytesWritten() {
+            return bytesWritten;
+        }
+
+        /**
+         * The client disconnected mid-body, the normal outcome of a seek.
+         */
+        public void aborted() {
+            meterRegistry.counter("movie.stream.aborted",
+                    "content_type", contentType, "type", responseType).increment();
+        }
+
+        /**
+         * Server-side failure while writing the body (disk error, file removed...).
+         */
+        public void failed() {
+            meterRegistry.counter("movie.stream.failed",
+                    "content_type", contentType, "type", responseType).increment();
+        }
+
+        public void finish() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            activeStreams.decrementAndGet();
+            reportBytes();
+            streamDuration(contentType).record(System.nanoTime() - bodyStartNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package com.gugugaga.movie.service;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLConnection;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.gugugaga.movie.config.MovieConfiguration;
+import com.gugugaga.movie.entity.Movie;
+import com.gugugaga.movie.exception.ThumbnailNotFoundException;
+
+/**
+ * Serves movie thumbnails in a fixed set of widths.
+ *
+ * Business Flow:
+ * 1. When a movie is created, every configured width is rendered with ImageIO on the
+ *    thumbnailRenderExecutor and written to the variant directory
+ * 2. A request picks the smallest variant at least as wide as ?w=
+ * 3. Variants are read from disk once and kept in a byte-weighted in-memory cache
+ * 4. Missing variants (older movies, replaced images) are rendered on first request; a
+ *    request waits at most render-timeout-millis and is otherwise served the source image
+ *
+ * Variant names carry the source's size and mtime, so a replaced image gets new
+ * variants and a new ETag.
+ */
+@Service
+public class ThumbnailService {
+    private static final Logger log = LoggerFactory.getLogger(ThumbnailService.class);
+
+    private final MovieConfiguration movieConfig;
+    private final TaskExecutor thumbnailRenderExecutor;
+    private final Cache<String, Thumbnail> variantCache;
+    // One rendering per source version, shared by concurrent requests
+    private final Map<String, CompletableFuture<Void>> rendering = new ConcurrentHashMap<>();
+
+    public ThumbnailService(MovieConfiguration movieConfig, @Qualifier("thumbnailRenderExecutor") TaskExecutor thumbnailRenderExecutor) {
+        this.movieConfig = movieConfig;
+        this.thumbnailRenderExecutor = thumbnailRenderExecutor;
+        this.variantCache = Caffeine.newBuilder()
+                .maximumWeight(movieConfig.getThumbnails().getCacheMaxBytes())
+                .weigher((String key, Thumbnail thumbnail) -> thumbnail.getBytes().length + 128)
+                .build();
+    }
+
+    /**
+     * Render all variants of the movie's thumbnail in the background.
+     */
+    public void submit(Movie movie) {
+        try {
+            render(movie.getId(), source(movie)).whenComplete((result, e) -> {
+                if (e != null) {
+                    log.warn("Rendering thumbnails of movie {} failed: {}", movie.getId(), e.getMessage());
+                }
+            });
+        } catch (ThumbnailNotFoundException e) {
+            log.warn("Movie {} has no thumbnail to render: {}", movie.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * @param requestedWidth desired width in pixels, null for the largest variant
+     */
+    public Thumbnail getThumbnail(Movie movie, Integer requestedWidth) {
+        Source source = source(movie);
+        int width = pickWidth(requestedWidth);
+        String key = movie.getId() + ":" + source.version + ":" + width;
+        Thumbnail cached = variantCache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        // Wait for a missing variant outside the cache, the fallback must not be cached
+        Path variant = variantPath(movie.getId(), source, width);
+        if (!Files.exists(variant) && !awaitRender(movie.getId(), source)) {
+            return original(source);
+        }
+        return variantCache.get(key, k -> load(variant, source, width));
+    }
+
+    private Thumbnail load(Path variant, Source source, int width) {
+        try {
+            String etag = "\"" + source.version + "-w" + width + "\"";
+            return new Thumbnail(Files.readAllBytes(variant), source.contentType(), etag, source.lastModified, false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return false when the variants are not ready within render-timeout-millis
+     */
+    private boolean awaitRender(long movieId, Source source) {
+        try {
+            render(movieId, source).get(movieConfig.getThumbnails().getRenderTimeoutMillis(), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            log.debug("Thumbnails of movie {} still rendering, serving the source image", movieId);
+            return false;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TaskRejectedException) {
+                return false;
+            }
+            if (e.getCause() instanceof IOException io) {
+                throw new UncheckedIOException(io);
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private Thumbnail original(Source source) {
+        try {
+            String contentType = URLConnection.guessContentTypeFromName(source.path.getFileName().toString());
+            return new Thumbnail(Files.readAllBytes(source.path), contentType != null ? contentType : "application/octet-stream",
+                    "\"" + source.version + "\"", source.lastModified, true);
+        } catch (NoSuchFileException e) {
+            throw new ThumbnailNotFoundException(movieConfig.getMessages().getThumbnailNotFound());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private CompletableFuture<Void> render(long movieId, Source source) {
+        String key = movieId + ":" + source.version;
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        CompletableFuture<Void> inFlight = rendering.putIfAbsent(key, future);
+        if (inFlight != null) {
+            return inFlight;
+        }
+        try {
+            thumbnailRenderExecutor.execute(() -> {
+                try {
+                    renderVariants(movieId, source);
+                    future.complete(null);
+                } catch (IOException | RuntimeException e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    rendering.remove(key, future);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            rendering.remove(key, future);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private void renderVariants(long movieId, Source source) throws IOException {
+        BufferedImage image = ImageIO.read(source.path.toFile());
+        if (image == null) {
+            throw new IOException("Format gambar tidak didukung: " + source.path.getFileName());
+        }
+        Path directory = Files.createDirectories(variantDirectory());
+        deleteStaleVariants(directory, movieId, source);
+        for (int width : widths()) {
+            Path variant = variantPath(movieId, source, width);
+            if (Files.exists(variant)) {
+                continue;
+            }
+            BufferedImage scaled = scale(image, Math.min(width, image.getWidth()), source.keepsAlpha());
+            Path partial = Files.createTempFile(directory, variant.getFileName().toString(), ".part");
+            try {
+                write(scaled, source.formatName(), partial);
+                Files.move(partial, variant, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(partial);
+            }
+        }
+        log.info("Rendered {} thumbnail variants for movie {}", widths().size(), movieId);
+    }
+
+    /**
+     * Downscale in halving steps before the final bilinear pass, which keeps large
+     * reductions from aliasing without the cost of bicubic on the full image.
+     */
+    private BufferedImage scale(BufferedImage image, int width, boolean alpha) {
+        int height = Math.max(1, (int) Math.round((double) image.getHeight() * width / image.getWidth()));
+        int type = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage current = image;
+        int currentWidth = image.getWidth();
+        int currentHeight = image.getHeight();
+        do {
+            currentWidth = Math.max(width, currentWidth / 2);
+            currentHeight = Math.max(height, currentHeight / 2);
+            BufferedImage step = new BufferedImage(currentWidth, currentHeight, type);
+            Graphics2D graphics = step.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = step;
+        } while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+
+    private void write(BufferedImage image, String formatName, Path target) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(formatName).next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(target.toFile())) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (formatName.equals("jpg")) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(movieConfig.getThumbnails().getJpegQuality());
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private void deleteStaleVariants(Path directory, long movieId, Source source) throws IOException {
+        try (DirectoryStream<Path> variants = Files.newDirectoryStream(directory, movieId + "-*")) {
+            for (Path variant : variants) {
+                if (!variant.getFileName().toString().startsWith(movieId + "-" + source.version + "-")) {
+                    Files.deleteIfExists(variant);
+                }
+            }
+        }
+    }
+
+    private int pickWidth(Integer requestedWidth) {
+        List<Integer> widths = widths();
+        if (requestedWidth != null) {
+            for (int width : widths) {
+                if (width >= requestedWidth) {
+                    return width;
+                }
+            }
+        }
+        return widths.get(widths.size() - 1);
+    }
+
+    private List<Integer> widths() {
+        return movieConfig.getThumbnails().getWidths().stream().sorted().toList();
+    }
+
+    private Path variantDirectory() {
+        return Path.of(movieConfig.getThumbnails().getVariantPath());
+    }
+
+    private Path variantPath(long movieId, Source source, int width) {
+        return variantDirectory().resolve(movieId + "-" + source.version + "-" + width + "." + source.formatName());
+    }
+
+    private Source source(Movie movie) {
+        String name = movie.getThumbnail();
+        if (name == null || name.isBlank()) {
+            throw new ThumbnailNotFoundException(movieConfig.getMessages().getThumbnailNotFound());
+        }
+        Path root = Path.of(movieConfig.getThumbnails().getSourcePath()).toAbsolutePath().normalize();
+        Path path = root.resolve(name).normalize();
+        if (!path.startsWith(root)) {
+            throw new ThumbnailNotFoundException(movieConfig.getMessages().getThumbnailNotFound());
+        }
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) {
+                throw new ThumbnailNotFoundException(movieConfig.getMessages().getThumbnailNotFound());
+            }
+            String version = Long.toHexString(attributes.size()) + "-" + Long.toHexString(attributes.lastModifiedTime().toMillis());
+            return new Source(path, version, attributes.lastModifiedTime().toMillis());
+        } catch (NoSuchFileException e) {
+            throw new ThumbnailNotFoundException(movieConfig.getMessages().getThumbnailNotFound());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static final class Source {
+        private final Path path;
+        private final String version;
+        private final long lastModified;
+
+        private Source(Path path, String version, long lastModified) {
+            this.path = path;
+            this.version = version;
+            this.lastModified = lastModified;
+        }
+
+        // PNG and GIF sources may be transparent, keep that; everything else becomes JPEG
+        boolean keepsAlpha() {
+            String name = path.getFileName().toString().toLowerCase();
+            return name.endsWith(".png") || name.endsWith(".gif");
+        }
+
+        String formatName() {
+            return keepsAlpha() ? "png" : "jpg";
+        }
+
+        String contentType() {
+            return keepsAlpha() ? "image/png" : "image/jpeg";
+        }
+    }
+
+    public static final class Thumbnail {
+        private final byte[] bytes;
+        private final String contentType;
+        private final String etag;
+        private final long lastModified;
+        private final boolean fallback;
+
+        private Thumbnail(byte[] bytes, String contentType, String etag, long lastModified, boolean fallback) {
+            this.bytes = bytes;
+            this.contentType = contentType;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.fallback = fallback;
+        }
+
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * The source image, served while the requested variant is not rendered yet.
+         */
+        public boolean isFallback() {
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,469 @@
+package com.gugugaga.movie.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.gugugaga.movie.config.MovieConfiguration;
+import com.gugugaga.movie.config.VideoProperties;
+import com.gugugaga.movie.dto.UploadStatus;
+import com.gugugaga.movie.exception.UploadSessionNotFoundException;
+import com.gugugaga.movie.storage.VideoStorage;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Resumable chunked ingest of video files into the local library.
+ *
+ * Business Flow:
+ * 1. init checks the name, extension and size against VideoProperties and creates
+ *    <uploadId>.part plus a manifest in the upload directory
+ * 2. Chunks arrive in any order and in parallel; each one is hashed while it is
+ *    written at index * chunkSize through the session's shared FileChannel
+ * 3. A chunk counts as received only after its SHA-256 matches and the bytes are
+ *    forced to disk, then the manifest is rewritten so a restart keeps the progress
+ * 4. complete checks that every chunk is there and renames the part file into the
+ *    video library in one atomic move, so streams never see a half-written file
+ *
+ * Sessions idle for longer than upload.expireHours are deleted by the sweep.
+ */
+@Service
+public class UploadService {
+    private static final Logger log = LoggerFactory.getLogger(UploadService.class);
+    private static final String PART_SUFFIX = ".part";
+    private static final String MANIFEST_SUFFIX = ".upload";
+    private static final int COPY_BUFFER_BYTES = 64 * 1024;
+
+    private final VideoStorage videoStorage;
+    private final VideoProperties videoProperties;
+    private final MovieConfiguration movieConfig;
+    private final Path directory;
+    private final Map<String, UploadSession> sessions = new ConcurrentHashMap<>();
+    // fileName -> uploadId, two sessions must not race for the same target
+    private final Map<String, String> reservedNames = new ConcurrentHashMap<>();
+
+    public UploadService(VideoStorage videoStorage, VideoProperties videoProperties, MovieConfiguration movieConfig) {
+        this.videoStorage = videoStorage;
+        this.videoProperties = videoProperties;
+        this.movieConfig = movieConfig;
+        this.directory = Path.of(movieConfig.getUpload().getDirectory()).toAbsolutePath().normalize();
+    }
+
+    /**
+     * Pick up the sessions that were in progress before a restart.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadSessions() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> manifests = Files.newDirectoryStream(directory, "*" + MANIFEST_SUFFIX)) {
+            for (Path manifest : manifests) {
+                try {
+                    UploadSession session = UploadSession.load(directory, manifest);
+                    if (!Files.exists(session.part)) {
+                        Files.deleteIfExists(manifest);
+                        continue;
+                    }
+                    sessions.put(session.id, session);
+                    reservedNames.putIfAbsent(session.fileName, session.id);
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Skipping unreadable upload manifest {}: {}", manifest.getFileName(), e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not list upload directory {}: {}", directory, e.getMessage());
+        }
+        if (!sessions.isEmpty()) {
+            log.info("Resumed {} upload sessions", sessions.size());
+        }
+    }
+
+    public UploadStatus init(String fileName, long size, Integer requestedChunkSize) throws IOException {
+        MovieConfiguration.Messages messages = movieConfig.getMessages();
+        MovieConfiguration.Upload config = movieConfig.getUpload();
+        if (!isSupportedFileName(fileName)) {
+            throw new IllegalArgumentException(messages.getUnsupportedVideoFormat());
+        }
+        if (size > videoProperties.getMaxFileSize()) {
+            throw new IllegalArgumentException(messages.getVideoTooLarge());
+        }
+        int chunkSize = requestedChunkSize != null ? requestedChunkSize : config.getDefaultChunkSizeBytes();
+        if (chunkSize < config.getMinChunkSizeBytes() || chunkSize > config.getMaxChunkSizeBytes()) {
+            throw new IllegalArgumentException(messages.getInvalidChunkSize());
+        }
+        Path target = videoStorage.localPath(fileName);
+        if (target == null) {
+            throw new IllegalStateException(messages.getUploadNotSupported());
+        }
+        if (Files.exists(target)) {
+            throw new IllegalStateException(messages.getUploadTargetExists());
+        }
+        String id = UUID.randomUUID().toString().replace("-", "");
+        if (reservedNames.putIfAbsent(fileName, id) != null) {
+            throw new IllegalStateException(messages.getUploadTargetExists());
+        }
+        try {
+            Files.createDirectories(directory);
+            UploadSession session = new UploadSession(directory, id, fileName, size, chunkSize);
+            Files.createFile(session.part);
+            session.persist();
+            sessions.put(id, session);
+            log.info("Upload {} started for {} ({} bytes in {} chunks)", id, fileName, size, session.totalChunks);
+            return session.status();
+        } catch (IOException | RuntimeException e) {
+            reservedNames.remove(fileName, id);
+            throw e;
+        }
+    }
+
+    /**
+     * Write one chunk at its offset. Sending a chunk that is already received again
+     * is a no-op, so clients can blindly retry after a timeout.
+     *
+     * @return false when the chunk had already been received
+     */
+    public boolean writeChunk(String uploadId, int index, long contentLength, String sha256, InputStream body) throws IOException {
+        MovieConfiguration.Messages messages = movieConfig.getMessages();
+        UploadSession session = require(uploadId);
+        if (index < 0 || index >= session.totalChunks) {
+            throw new IllegalArgumentException(messages.getInvalidChunk());
+        }
+        long expected = session.chunkLength(index);
+        if (contentLength >= 0 && contentLength != expected) {
+            throw new IllegalArgumentException(messages.getInvalidChunk());
+        }
+        byte[] checksum = parseChecksum(sha256);
+        if (session.isReceived(index)) {
+            return false;
+        }
+        if (!session.beginChunk(index)) {
+            throw new IllegalStateException(messages.getChunkInProgress());
+        }
+        try {
+            MessageDigest digest = sha256();
+            FileChannel channel = session.channel();
+            long position = (long) index * session.chunkSize;
+            long written = 0;
+            byte[] buffer = new byte[COPY_BUFFER_BYTES];
+            int n;
+            while ((n = body.read(buffer)) != -1) {
+                if (written + n > expected) {
+                    throw new IllegalArgumentException(messages.getInvalidChunk());
+                }
+                digest.update(buffer, 0, n);
+                ByteBuffer source = ByteBuffer.wrap(buffer, 0, n);
+                while (source.hasRemaining()) {
+                    // Positional writes do not touch the channel position, parallel chunks never contend
+                    written += channel.write(source, position + written);
+                }
+            }
+            if (written != expected) {
+                throw new IllegalArgumentException(messages.getInvalidChunk());
+            }
+            if (!MessageDigest.isEqual(digest.digest(), checksum)) {
+                throw new IllegalArgumentException(messages.getChunkChecksumMismatch());
+            }
+            channel.force(false);
+            session.markReceived(index);
+            return true;
+        } finally {
+            session.endChunk(index);
+        }
+    }
+
+    public UploadStatus getStatus(String uploadId) {
+        return require(uploadId).status();
+    }
+
+    /**
+     * Move the finished file into the video library.
+     *
+     * @return the file name to use as videoFileName when creating the movie
+     */
+    public String complete(String uploadId) throws IOException {
+        MovieConfiguration.Messages messages = movieConfig.getMessages();
+        UploadSession session = require(uploadId);
+        session.beginComplete(true, messages);
+        try {
+            session.closeChannel();
+            Path target = videoStorage.localPath(session.fileName);
+            if (target == null) {
+                throw new IllegalStateException(messages.getUploadNotSupported());
+            }
+            if (Files.exists(target)) {
+                throw new IllegalStateException(messages.getUploadTargetExists());
+            }
+            if (Files.size(session.part) != session.size) {
+                throw new IllegalStateException(messages.getUploadIncomplete());
+            }
+            Files.createDirectories(target.getParent());
+            moveIntoLibrary(session, target);
+        } catch (IOException | RuntimeException e) {
+            session.endComplete();
+            throw e;
+        }
+        Files.deleteIfExists(session.manifest);
+        sessions.remove(uploadId);
+        reservedNames.remove(session.fileName, uploadId);
+        log.info("Upload {} completed as {}", uploadId, session.fileName);
+        return session.fileName;
+    }
+
+    public void abort(String uploadId) throws IOException {
+        UploadSession session = require(uploadId);
+        session.beginComplete(false, movieConfig.getMessages());
+        discard(session);
+        log.info("Upload {} of {} aborted", uploadId, session.fileName);
+    }
+
+    @Scheduled(fixedDelayString = "${app.movie.upload.sweep-interval-millis:600000}")
+    public void expireSessions() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(movieConfig.getUpload().getExpireHours());
+        for (UploadSession session : sessions.values()) {
+            if (session.lastActivity < cutoff && session.tryExpire()) {
+                try {
+                    discard(session);
+                    log.info("Upload {} of {} expired", session.id, session.fileName);
+                } catch (IOException e) {
+                    log.warn("Could not delete expired upload {}: {}", session.id, e.getMessage());
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        for (UploadSession session : sessions.values()) {
+            try {
+                session.closeChannel();
+            } catch (IOException e) {
+                log.debug("Closing upload {} failed: {}", session.id, e.getMessage());
+            }
+        }
+    }
+
+    private void discard(UploadSession session) throws IOException {
+        sessions.remove(session.id);
+        reservedNames.remove(session.fileName, session.id);
+        session.closeChannel();
+        Files.deleteIfExists(session.part);
+        Files.deleteIfExists(session.manifest);
+    }
+
+    private void moveIntoLibrary(UploadSession session, Path target) throws IOException {
+        try {
+            Files.move(session.part, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            // Upload directory on another filesystem: copy next to the target, then rename there
+            Path staging = target.resolveSibling("." + target.getFileName() + "." + session.id + PART_SUFFIX);
+            try {
+                Files.copy(session.part, staging, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(staging, target, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(staging);
+            }
+            Files.delete(session.part);
+        }
+    }
+
+    private UploadSession require(String uploadId) {
+        UploadSession session = uploadId != null ? sessions.get(uploadId) : null;
+        if (session == null) {
+            throw new UploadSessionNotFoundException(movieConfig.getMessages().getUploadNotFound());
+        }
+        return session;
+    }
+
+    private boolean isSupportedFileName(String fileName) {
+        if (fileName == null || fileName.isBlank() || fileName.startsWith(".")
+                || fileName.contains("/") || fileName.contains("\\")) {
+            return false;
+        }
+        int dot = fileName.lastIndexOf('.');
+        if (dot < 0) {
+            return false;
+        }
+        String extension = fileName.substring(dot + 1).toLowerCase();
+        return Arrays.stream(videoProperties.getSupportedFormats()).anyMatch(extension::equalsIgnoreCase);
+    }
+
+    private byte[] parseChecksum(String sha256) {
+        if (sha256 == null || sha256.length() != 64) {
+            throw new IllegalArgumentException(movieConfig.getMessages().getChunkChecksumRequired());
+        }
+        try {
+            return HexFormat.of().parseHex(sha256);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(movieConfig.getMessages().getChunkChecksumRequired());
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class UploadSession {
+        private final String id;
+        private final String fileName;
+        private final long size;
+        private final int chunkSize;
+        private final int totalChunks;
+        private final Path part;
+        private final Path manifest;
+        // Guarded by this
+        private final BitSet received = new BitSet();
+        private final Set<Integer> writing = new HashSet<>();
+        private boolean completing;
+        private FileChannel channel;
+        private volatile long lastActivity = System.currentTimeMillis();
+
+        private UploadSession(Path directory, String id, String fileName, long size, int chunkSize) {
+            this.id = id;
+            this.fileName = fileName;
+            this.size = size;
+            this.chunkSize = chunkSize;
+            this.totalChunks = (int) Math.max(1, (size + chunkSize - 1) / chunkSize);
+            this.part = directory.resolve(id + PART_SUFFIX);
+            this.manifest = directory.resolve(id + MANIFEST_SUFFIX);
+        }
+
+        static UploadSession load(Path directory, Path manifest) throws IOException {
+            Properties properties = new Properties();
+            try (Reader reader = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+            String fileName = manifest.getFileName().toString();
+            UploadSession session = new UploadSession(directory, fileName.substring(0, fileName.length() - MANIFEST_SUFFIX.length()),
+                    properties.getProperty("fileName"), Long.parseLong(properties.getProperty("size")),
+                    Integer.parseInt(properties.getProperty("chunkSize")));
+            String received = properties.getProperty("received", "");
+            for (String index : received.split(",")) {
+                if (!index.isEmpty()) {
+                    session.received.set(Integer.parseInt(index));
+                }
+            }
+            session.lastActivity = Files.getLastModifiedTime(manifest).toMillis();
+            return session;
+        }
+
+        long chunkLength(int index) {
+            return Math.min(chunkSize, size - (long) index * chunkSize);
+        }
+
+        synchronized boolean isReceived(int index) {
+            return received.get(index);
+        }
+
+        synchronized boolean beginChunk(int index) {
+            if (completing || !writing.add(index)) {
+                return false;
+            }
+            lastActivity = System.currentTimeMillis();
+            return true;
+        }
+
+        synchronized void endChunk(int index) {
+            writing.remove(index);
+            lastActivity = System.currentTimeMillis();
+        }
+
+        synchronized void markReceived(int index) throws IOException {
+            received.set(index);
+            persist();
+        }
+
+        /**
+         * Stop accepting chunks. Completing also requires every chunk to be received,
+         * aborting only that none is being written.
+         */
+        synchronized void beginComplete(boolean requireAllChunks, MovieConfiguration.Messages messages) {
+            if (completing || !writing.isEmpty()) {
+                throw new IllegalStateException(messages.getChunkInProgress());
+            }
+            if (requireAllChunks && received.cardinality() < totalChunks) {
+                throw new IllegalStateException(messages.getUploadIncomplete());
+            }
+            completing = true;
+        }
+
+        synchronized void endComplete() {
+            completing = false;
+        }
+
+        synchronized boolean tryExpire() {
+            if (completing || !writing.isEmpty()) {
+                return false;
+            }
+            completing = true;
+            return true;
+        }
+
+        synchronized FileChannel channel() throws IOException {
+            if (channel == null || !channel.isOpen()) {
+                channel = FileChannel.open(part, StandardOpenOption.WRITE);
+            }
+            return channel;
+        }
+
+        synchronized void closeChannel() throws IOException {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        }
+
+        synchronized void persist() throws IOException {
+            Properties properties = new Properties();
+            properties.setProperty("fileName", fileName);
+            properties.setProperty("size", Long.toString(size));
+            properties.setProperty("chunkSize", Integer.toString(chunkSize));
+            properties.setProperty("received", received.stream().mapToObj(Integer::toString).collect(Collectors.joining(",")));
+            Path temp = manifest.resolveSibling(manifest.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                properties.store(out, null);
+            }
+            Files.move(temp, manifest, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        synchronized UploadStatus status() {
+            long receivedBytes = received.stream().mapToLong(this::chunkLength).sum();
+            return new UploadStatus(id, fileName, size, chunkSize, totalChunks,
+                    received.stream().boxed().toList(), receivedBytes);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.gugugaga.movie.service;
+
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClient;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.gugugaga.movie.config.MovieConfiguration;
+import com.gugugaga.movie.dto.UserSubscriptionResponse;
+
+@Service
+public class UserPlanService {
+    private static final Logger log = LoggerFactory.getLogger(UserPlanService.class);
+
+    private final RestClient restClient;
+    private final Cache<Long, String> planCache;
+    private final MovieConfiguration movieConfig;
+
+    public UserPlanService(MovieConfiguration movieConfig) {
+        this.movieConfig = movieConfig;
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(movieConfig.getPlans().getTimeoutMillis());
+        requestFactory.setReadTimeout(movieConfig.getPlans().getTimeoutMillis());
+        this.restClient = RestClient.builder()
+                .baseUrl(movieConfig.getPlans().getAuthServiceUrl())
+                .requestFactory(requestFactory)
+                .build();
+        this.planCache = Caffeine.newBuilder()
+                .expireAfterWrite(movieConfig.getPlans().getCacheMinutes(), TimeUnit.MINUTES)
+                .maximumSize(100_000)
+                .build();
+    }
+
+    /**
+     * Get the name of the user's active plan (Free, Pro, Enterprise, ...)
+     *
+     * Business Flow:
+     * 1. Call auth-service to get user's active subscription
+     * 2. Cache the plan name so streams don't call auth-service per request
+     * 3. Fall back to the default plan if auth-service is unreachable
+     *
+     * @param userId - User ID from X-User-Id header
+     * @return plan name, never null
+     */
+    public String getPlanName(Long userId) {
+        if (userId == null) {
+            return movieConfig.getPlans().getDefaultPlan();
+        }
+        String planName = planCache.get(userId, this::fetchPlanName);
+        return planName != null ? planName : movieConfig.getPlans().getDefaultPlan();
+    }
+
+    // null when auth-service is unreachable, so the fallback isn't cached and the next request asks again
+    private String fetchPlanName(Long userId) {
+        try {
+            UserSubscriptionResponse response = restClient.get()
+                    .uri("/api/auth/subscription/{userId}", userId)
+                    .retrieve()
+                    .body(UserSubscriptionResponse.class);
+            if (response != null && response.getPlanName() != null) {
+                return response.getPlanName();
+            }
+            return movieConfig.getPlans().getDefaultPlan();
+        } catch (Exception e) {
+            log.warn("Failed to fetch subscription for user {}: {}", userId, e.getMessage());
+            return null;
+        }
+    }
+}
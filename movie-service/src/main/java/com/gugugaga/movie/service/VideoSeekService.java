@@ -0,0 +1,93 @@
+package com.gugugaga.movie.service;
+
+import org.springframework.stereotype.Service;
+
+import com.gugugaga.movie.config.MovieConfiguration;
+import com.gugugaga.movie.dto.SeekPosition;
+import com.gugugaga.movie.entity.VideoInfo;
+import com.gugugaga.movie.exception.Mp4FormatException;
+import com.gugugaga.movie.mp4.Mp4FaststartView;
+import com.gugugaga.movie.mp4.Mp4Index;
+import com.gugugaga.movie.mp4.Mp4Track;
+
+@Service
+public class VideoSeekService {
+    private final Mp4IndexService mp4IndexService;
+    private final MovieConfiguration movieConfig;
+
+    public VideoSeekService(Mp4IndexService mp4IndexService, MovieConfiguration movieConfig) {
+        this.mp4IndexService = mp4IndexService;
+        this.movieConfig = movieConfig;
+    }
+
+    /**
+     * Map a playback time to the byte offset a player should request from.
+     *
+     * Business Flow:
+     * 1. Load (or parse once) the sample index of the file
+     * 2. Pick the keyframe at or before the time on the reference (video) track
+     * 3. Start at the earliest sample of any track decoded from that keyframe on,
+     *    so the matching audio is not skipped
+     * 4. Translate the offset into the faststart view when the file is served as one
+     */
+    public SeekPosition seek(VideoInfo videoInfo, double seconds) {
+        Mp4Index index = mp4IndexService.getIndex(videoInfo);
+        Mp4Track reference = index.getReferenceTrack();
+        if (reference == null || reference.getSampleCount() == 0) {
+            throw new Mp4FormatException(movieConfig.getMessages().getUnsupportedContainer());
+        }
+        double target = Math.max(0, Math.min(seconds, index.getDurationSeconds()));
+        int keyframe = reference.keyframeAtOrBefore(reference.toTicks(target));
+        double keyframeSeconds = reference.getSampleSeconds(keyframe);
+
+        long offset = reference.getSampleOffset(keyframe);
+        for (Mp4Track track : index.getTracks()) {
+            if (track == reference || track.getSampleCount() == 0) {
+                continue;
+            }
+            int sample = track.firstSampleAtOrAfter(track.toTicks(keyframeSeconds));
+            if (sample < track.getSampleCount()) {
+                offset = Math.min(offset, track.getSampleOffset(sample));
+            }
+        }
+        Mp4FaststartView view = videoInfo.getFaststartView();
+        if (view != null) {
+            offset = view.toViewOffset(offset);
+        }
+        return new SeekPosition(seconds, keyframeSeconds, offset);
+    }
+
+    /**
+     * The reverse of {@link #seek}: the playback time of the video sample stored at or
+     * before a byte offset of the stream endpoint.
+     */
+    public double timeAt(VideoInfo videoInfo, long streamOffset) {
+        Mp4Index index = mp4IndexService.getIndex(videoInfo);
+        Mp4Track reference = index.getReferenceTrack();
+        if (reference == null || reference.getSampleCount() == 0) {
+            throw new Mp4FormatException(movieConfig.getMessages().getUnsupportedContainer());
+        }
+        long offset = streamOffset;
+        Mp4FaststartView view = videoInfo.getFaststartView();
+        if (view != null) {
+            offset = view.toFileOffset(streamOffset);
+            if (offset < 0) {
+                return 0; // still inside the moov
+            }
+        }
+        // Samples of one track are stored in decode order, so their offsets only grow
+        int low = 0;
+        int high = reference.getSampleCount() - 1;
+        int sample = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (reference.getSampleOffset(mid) <= offset) {
+                sample = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return reference.getSampleSeconds(sample);
+    }
+}
@@ -1,46 +1,156 @@
 package com.gugugaga.movie.service;
 
-import java.io.File;
-import java.util.Optional;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
 
-import org.springframework.beans.factory.annotation.Autowired;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.gugugaga.movie.config.MovieConfiguration;
 import com.gugugaga.movie.entity.Movie;
 import com.gugugaga.movie.entity.VideoInfo;
+import com.gugugaga.movie.exception.Mp4FormatException;
 import com.gugugaga.movie.exception.VideoNotFoundException;
+import com.gugugaga.movie.mp4.Mp4FaststartView;
 import com.gugugaga.movie.repository.MovieRepository;
+import com.gugugaga.movie.storage.StoredVideo;
+import com.gugugaga.movie.storage.VideoStorage;
 
 @Service
 public class VideoStreamingService {
-    @Autowired
-    private MovieRepository movieRepository;
+    private static final Logger log = LoggerFactory.getLogger(VideoStreamingService.class);
 
+    private final MovieRepository movieRepository;
+    private final VideoStorage videoStorage;
+    private final Mp4IndexService mp4IndexService;
+    private final MovieConfiguration movieConfig;
+
+    // Files are resolved by VideoStorage, kept for the /debug endpoint
     @Value("${app.video.storage.path:videos}")
     private String videoStoragePath;
 
     @Value("${app.video.hls.path:/tes/hls}")
     private String hlsStoragePath;
 
+    // Resolved movie + file metadata per movieId. Seeks are served from here; the DB row
+    // and file attributes are re-checked in the background after refreshAfterWrite.
+    private final LoadingCache<Long, VideoInfo> videoInfoCache;
+
+    public VideoStreamingService(MovieRepository movieRepository, VideoStorage videoStorage, Mp4IndexService mp4IndexService, MovieConfiguration movieConfig) {
+        this.movieRepository = movieRepository;
+        this.videoStorage = videoStorage;
+        this.mp4IndexService = mp4IndexService;
+        this.movieConfig = movieConfig;
+        MovieConfiguration.VideoInfoCache cacheConfig = movieConfig.getVideoInfoCache();
+        this.videoInfoCache = Caffeine.newBuilder()
+                .maximumSize(cacheConfig.getMaximumSize())
+                .refreshAfterWrite(Duration.ofSeconds(cacheConfig.getRefreshAfterWriteSeconds()))
+                .expireAfterWrite(Duration.ofSeconds(cacheConfig.getExpireAfterWriteSeconds()))
+                .build(this::loadVideoInfo);
+    }
+
+    /**
+     * Resolve a video for background work (packaging, indexing) where there is no viewer.
+     */
+    public VideoInfo getVideoInfo( Long movieId ) {
+        return getVideoInfo(movieId, null);
+    }
+
     public VideoInfo getVideoInfo( Long movieId, Long userId ) {
-        Movie movie = movieRepository.findById(movieId).orElseThrow(() -> new IllegalArgumentException("Film tidak ditemukan"));
-        
         // Business logic (subscription check, payment verification, etc.)
         // .....
 
-        File videoFile = new File( videoStoragePath, movie.getVideoFileName() );
+        VideoInfo videoInfo = videoInfoCache.get(movieId);
+        if (videoInfo == null) {
+            throw new VideoNotFoundException(movieConfig.getMessages().getVideoNotFound());
+        }
+        return videoInfo;
+    }
+
+    /**
+     * Drop the cached metadata of a movie, e.g. after it was deleted or its file replaced.
+     */
+    public void evictVideoInfo( Long movieId ) {
+        videoInfoCache.invalidate(movieId);
+    }
+
+    public void evictAllVideoInfo() {
+        videoInfoCache.invalidateAll();
+    }
+
+    /**
+     * @return null when the movie or its file is gone; Caffeine then drops the entry
+     *         instead of keeping the stale one as it does when a refresh throws
+     */
+    private VideoInfo loadVideoInfo( Long movieId ) {
+        Movie movie = movieRepository.findById(movieId).orElse(null);
+        if (movie == null) {
+            return null;
+        }
+
         // Check if the file actually exists
-        if (videoFile == null || !videoFile.exists() || !videoFile.isFile()) {
-            throw new VideoNotFoundException("Video tidak ditemukan");
+        StoredVideo storedVideo;
+        try {
+            storedVideo = videoStorage.stat(movie.getVideoFileName());
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            // Storage unreachable: let a refresh keep serving the previous entry
+            throw new UncheckedIOException(e);
         }
-        return VideoInfo.builder()
-            .file(videoFile)
-            .contentType(getContentType(videoFile.getName()))
+        Path localPath = videoStorage.localPath(storedVideo.getName());
+        VideoInfo videoInfo = VideoInfo.builder()
+            .file(localPath != null ? localPath.toFile() : null)
+            .storedVideo(storedVideo)
+            .contentType(getContentType(storedVideo.getName()))
             .movie(movie)
+            .fileSize(storedVideo.getSize())
+            .lastModified(storedVideo.getLastModified())
+            .etag(buildEtag(storedVideo))
             .build();
+        applyFaststartView(videoInfo);
+        return videoInfo;
     }
-    private String getContentType(String filename) {
+
+    /**
+     * MP4s with the moov at the end make players fetch the tail before the first frame.
+     * Serve those as a moov-first view instead; it has different bytes, so it gets its own ETag.
+     */
+    private void applyFaststartView(VideoInfo videoInfo) {
+        if (!movieConfig.getFaststart().isEnabled() || !mp4IndexService.isIsoMedia(videoInfo.getContentType())) {
+            return;
+        }
+        Mp4FaststartView view;
+        try {
+            view = mp4IndexService.getFaststartView(videoInfo);
+        } catch (Mp4FormatException | UncheckedIOException e) {
+            // Not something we can remux, the file is still served as stored
+            log.warn("No faststart view for {}: {}", videoInfo.getStoredVideo().getName(), e.getMessage());
+            return;
+        }
+        if (view != null) {
+            String etag = videoInfo.getEtag();
+            videoInfo.setFaststartView(view);
+            videoInfo.setEtag(etag.substring(0, etag.length() - 1) + "-fs\"");
+        }
+    }
+
+    /**
+     * Strong ETag built from file identity (inode, or the object's own ETag), size and
+     * mtime, the same recipe Apache/nginx use. Any replacement of the file yields a new tag.
+     */
+    private String buildEtag(StoredVideo storedVideo) {
+        return "\"" + storedVideo.getVersion() + "-" + Long.toHexString(storedVideo.getSize()) + "-" + Long.toHexString(storedVideo.getLastModified()) + "\"";
+    }
+
+    public String getContentType(String filename) {
         String extension = filename.substring(filename.lastIndexOf('.') + 1).toLowerCase();
         switch (extension) {
             case "mp4": return "video/mp4";
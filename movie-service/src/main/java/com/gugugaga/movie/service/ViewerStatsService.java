@@ -0,0 +1,259 @@
+package com.gugugaga.movie.service;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.gugugaga.movie.config.MovieConfiguration;
+import com.gugugaga.movie.dto.ViewerSketches;
+import com.gugugaga.movie.util.HyperLogLog;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * "Now watching" and unique viewers per movie, kept in memory instead of counted in SQL.
+ *
+ * Business Flow:
+ * 1. Every stream body opens a Viewing: the movie's LongAdder goes up and the user is
+ *    added to today's HyperLogLog of the movie (and of all movies)
+ * 2. The Viewing is closed once the request is over, see StreamLeaseRequestListener
+ * 3. Sketches of the last app.movie.viewers.retain-days days are kept, older ones pruned
+ *    together with the counters (and gauges) of movies nobody is streaming
+ * 4. Sketches are exported per day so counts of several nodes can be merged
+ *
+ * Active counts are streams, not people: a player with two open ranges counts twice.
+ * A body handed to sendfile stops counting when the request is released.
+ */
+@Service
+public class ViewerStatsService {
+    public static final String VIEWING_ATTRIBUTE = ViewerStatsService.class.getName() + ".viewing";
+
+    private final MovieConfiguration movieConfig;
+    private final MeterRegistry meterRegistry;
+    private final Map<Long, LongAdder> activeStreams = new ConcurrentHashMap<>();
+    private final Map<Long, Gauge> activeGauges = new ConcurrentHashMap<>();
+    private final Map<LocalDate, DailyViewers> days = new ConcurrentHashMap<>();
+
+    public ViewerStatsService(MovieConfiguration movieConfig, MeterRegistry meterRegistry) {
+        this.movieConfig = movieConfig;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("movie.viewers.unique.today", this, service -> service.getUniqueViewers(service.today()))
+                .description("Approximate distinct users who streamed any movie today")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return the viewing to close once the stream is over, or null when stats are disabled
+     */
+    public Viewing open(Long userId, Long movieId) {
+        if (!movieConfig.getViewers().isEnabled() || movieId == null) {
+            return null;
+        }
+        // Incremented inside compute so pruning can't drop the counter in between
+        LongAdder active = activeStreams.compute(movieId, (id, current) -> {
+            LongAdder counter = current != null ? current : newActiveCounter(id);
+            counter.increment();
+            return counter;
+        });
+        if (userId != null) {
+            DailyViewers today = days.computeIfAbsent(today(), date -> new DailyViewers(sketchPrecision()));
+            today.total.add(userId);
+            today.movies.computeIfAbsent(movieId, id -> new HyperLogLog(sketchPrecision())).add(userId);
+        }
+        return new Viewing(active);
+    }
+
+    private LongAdder newActiveCounter(Long movieId) {
+        LongAdder active = new LongAdder();
+        if (movieConfig.getViewers().isPerMovieGauges()) {
+            activeGauges.put(movieId, Gauge.builder("movie.viewers.active", active, LongAdder::sum)
+                    .description("Streams of the movie being written right now")
+                    .tag("movie_id", String.valueOf(movieId))
+                    .register(meterRegistry));
+        }
+        return active;
+    }
+
+    public long getActiveStreams(Long movieId) {
+        LongAdder active = activeStreams.get(movieId);
+        return active != null ? active.sum() : 0;
+    }
+
+    public long getActiveStreams() {
+        long total = 0;
+        for (LongAdder active : activeStreams.values()) {
+            total += active.sum();
+        }
+        return total;
+    }
+
+    /**
+     * Movies with the most active streams, as movieId to count.
+     */
+    public Map<Long, Long> getMostWatched(int limit) {
+        List<Map.Entry<Long, Long>> entries = new ArrayList<>();
+        activeStreams.forEach((movieId, active) -> {
+            long count = active.sum();
+            if (count > 0) {
+                entries.add(Map.entry(movieId, count));
+            }
+        });
+        entries.sort(Map.Entry.<Long, Long>comparingByValue(Comparator.reverseOrder()));
+        Map<Long, Long> result = new LinkedHashMap<>();
+        for (Map.Entry<Long, Long> entry : entries.subList(0, Math.min(limit, entries.size()))) {
+            result.put(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    public long getUniqueViewers(Long movieId, LocalDate date) {
+        DailyViewers day = days.get(date);
+        HyperLogLog sketch = day != null ? day.movies.get(movieId) : null;
+        return sketch != null ? sketch.estimate() : 0;
+    }
+
+    public long getUniqueViewers(LocalDate date) {
+        DailyViewers day = days.get(date);
+        return day != null ? day.total.estimate() : 0;
+    }
+
+    public LocalDate today() {
+        return LocalDate.now(ZoneId.of(movieConfig.getViewers().getZone()));
+    }
+
+    /**
+     * This node's sketches of a day, empty when nobody streamed.
+     */
+    public ViewerSketches export(LocalDate date) {
+        DailyViewers day = days.get(date);
+        if (day == null) {
+            day = new DailyViewers(sketchPrecision());
+        }
+        Map<Long, String> movies = new LinkedHashMap<>();
+        day.movies.forEach((movieId, sketch) -> movies.put(movieId, encode(sketch)));
+        return new ViewerSketches(date, day.total.getPrecision(), encode(day.total), movies);
+    }
+
+    /**
+     * Merge the exports of several nodes (of the same day) into one.
+     *
+     * @throws IllegalArgumentException when a sketch is malformed or precisions differ
+     */
+    public ViewerSketches merge(List<ViewerSketches> exports) {
+        if (exports == null || exports.isEmpty()) {
+            return export(today());
+        }
+        LocalDate date = exports.get(0).getDate();
+        HyperLogLog total = null;
+        Map<Long, HyperLogLog> movies = new LinkedHashMap<>();
+        for (ViewerSketches export : exports) {
+            if (date != null && export.getDate() != null && !date.equals(export.getDate())) {
+                throw new IllegalArgumentException("Sketches of " + date + " and " + export.getDate() + " cannot be merged");
+            }
+            if (export.getTotal() != null) {
+                total = mergeInto(total, decode(export.getTotal()));
+            }
+            if (export.getMovies() != null) {
+                export.getMovies().forEach((movieId, encoded) -> movies.merge(movieId, decode(encoded), ViewerStatsService::mergeInto));
+            }
+        }
+        if (total == null) {
+            total = new HyperLogLog(sketchPrecision());
+        }
+        Map<Long, String> encoded = new LinkedHashMap<>();
+        movies.forEach((movieId, sketch) -> encoded.put(movieId, encode(sketch)));
+        return new ViewerSketches(date, total.getPrecision(), encode(total), encoded);
+    }
+
+    /**
+     * Estimated unique viewers of an (exported or merged) set of sketches, total and per movie.
+     */
+    public Map<String, Object> estimate(ViewerSketches sketches) {
+        Map<Long, Long> movies = new LinkedHashMap<>();
+        sketches.getMovies().forEach((movieId, encoded) -> movies.put(movieId, decode(encoded).estimate()));
+        return Map.of(
+                "date", String.valueOf(sketches.getDate()),
+                "uniqueViewers", decode(sketches.getTotal()).estimate(),
+                "movies", movies
+        );
+    }
+
+    @Scheduled(fixedDelayString = "${app.movie.viewers.prune-interval-millis:3600000}")
+    public void pruneOldDays() {
+        LocalDate oldest = today().minusDays(Math.max(0, movieConfig.getViewers().getRetainDays() - 1));
+        days.keySet().removeIf(date -> date.isBefore(oldest));
+        for (Long movieId : activeStreams.keySet()) {
+            activeStreams.computeIfPresent(movieId, (id, active) -> {
+                if (active.sum() > 0) {
+                    return active;
+                }
+                // Closed viewings still hold the counter but never touch it again
+                Gauge gauge = activeGauges.remove(id);
+                if (gauge != null) {
+                    meterRegistry.remove(gauge);
+                }
+                return null;
+            });
+        }
+    }
+
+    private int sketchPrecision() {
+        return movieConfig.getViewers().getSketchPrecision();
+    }
+
+    private static HyperLogLog mergeInto(HyperLogLog target, HyperLogLog sketch) {
+        if (target == null) {
+            return sketch;
+        }
+        target.merge(sketch);
+        return target;
+    }
+
+    private static String encode(HyperLogLog sketch) {
+        return Base64.getEncoder().encodeToString(sketch.toBytes());
+    }
+
+    private static HyperLogLog decode(String encoded) {
+        return HyperLogLog.fromBytes(Base64.getDecoder().decode(encoded));
+    }
+
+    private static final class DailyViewers {
+        private final HyperLogLog total;
+        private final Map<Long, HyperLogLog> movies = new ConcurrentHashMap<>();
+
+        private DailyViewers(int precision) {
+            this.total = new HyperLogLog(precision);
+        }
+    }
+
+    /**
+     * One stream counted as active. Closing it more than once is harmless.
+     */
+    public static final class Viewing implements AutoCloseable {
+        private final LongAdder active;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Viewing(LongAdder active) {
+            this.active = active;
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                active.decrement();
+            }
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.gugugaga.movie.service;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.gugugaga.movie.config.MovieConfiguration;
+import com.gugugaga.movie.dto.WatchProgress;
+import com.gugugaga.movie.entity.VideoInfo;
+import com.gugugaga.movie.mp4.Mp4Index;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * "Continue watching" positions, derived from the stream requests a player already makes.
+ *
+ * Business Flow:
+ * 1. Every stream request records the byte offset it starts at, and the offset its body
+ *    reached once it ends, for (X-User-Id, movie)
+ * 2. Offsets are coalesced in memory, only the furthest one per (user, movie) and flush
+ *    interval is kept
+ * 3. A short body near the end of the file, far past the viewer's last position, is a
+ *    player reading trailing metadata (tail moov, WebM Cues) and is not recorded
+ * 4. A timer maps each offset to a playback time (MP4 sample index) and writes all of
+ *    them with one JDBC batch upsert
+ * 5. Reads prefer the pending in-memory position over the stored row
+ *
+ * Nothing is written on the request path; a crash loses at most one flush interval.
+ */
+@Service
+public class WatchProgressService {
+    private static final Logger log = LoggerFactory.getLogger(WatchProgressService.class);
+
+    private static final String UPSERT_SQL = "INSERT INTO tb_watch_progress (user_id, movie_id, position_seconds, duration_seconds, byte_offset, file_size, completed, updated_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?) "
+            + "ON CONFLICT (user_id, movie_id) DO UPDATE SET position_seconds = EXCLUDED.position_seconds, "
+            + "duration_seconds = EXCLUDED.duration_seconds, byte_offset = EXCLUDED.byte_offset, file_size = EXCLUDED.file_size, "
+            + "completed = EXCLUDED.completed, updated_at = EXCLUDED.updated_at "
+            // A position re-queued after a failed flush must not overwrite a newer one from another node
+            + "WHERE tb_watch_progress.updated_at <= EXCLUDED.updated_at";
+    private static final int[] UPSERT_TYPES = {
+            Types.BIGINT, Types.BIGINT, Types.DOUBLE, Types.DOUBLE, Types.BIGINT, Types.BIGINT, Types.BOOLEAN, Types.TIMESTAMP
+    };
+    private static final String SELECT_COLUMNS = "SELECT p.user_id, p.movie_id, p.position_seconds, p.duration_seconds, p.byte_offset, p.file_size, p.completed, p.updated_at FROM tb_watch_progress p ";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final VideoSeekService videoSeekService;
+    private final Mp4IndexService mp4IndexService;
+    private final MovieConfiguration movieConfig;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    // Furthest recorded offset per (user, movie), outlives the flush to tell probes from playback
+    private final Cache<String, Long> lastOffsets;
+
+    public WatchProgressService(JdbcTemplate jdbcTemplate, VideoSeekService videoSeekService, Mp4IndexService mp4IndexService,
+                                MovieConfiguration movieConfig, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.videoSeekService = videoSeekService;
+        this.mp4IndexService = mp4IndexService;
+        this.movieConfig = movieConfig;
+        this.meterRegistry = meterRegistry;
+        this.lastOffsets = Caffeine.newBuilder()
+                .maximumSize(movieConfig.getWatchProgress().getMaxPendingEntries())
+                .expireAfterAccess(Duration.ofHours(6))
+                .build();
+        Gauge.builder("movie.watch.progress.pending", pending, Map::size)
+                .description("Watch positions waiting for the next batch upsert")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Start tracking a stream body of the movie that starts at {@code start}.
+     *
+     * @return the tracker to report how far the body got, or null when nothing is tracked
+     */
+    public Tracker track(Long userId, VideoInfo videoInfo, long start) {
+        if (!movieConfig.getWatchProgress().isEnabled() || userId == null || videoInfo.getMovie() == null) {
+            return null;
+        }
+        boolean probe = isTailJump(userId, videoInfo, start);
+        if (!probe) {
+            record(userId, videoInfo, start);
+        }
+        return new Tracker(userId, videoInfo, start, probe);
+    }
+
+    // Starts in the completed part of the file, well past where this viewer was
+    private boolean isTailJump(long userId, VideoInfo videoInfo, long start) {
+        MovieConfiguration.WatchProgress config = movieConfig.getWatchProgress();
+        Long last = lastOffsets.getIfPresent(userId + ":" + videoInfo.getMovie().getId());
+        return start >= videoInfo.getFileSize() * config.getCompletedRatio()
+                && start > (last != null ? last : 0) + config.getProbeToleranceBytes();
+    }
+
+    private void record(long userId, VideoInfo videoInfo, long offset) {
+        long movieId = videoInfo.getMovie().getId();
+        String key = userId + ":" + movieId;
+        lastOffsets.asMap().merge(key, Math.min(offset, videoInfo.getFileSize()), Math::max);
+        if (pending.size() >= movieConfig.getWatchProgress().getMaxPendingEntries() && !pending.containsKey(key)) {
+            meterRegistry.counter("movie.watch.progress.dropped").increment();
+            return;
+        }
+        Pending update = new Pending(userId, movieId, videoInfo, Math.min(offset, videoInfo.getFileSize()), LocalDateTime.now());
+        pending.merge(key, update, Pending::furthest);
+    }
+
+    /**
+     * Resume position of one movie, null positionSeconds when only the byte offset is known.
+     */
+    public Optional<WatchProgress> getProgress(Long userId, Long movieId) {
+        Pending update = pending.get(userId + ":" + movieId);
+        if (update != null) {
+            return Optional.of(toProgress(update));
+        }
+        List<WatchProgress> rows = jdbcTemplate.query(SELECT_COLUMNS + "WHERE p.user_id = ? AND p.movie_id = ?",
+                WatchProgressService::mapRow, userId, movieId);
+        return rows.stream().findFirst();
+    }
+
+    /**
+     * Unfinished movies of a user, most recently watched first. A movie started within the
+     * last flush interval shows up after the next flush.
+     */
+    public List<WatchProgress> getInProgress(Long userId, int limit) {
+        List<WatchProgress> rows = jdbcTemplate.query(SELECT_COLUMNS
+                        + "JOIN tb_movies m ON m.id = p.movie_id AND m.is_deleted = false "
+                        + "WHERE p.user_id = ? AND p.completed = FALSE ORDER BY p.updated_at DESC LIMIT ?",
+                WatchProgressService::mapRow, userId, limit);
+        List<WatchProgress> result = new ArrayList<>(rows.size());
+        for (WatchProgress row : rows) {
+            Pending update = pending.get(userId + ":" + row.getMovieId());
+            result.add(update != null ? toProgress(update) : row);
+        }
+        return result;
+    }
+
+    /**
+     * Write every pending position with batch upserts of app.movie.watch-progress.batch-size rows.
+     */
+    @Scheduled(fixedDelayString = "${app.movie.watch-progress.flush-interval-millis:5000}")
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<Pending> drained = new ArrayList<>();
+        for (String key : pending.keySet()) {
+            Pending update = pending.remove(key);
+            if (update != null) {
+                drained.add(update);
+            }
+        }
+        int batchSize = Math.max(1, movieConfig.getWatchProgress().getBatchSize());
+        for (int from = 0; from < drained.size(); from += batchSize) {
+            List<Pending> batch = drained.subList(from, Math.min(drained.size(), from + batchSize));
+            List<Object[]> args = new ArrayList<>(batch.size());
+            for (Pending update : batch) {
+                WatchProgress progress = toProgress(update);
+                args.add(new Object[] {
+                        progress.getUserId(), progress.getMovieId(), progress.getPositionSeconds(), progress.getDurationSeconds(),
+                        progress.getByteOffset(), progress.getFileSize(), progress.isCompleted(), Timestamp.valueOf(progress.getUpdatedAt())
+                });
+            }
+            try {
+                jdbcTemplate.batchUpdate(UPSERT_SQL, args, UPSERT_TYPES);
+                meterRegistry.counter("movie.watch.progress.flushed").increment(batch.size());
+            } catch (DataIntegrityViolationException e) {
+                // Usually one movie deleted since its request: write the rows one by one so only those are lost
+                int failed = upsertEach(batch, args);
+                if (failed >= 0) {
+                    requeue(drained.subList(from + failed, drained.size()));
+                    return;
+                }
+            } catch (DataAccessException e) {
+                log.warn("Writing {} watch positions failed, retrying on the next flush: {}", batch.size(), e.getMessage());
+                requeue(drained.subList(from, drained.size()));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Upsert a batch that violated a constraint row by row, dropping the rows that violate it.
+     *
+     * @return index of the first row that failed for another reason, or -1 when the batch is done
+     */
+    private int upsertEach(List<Pending> batch, List<Object[]> args) {
+        for (int i = 0; i < batch.size(); i++) {
+            try {
+                jdbcTemplate.update(UPSERT_SQL, args.get(i), UPSERT_TYPES);
+                meterRegistry.counter("movie.watch.progress.flushed").increment();
+            } catch (DataIntegrityViolationException e) {
+                // A movie deleted since the request: retrying can't succeed
+                log.warn("Dropping watch position of user {} on movie {}: {}", batch.get(i).userId, batch.get(i).movieId, e.getMessage());
+                meterRegistry.counter("movie.watch.progress.dropped").increment();
+            } catch (DataAccessException e) {
+                log.warn("Writing {} watch positions failed, retrying on the next flush: {}", batch.size() - i, e.getMessage());
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void requeue(List<Pending> updates) {
+        for (Pending update : updates) {
+            pending.merge(update.userId + ":" + update.movieId, update, Pending::furthest);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private WatchProgress toProgress(Pending update) {
+        MovieConfiguration.WatchProgress config = movieConfig.getWatchProgress();
+        VideoInfo videoInfo = update.videoInfo;
+        Double positionSeconds = null;
+        Double durationSeconds = null;
+        boolean completed = update.offset >= videoInfo.getFileSize() * config.getCompletedRatio();
+        if (mp4IndexService.isIsoMedia(videoInfo.getContentType())) {
+            try {
+                Mp4Index index = mp4IndexService.getIndex(videoInfo);
+                durationSeconds = index.getDurationSeconds();
+                double requestedSeconds = videoSeekService.timeAt(videoInfo, update.offset);
+                positionSeconds = Math.max(0, requestedSeconds - config.getPlayerBufferSeconds());
+                completed = durationSeconds > 0 && requestedSeconds >= durationSeconds * config.getCompletedRatio();
+            } catch (RuntimeException e) {
+                // No usable sample index (or the file is gone), the byte offset is all there is
+                log.debug("No playback time for movie {} at offset {}: {}", update.movieId, update.offset, e.getMessage());
+            }
+        }
+        return new WatchProgress(update.userId, update.movieId, positionSeconds, durationSeconds, update.offset,
+                videoInfo.getFileSize(), completed, update.updatedAt);
+    }
+
+    private static WatchProgress mapRow(ResultSet rs, int rowNum) throws SQLException {
+        Timestamp updatedAt = rs.getTimestamp("updated_at");
+        return new WatchProgress(
+                rs.getLong("user_id"),
+                rs.getLong("movie_id"),
+                rs.getObject("position_seconds", Double.class),
+                rs.getObject("duration_seconds", Double.class),
+                rs.getLong("byte_offset"),
+                rs.getLong("file_size"),
+                rs.getBoolean("completed"),
+                updatedAt != null ? updatedAt.toLocalDateTime() : null);
+    }
+
+    /**
+     * Reports how far one response body got, see {@link #track}.
+     */
+    public final class Tracker {
+        private final long userId;
+        private final VideoInfo videoInfo;
+        private final long start;
+        private final boolean probe;
+
+        private Tracker(long userId, VideoInfo videoInfo, long start, boolean probe) {
+            this.userId = userId;
+            this.videoInfo = videoInfo;
+            this.start = start;
+            this.probe = probe;
+        }
+
+        public void reached(long bytesWritten) {
+            if (bytesWritten <= 0) {
+                return;
+            }
+            // A jump near the end only counts once the player keeps reading, i.e. it seeked there
+            if (probe && bytesWritten < movieConfig.getWatchProgress().getProbeMaxBytes()) {
+                return;
+            }
+            record(userId, videoInfo, start + bytesWritten);
+        }
+    }
+
+    private static final class Pending {
+        private final long userId;
+        private final long movieId;
+        private final VideoInfo videoInfo;
+        private final long offset;
+        private final LocalDateTime updatedAt;
+
+        private Pending(long userId, long movieId, VideoInfo videoInfo, long offset, LocalDateTime updatedAt) {
+            this.userId = userId;
+            this.movieId = movieId;
+            this.videoInfo = videoInfo;
+            this.offset = offset;
+            this.updatedAt = updatedAt;
+        }
+
+        // The furthest offset of the window, stamped with the latest request
+        static Pending furthest(Pending current, Pending update) {
+            Pending base = update.offset >= current.offset ? update : current;
+            LocalDateTime updatedAt = update.updatedAt.isAfter(current.updatedAt) ? update.updatedAt : current.updatedAt;
+            return base.updatedAt == updatedAt ? base : new Pending(base.userId, base.movieId, base.videoInfo, base.offset, updatedAt);
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.gugugaga.movie.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Local disk tier in front of a remote storage. Videos are fetched in fixed-size chunks
+ * on first read and kept as files in the cache directory, so a node only holds the parts
+ * of the library its viewers actually watch. The least recently read chunks are deleted
+ * once the cache exceeds its byte budget.
+ *
+ * Chunk files are named after the video's name and version, so a replaced object never
+ * serves stale chunks, and they are picked up again after a restart.
+ */
+public class ChunkCachingVideoStorage implements VideoStorage {
+    private static final Logger log = LoggerFactory.getLogger(ChunkCachingVideoStorage.class);
+    private static final String CHUNK_SUFFIX = ".chunk";
+    private static final String PARTIAL_SUFFIX = ".part";
+    // chunkFileName, and the temp file a download is written to before it is moved in place
+    private static final Pattern CHUNK_NAME = Pattern.compile("[0-9a-f]{32}-\\d+\\.chunk");
+    private static final Pattern PARTIAL_NAME = Pattern.compile("[0-9a-f]{32}-\\d+\\.chunk\\d*\\.part");
+
+    private final VideoStorage delegate;
+    private final Path directory;
+    private final int chunkSize;
+    private final long maxBytes;
+    // Chunk file name -> size, in access order. Guarded by this
+    private final LinkedHashMap<String, Long> chunks = new LinkedHashMap<>(256, 0.75f, true);
+    private long cachedBytes;
+    // A chunk is fetched once even when several streams miss on it together
+    private final Map<String, CompletableFuture<Path>> loading = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+
+    public ChunkCachingVideoStorage(VideoStorage delegate, Path directory, int chunkSize, long maxBytes, MeterRegistry meterRegistry) throws IOException {
+        this.delegate = delegate;
+        this.directory = Files.createDirectories(directory.toAbsolutePath().normalize());
+        this.chunkSize = chunkSize;
+        this.maxBytes = maxBytes;
+        this.hits = Counter.builder("movie.storage.chunk.requests")
+                .description("Chunk lookups in the local storage cache")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("movie.storage.chunk.requests")
+                .description("Chunk lookups in the local storage cache")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("movie.storage.chunk.cache.bytes", this, ChunkCachingVideoStorage::getCachedBytes)
+                .description("Bytes of remote video held in the local chunk cache")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        loadExisting();
+    }
+
+    @Override
+    public StoredVideo stat(String name) throws IOException {
+        return delegate.stat(name);
+    }
+
+    @Override
+    public VideoReader open(StoredVideo video) throws IOException {
+        if (delegate.localPath(video.getName()) != null) {
+            // Already on this disk, a copy would only cost space
+            return delegate.open(video);
+        }
+        return new ChunkReader(video, delegate.open(video));
+    }
+
+    @Override
+    public Path localPath(String name) {
+        return delegate.localPath(name);
+    }
+
+    public synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    /**
+     * Index chunks left by a previous run, oldest first, and drop partial downloads.
+     * Any other file in the directory is left alone.
+     */
+    private void loadExisting() throws IOException {
+        List<Path> found = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(found::add);
+        }
+        List<Path> existing = new ArrayList<>();
+        for (Path path : found) {
+            String name = path.getFileName().toString();
+            if (CHUNK_NAME.matcher(name).matches()) {
+                existing.add(path);
+            } else if (PARTIAL_NAME.matcher(name).matches()) {
+                Files.deleteIfExists(path);
+            }
+        }
+        existing.sort(Comparator.comparingLong(ChunkCachingVideoStorage::lastModified));
+        synchronized (this) {
+            for (Path path : existing) {
+                long size = Files.size(path);
+                chunks.put(path.getFileName().toString(), size);
+                cachedBytes += size;
+            }
+            evict(null);
+        }
+        if (!existing.isEmpty()) {
+            log.info("Chunk cache {} holds {} chunks ({} bytes)", directory, existing.size(), getCachedBytes());
+        }
+    }
+
+    /**
+     * Path of a cached chunk, fetching it from the delegate on a miss.
+     */
+    private Path chunk(StoredVideo video, VideoReader source, long index) throws IOException {
+        String fileName = chunkFileName(video, index);
+        synchronized (this) {
+            if (chunks.get(fileName) != null) {
+                hits.increment();
+                return directory.resolve(fileName);
+            }
+        }
+        CompletableFuture<Path> fetch = new CompletableFuture<>();
+        CompletableFuture<Path> inFlight = loading.putIfAbsent(fileName, fetch);
+        if (inFlight != null) {
+            return await(inFlight);
+        }
+        misses.increment();
+        try {
+            Path path = fetch(video, source, index, fileName);
+            fetch.complete(path);
+            return path;
+        } catch (IOException | RuntimeException e) {
+            fetch.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(fileName, fetch);
+        }
+    }
+
+    private Path fetch(StoredVideo video, VideoReader source, long index, String fileName) throws IOException {
+        long start = index * chunkSize;
+        int length = (int) Math.min(chunkSize, video.getSize() - start);
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (source.read(buffer, start + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of " + video.getName() + " at " + (start + buffer.position()));
+            }
+        }
+        buffer.flip();
+        Path partial = Files.createTempFile(directory, fileName, PARTIAL_SUFFIX);
+        try {
+            try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Path path = directory.resolve(fileName);
+            Files.move(partial, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            synchronized (this) {
+                chunks.put(fileName, (long) length);
+                cachedBytes += length;
+                evict(fileName);
+            }
+            return path;
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+    }
+
+    /**
+     * Delete least recently read chunks until the cache fits its budget, never the one
+     * just added. A stream still reading an evicted chunk keeps its open descriptor.
+     */
+    private void evict(String keep) {
+        Iterator<Map.Entry<String, Long>> iterator = chunks.entrySet().iterator();
+        while (cachedBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            if (eldest.getKey().equals(keep)) {
+                continue;
+            }
+            iterator.remove();
+            cachedBytes -= eldest.getValue();
+            try {
+                Files.deleteIfExists(directory.resolve(eldest.getKey()));
+            } catch (IOException e) {
+                log.warn("Failed to delete cached chunk {}: {}", eldest.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    private synchronized void forget(String fileName) {
+        Long size = chunks.remove(fileName);
+        if (size != null) {
+            cachedBytes -= size;
+        }
+    }
+
+    private static Path await(CompletableFuture<Path> fetch) throws IOException {
+        try {
+            return fetch.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw e;
+        }
+    }
+
+    private static String chunkFileName(StoredVideo video, long index) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest((video.getName() + "\n" + video.getVersion()).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 16) + "-" + index + CHUNK_SUFFIX;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class).lastModifiedTime().toMillis();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private final class ChunkReader implements VideoReader {
+        private final StoredVideo video;
+        private final VideoReader source;
+
+        private ChunkReader(StoredVideo video, VideoReader source) {
+            this.video = video;
+            this.source = source;
+        }
+
+        @Override
+        public int read(ByteBuffer target, long position) throws IOException {
+            if (position >= video.getSize()) {
+                return -1;
+            }
+            long index = position / chunkSize;
+            long offset = position - index * chunkSize;
+            // Never read across a chunk boundary
+            int limit = target.limit();
+            long available = Math.min(chunkSize, video.getSize() - index * chunkSize) - offset;
+            if (available < target.remaining()) {
+                target.limit(target.position() + (int) available);
+            }
+            try {
+                for (int attempt = 1; ; attempt++) {
+                    Path path = chunk(video, source, index);
+                    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                        return channel.read(target, offset);
+                    } catch (NoSuchFileException e) {
+                        // Evicted between lookup and open
+                        forget(path.getFileName().toString());
+                        if (attempt >= 2) {
+                            throw e;
+                        }
+                    }
+                }
+            } finally {
+                target.limit(limit);
+            }
+        }
+
+        @Override
+        public long size() {
+            return video.getSize();
+        }
+
+        @Override
+        public void close() throws IOException {
+            source.close();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.gugugaga.movie.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Local directory standing in for a bucket, for development and tests. Objects behave
+ * like remote ones: no local path is exposed and every read goes through the chunk cache.
+ */
+public class DirectoryObjectStoreClient implements ObjectStoreClient {
+    private final Path root;
+
+    public DirectoryObjectStoreClient(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    @Override
+    public StoredVideo head(String key) throws IOException {
+        Path path = resolve(key);
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        if (!attributes.isRegularFile()) {
+            throw new NoSuchFileException(key);
+        }
+        return new StoredVideo(key, attributes.size(), attributes.lastModifiedTime().toMillis(), versionOf(attributes));
+    }
+
+    @Override
+    public int getRange(String key, String version, long position, ByteBuffer target) throws IOException {
+        Path path = resolve(key);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (!version.equals(versionOf(Files.readAttributes(path, BasicFileAttributes.class)))) {
+                throw new IOException("Object " + key + " changed while being read");
+            }
+            return channel.read(target, position);
+        }
+    }
+
+    private static String versionOf(BasicFileAttributes attributes) {
+        return Long.toHexString(attributes.size()) + "-" + Long.toHexString(attributes.lastModifiedTime().toMillis());
+    }
+
+    private Path resolve(String key) throws NoSuchFileException {
+        Path path = root.resolve(key).normalize();
+        if (!path.startsWith(root)) {
+            throw new NoSuchFileException(key);
+        }
+        return path;
+    }
+}
@@ -0,0 +1,80 @@
+package com.gugugaga.movie.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Videos in a directory on this node, the original deployment model.
+ */
+public class FilesystemVideoStorage implements VideoStorage {
+    private final Path root;
+
+    public FilesystemVideoStorage(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    @Override
+    public StoredVideo stat(String name) throws IOException {
+        Path path = resolve(name);
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        if (!attributes.isRegularFile()) {
+            throw new NoSuchFileException(path.toString());
+        }
+        // Same identity the ETag has always used: inode when available, else the path
+        Object fileKey = attributes.fileKey();
+        String version = Integer.toHexString(fileKey != null ? fileKey.hashCode() : path.toString().hashCode());
+        return new StoredVideo(name, attributes.size(), attributes.lastModifiedTime().toMillis(), version);
+    }
+
+    @Override
+    public VideoReader open(StoredVideo video) throws IOException {
+        return new FileVideoReader(FileChannel.open(resolve(video.getName()), StandardOpenOption.READ));
+    }
+
+    @Override
+    public Path localPath(String name) {
+        try {
+            return resolve(name);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private Path resolve(String name) throws NoSuchFileException {
+        Path path = root.resolve(name).normalize();
+        // Movie rows must not reach outside the library
+        if (!path.startsWith(root)) {
+            throw new NoSuchFileException(name);
+        }
+        return path;
+    }
+
+    static final class FileVideoReader implements VideoReader {
+        private final FileChannel channel;
+
+        FileVideoReader(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int read(ByteBuffer target, long position) throws IOException {
+            return channel.read(target, position);
+        }
+
+        @Override
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
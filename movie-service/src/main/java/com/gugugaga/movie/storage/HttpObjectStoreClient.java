@@ -0,0 +1,119 @@
+package com.gugugaga.movie.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * Object store client speaking plain HTTP: HEAD for metadata, GET with a Range header
+ * for data. Works against S3-compatible endpoints serving public or pre-signed buckets,
+ * a CDN origin, or an in-process HTTP stub in tests.
+ */
+public class HttpObjectStoreClient implements ObjectStoreClient {
+    private final HttpClient httpClient;
+    private final String endpoint;
+    private final Duration requestTimeout;
+
+    public HttpObjectStoreClient(String endpoint, Duration connectTimeout, Duration requestTimeout) {
+        this.endpoint = endpoint.endsWith("/") ? endpoint : endpoint + "/";
+        this.requestTimeout = requestTimeout;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    @Override
+    public StoredVideo head(String key) throws IOException {
+        HttpRequest request = requestFor(key).method("HEAD", HttpRequest.BodyPublishers.noBody()).build();
+        HttpResponse<Void> response = send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() == 404) {
+            throw new NoSuchFileException(key);
+        }
+        if (response.statusCode() != 200) {
+            throw new IOException("HEAD " + key + " returned " + response.statusCode());
+        }
+        long size = response.headers().firstValueAsLong("Content-Length")
+                .orElseThrow(() -> new IOException("HEAD " + key + " has no Content-Length"));
+        long lastModified = response.headers().firstValue("Last-Modified")
+                .map(value -> ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli())
+                .orElse(0L);
+        String version = response.headers().firstValue("ETag")
+                .map(HttpObjectStoreClient::stripEtag)
+                .orElse(Long.toHexString(size) + "-" + Long.toHexString(lastModified));
+        return new StoredVideo(key, size, lastModified, version);
+    }
+
+    @Override
+    public int getRange(String key, String version, long position, ByteBuffer target) throws IOException {
+        long end = position + target.remaining() - 1;
+        HttpRequest request = requestFor(key)
+                .header("Range", "bytes=" + position + "-" + end)
+                .header("If-Match", "\"" + version + "\"")
+                .GET()
+                .build();
+        HttpResponse<InputStream> response = send(request, HttpResponse.BodyHandlers.ofInputStream());
+        try (InputStream body = response.body()) {
+            switch (response.statusCode()) {
+                case 206:
+                    break;
+                case 200:
+                    // Server ignored the Range header
+                    body.skipNBytes(position);
+                    break;
+                case 416:
+                    return -1;
+                case 412:
+                    throw new IOException("Object " + key + " changed while being read");
+                case 404:
+                    throw new NoSuchFileException(key);
+                default:
+                    throw new IOException("GET " + key + " returned " + response.statusCode());
+            }
+            int read;
+            if (target.hasArray()) {
+                read = body.readNBytes(target.array(), target.arrayOffset() + target.position(), target.remaining());
+                target.position(target.position() + read);
+            } else {
+                byte[] bytes = body.readNBytes(target.remaining());
+                read = bytes.length;
+                target.put(bytes);
+            }
+            return read == 0 ? -1 : read;
+        }
+    }
+
+    private HttpRequest.Builder requestFor(String key) {
+        String path = Arrays.stream(key.split("/"))
+                .map(segment -> URLEncoder.encode(segment, StandardCharsets.UTF_8).replace("+", "%20"))
+                .collect(Collectors.joining("/"));
+        return HttpRequest.newBuilder(URI.create(endpoint + path)).timeout(requestTimeout);
+    }
+
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler) throws IOException {
+        try {
+            return httpClient.send(request, handler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for " + request.uri());
+        }
+    }
+
+    private static String stripEtag(String etag) {
+        String value = etag.startsWith("W/") ? etag.substring(2) : etag;
+        return value.replace("\"", "");
+    }
+}
@@ -0,0 +1,24 @@
+package com.gugugaga.movie.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The two calls {@link ObjectStoreVideoStorage} needs from an object store: HEAD and
+ * ranged GET.
+ */
+public interface ObjectStoreClient {
+
+    /**
+     * @throws java.nio.file.NoSuchFileException when the object doesn't exist
+     */
+    StoredVideo head(String key) throws IOException;
+
+    /**
+     * Fill {@code target} from the object starting at {@code position}, failing when
+     * the object is no longer at {@code version}.
+     *
+     * @return the number of bytes read, or -1 when position is past the end
+     */
+    int getRange(String key, String version, long position, ByteBuffer target) throws IOException;
+}
@@ -0,0 +1,44 @@
+package com.gugugaga.movie.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Videos kept in an object store and read with ranged GETs. Every read is a round
+ * trip, so this storage is meant to sit behind a {@link ChunkCachingVideoStorage}.
+ */
+public class ObjectStoreVideoStorage implements VideoStorage {
+    private final ObjectStoreClient client;
+
+    public ObjectStoreVideoStorage(ObjectStoreClient client) {
+        this.client = client;
+    }
+
+    @Override
+    public StoredVideo stat(String name) throws IOException {
+        return client.head(name);
+    }
+
+    @Override
+    public VideoReader open(StoredVideo video) {
+        return new VideoReader() {
+            @Override
+            public int read(ByteBuffer target, long position) throws IOException {
+                if (position >= video.getSize()) {
+                    return -1;
+                }
+                return client.getRange(video.getName(), video.getVersion(), position, target);
+            }
+
+            @Override
+            public long size() {
+                return video.getSize();
+            }
+
+            @Override
+            public void close() {
+                // Stateless, nothing held between requests
+            }
+        };
+    }
+}
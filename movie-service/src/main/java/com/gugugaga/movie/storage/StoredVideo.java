@@ -0,0 +1,35 @@
+package com.gugugaga.movie.storage;
+
+/**
+ * Metadata of one version of a stored video. The version changes whenever the
+ * content is replaced (inode for files, the object ETag for object stores).
+ */
+public class StoredVideo {
+    private final String name;
+    private final long size;
+    private final long lastModified;
+    private final String version;
+
+    public StoredVideo(String name, long size, long lastModified, String version) {
+        this.name = name;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.version = version;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+}
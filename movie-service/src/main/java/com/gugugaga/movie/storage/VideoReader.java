@@ -0,0 +1,21 @@
+package com.gugugaga.movie.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Positional read access to one stored video. Reads don't move any shared position,
+ * so a reader may be used by several threads at once.
+ */
+public interface VideoReader extends Closeable {
+
+    /**
+     * Read up to {@code target.remaining()} bytes starting at {@code position}.
+     *
+     * @return the number of bytes read, or -1 at the end of the video
+     */
+    int read(ByteBuffer target, long position) throws IOException;
+
+    long size() throws IOException;
+}
@@ -0,0 +1,29 @@
+package com.gugugaga.movie.storage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Where video files live. Movies only know their file name; a storage resolves it to
+ * metadata and positional reads, so a node doesn't need the whole library on its own disk.
+ */
+public interface VideoStorage {
+
+    /**
+     * @throws java.nio.file.NoSuchFileException when there is no video with that name
+     */
+    StoredVideo stat(String name) throws IOException;
+
+    /**
+     * Open a reader on the version described by {@code video}. Close it when done.
+     */
+    VideoReader open(StoredVideo video) throws IOException;
+
+    /**
+     * The video as a file on this node's disk, which enables sendfile, mmap and shared
+     * channels. Null when the storage is remote.
+     */
+    default Path localPath(String name) {
+        return null;
+    }
+}
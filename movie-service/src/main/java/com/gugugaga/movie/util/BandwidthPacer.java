@@ -0,0 +1,94 @@
+package com.gugugaga.movie.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket measured in bytes. Writers take tokens before sending and sleep off
+ * any deficit, so the long-run rate converges to bytesPerSecond while the first
+ * burstBytes go out at full speed. Safe to share between the streams of one user.
+ */
+public final class BandwidthPacer {
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final long burstBytes;
+    private final LongSupplier nanoClock;
+    private long bytesPerSecond;
+    private long tokens;
+    private long lastRefillNanos;
+
+    public BandwidthPacer(long bytesPerSecond, long burstBytes) {
+        this(bytesPerSecond, burstBytes, System::nanoTime);
+    }
+
+    BandwidthPacer(long bytesPerSecond, long burstBytes, LongSupplier nanoClock) {
+        checkRate(bytesPerSecond);
+        this.bytesPerSecond = bytesPerSecond;
+        this.burstBytes = Math.max(0, burstBytes);
+        this.nanoClock = nanoClock;
+        this.tokens = this.burstBytes;
+        this.lastRefillNanos = nanoClock.getAsLong();
+    }
+
+    public synchronized long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * Switch to a new rate (plan change), for every stream sharing this pacer. Tokens
+     * earned so far are kept at the old rate.
+     */
+    public synchronized void setBytesPerSecond(long bytesPerSecond) {
+        checkRate(bytesPerSecond);
+        if (bytesPerSecond != this.bytesPerSecond) {
+            refill();
+            this.bytesPerSecond = bytesPerSecond;
+        }
+    }
+
+    /**
+     * Reserve bytes and block until the bucket allows them to be sent.
+     */
+    public void acquire(long bytes) throws InterruptedException {
+        long waitNanos = reserve(bytes);
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Reserve bytes without blocking, for writers on an event loop.
+     *
+     * @return nanoseconds to wait before sending them
+     */
+    public synchronized long reserve(long bytes) {
+        refill();
+        tokens -= bytes;
+        return tokens >= 0 ? 0 : (-tokens) * NANOS_PER_SECOND / bytesPerSecond;
+    }
+
+    private void refill() {
+        long now = nanoClock.getAsLong();
+        long missing = burstBytes - tokens;
+        if (missing <= 0) {
+            lastRefillNanos = now;
+            return;
+        }
+        // Time past a full bucket earns nothing; capping it also keeps elapsed * bytesPerSecond
+        // from overflowing after a long pause
+        long fillNanos = Math.min(missing, Long.MAX_VALUE / NANOS_PER_SECOND) * NANOS_PER_SECOND / bytesPerSecond + 1;
+        long elapsed = Math.min(now - lastRefillNanos, Math.min(fillNanos, Long.MAX_VALUE / bytesPerSecond));
+        long earned = elapsed * bytesPerSecond / NANOS_PER_SECOND;
+        if (earned > 0) {
+            tokens = Math.min(burstBytes, tokens + earned);
+            // Only advance by the time actually converted into tokens to keep the remainder
+            lastRefillNanos = tokens == burstBytes ? now : lastRefillNanos + earned * NANOS_PER_SECOND / bytesPerSecond;
+        }
+    }
+
+    private static void checkRate(long bytesPerSecond) {
+        if (bytesPerSecond <= 0) {
+            throw new IllegalArgumentException("bytesPerSecond harus lebih dari 0");
+        }
+    }
+}
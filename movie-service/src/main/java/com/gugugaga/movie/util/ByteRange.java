@@ -0,0 +1,139 @@
+package com.gugugaga.movie.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Inclusive byte range [start, end] of a resource, parsed from an RFC 7233 Range header.
+ */
+public final class ByteRange {
+    private static final String BYTES_UNIT = "bytes=";
+    // Same cap Spring's HttpRange uses, stops range-flood requests
+    private static final int MAX_RANGES = 100;
+
+    private final long start;
+    private final long end;
+
+    public ByteRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public long length() {
+        return end - start + 1;
+    }
+
+    /**
+     * Parse a Range header against a resource of the given length.
+     *
+     * Business Flow:
+     * 1. Split "bytes=a-b, c-, -n" into range specs
+     * 2. Resolve suffix/open ranges and clamp the end to the resource length
+     * 3. Drop unsatisfiable specs (start beyond the end of the file)
+     * 4. Sort and coalesce overlapping or adjacent ranges into one
+     *
+     * @return satisfiable ranges, empty when none of them can be served (416)
+     * @throws IllegalArgumentException when the header is malformed
+     */
+    public static List<ByteRange> parse(String rangeHeader, long length) {
+        if (rangeHeader == null || !rangeHeader.startsWith(BYTES_UNIT)) {
+            throw new IllegalArgumentException("Range header harus menggunakan unit bytes");
+        }
+        String[] specs = rangeHeader.substring(BYTES_UNIT.length()).split(",");
+        if (specs.length > MAX_RANGES) {
+            throw new IllegalArgumentException("Terlalu banyak range: " + specs.length);
+        }
+        List<ByteRange> ranges = new ArrayList<>();
+        for (String rawSpec : specs) {
+            String spec = rawSpec.trim();
+            if (spec.isEmpty()) {
+                continue;
+            }
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                throw new IllegalArgumentException("Range tidak valid: " + spec);
+            }
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                // Suffix range: the last N bytes
+                long suffixLength = parsePosition(last);
+                if (suffixLength == 0 || length == 0) {
+                    continue;
+                }
+                start = Math.max(0, length - suffixLength);
+                end = length - 1;
+            } else {
+                start = parsePosition(first);
+                end = last.isEmpty() ? length - 1 : parsePosition(last);
+                if (!last.isEmpty() && end < start) {
+                    throw new IllegalArgumentException("Range tidak valid: " + spec);
+                }
+                if (start >= length) {
+                    continue;
+                }
+                end = Math.min(end, length - 1);
+            }
+            ranges.add(new ByteRange(start, end));
+        }
+        return coalesce(ranges);
+    }
+
+    private static long parsePosition(String value) {
+        if (value.isEmpty() || !value.chars().allMatch(Character::isDigit)) {
+            throw new IllegalArgumentException("Posisi range tidak valid: " + value);
+        }
+        return Long.parseLong(value);
+    }
+
+    private static List<ByteRange> coalesce(List<ByteRange> ranges) {
+        if (ranges.size() < 2) {
+            return ranges;
+        }
+        ranges.sort(Comparator.comparingLong(ByteRange::getStart));
+        List<ByteRange> merged = new ArrayList<>();
+        ByteRange current = ranges.get(0);
+        for (int i = 1; i < ranges.size(); i++) {
+            ByteRange next = ranges.get(i);
+            if (next.start <= current.end + 1) {
+                current = new ByteRange(current.start, Math.max(current.end, next.end));
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+        return merged;
+    }
+
+    /**
+     * Delimiter and headers that precede this range in a multipart/byteranges body.
+     */
+    public byte[] partHeader(String boundary, String contentType, long resourceLength) {
+        return ("\r\n--" + boundary + "\r\n"
+                + "Content-Type: " + contentType + "\r\n"
+                + "Content-Range: bytes " + start + "-" + end + "/" + resourceLength + "\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII);
+    }
+
+    public static byte[] closingBoundary(String boundary) {
+        return ("\r\n--" + boundary + "--").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public String toString() {
+        return start + "-" + end;
+    }
+}
@@ -0,0 +1,30 @@
+package com.gugugaga.movie.util;
+
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ClosedByInterruptException;
+
+import org.springframework.web.util.DisconnectedClientHelper;
+
+/**
+ * Recognises failures that only mean the client hung up - a player seeking
+ * drops its old connection - as opposed to real server-side I/O errors.
+ */
+public final class ClientAborts {
+    private ClientAborts() {
+    }
+
+    public static boolean isClientAbort(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            // The async request was cancelled and the writer thread interrupted. A read timeout
+            // (object store, remote disk) is a server-side failure; a timed out write to the
+            // client arrives wrapped in ClientAbortException and is matched below
+            if ((cause instanceof InterruptedIOException && !(cause instanceof SocketTimeoutException))
+                    || cause instanceof ClosedByInterruptException) {
+                return true;
+            }
+        }
+        // ClientAbortException, AsyncRequestNotUsableException, broken pipe, connection reset...
+        return DisconnectedClientHelper.isClientDisconnectedException(ex);
+    }
+}
@@ -0,0 +1,55 @@
+package com.gugugaga.movie.util;
+
+/**
+ * RFC 7232 precondition checks for GET/HEAD of a video, shared by the servlet and
+ * reactive stream endpoints. Dates are epoch millis, -1 when the header is absent or invalid.
+ */
+public final class ConditionalRequests {
+    private ConditionalRequests() {
+    }
+
+    /**
+     * If-None-Match wins over If-Modified-Since.
+     */
+    public static boolean isNotModified(String ifNoneMatch, long ifModifiedSince, String etag, long lastModified) {
+        if (ifNoneMatch != null) {
+            return matchesEtag(ifNoneMatch, etag, false);
+        }
+        // HTTP dates carry second precision
+        return ifModifiedSince != -1 && lastModified / 1000 * 1000 <= ifModifiedSince;
+    }
+
+    /**
+     * If-Range: only honour the Range header when the client's copy is still current,
+     * otherwise the whole file is sent so it can't stitch bytes from two versions.
+     *
+     * @param ifRangeDate the If-Range header parsed as a date, -1 when it is an entity tag
+     */
+    public static boolean isRangeApplicable(String ifRange, long ifRangeDate, String etag, long lastModified) {
+        if (ifRange == null) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return matchesEtag(ifRange, etag, true);
+        }
+        return ifRangeDate != -1 && lastModified / 1000 * 1000 == ifRangeDate;
+    }
+
+    public static boolean matchesEtag(String headerValue, String etag, boolean strong) {
+        for (String candidate : headerValue.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return !strong;
+            }
+            if (tag.startsWith("W/")) {
+                if (strong) continue;
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
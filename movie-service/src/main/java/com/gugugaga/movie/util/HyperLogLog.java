@@ -0,0 +1,134 @@
+package com.gugugaga.movie.util;
+
+import java.util.Arrays;
+
+/**
+ * Approximate distinct count (Flajolet et al. HyperLogLog with the small-range
+ * correction) in 2^precision one-byte registers. Standard error is about
+ * 1.04 / sqrt(2^precision), i.e. 1.6% for precision 12 in 4 KB.
+ *
+ * Sketches of the same precision merge by taking the register-wise maximum, so the
+ * sketches of several nodes add up to the sketch of all their viewers.
+ */
+public final class HyperLogLog {
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 18;
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("HyperLogLog precision must be between " + MIN_PRECISION + " and " + MAX_PRECISION + ": " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    public synchronized void add(long value) {
+        long hash = mix64(value);
+        int index = (int) (hash >>> (64 - precision));
+        // The sentinel bit caps the rank at 64 - precision + 1
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    public long estimate() {
+        byte[] snapshot = snapshot();
+        int m = snapshot.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : snapshot) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros); // linear counting while most registers are empty
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Add everything counted by {@code other} to this sketch.
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge HyperLogLog sketches of precision " + other.precision + " into " + precision);
+        }
+        byte[] theirs = other.snapshot();
+        synchronized (this) {
+            for (int i = 0; i < registers.length; i++) {
+                if (theirs[i] > registers[i]) {
+                    registers[i] = theirs[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Serialized form: the precision byte followed by the registers.
+     */
+    public byte[] toBytes() {
+        byte[] snapshot = snapshot();
+        byte[] bytes = new byte[snapshot.length + 1];
+        bytes[0] = (byte) precision;
+        System.arraycopy(snapshot, 0, bytes, 1, snapshot.length);
+        return bytes;
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            throw new IllegalArgumentException("Empty HyperLogLog sketch");
+        }
+        HyperLogLog sketch = new HyperLogLog(bytes[0]);
+        if (bytes.length != sketch.registers.length + 1) {
+            throw new IllegalArgumentException("HyperLogLog sketch of precision " + bytes[0] + " must be " + (sketch.registers.length + 1) + " bytes");
+        }
+        int maxRank = 64 - sketch.precision + 1;
+        for (int i = 0; i < sketch.registers.length; i++) {
+            byte register = bytes[i + 1];
+            if (register < 0 || register > maxRank) {
+                throw new IllegalArgumentException("Invalid HyperLogLog register value " + register);
+            }
+            sketch.registers[i] = register;
+        }
+        return sketch;
+    }
+
+    private synchronized byte[] snapshot() {
+        return Arrays.copyOf(registers, registers.length);
+    }
+
+    private static double alpha(int m) {
+        switch (m) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+
+    // MurmurHash3 finalizer: sequential ids end up spread over all registers
+    private static long mix64(long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,39 @@
+package com.gugugaga.movie.util;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+/**
+ * OutputStream that takes tokens from a {@link BandwidthPacer} before every write.
+ */
+public class PacedOutputStream extends FilterOutputStream {
+    private final BandwidthPacer pacer;
+
+    public PacedOutputStream(OutputStream out, BandwidthPacer pacer) {
+        super(out);
+        this.pacer = pacer;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        pace(1);
+        out.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        pace(len);
+        out.write(b, off, len);
+    }
+
+    private void pace(int bytes) throws IOException {
+        try {
+            pacer.acquire(bytes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Streaming interrupted while pacing");
+        }
+    }
+}
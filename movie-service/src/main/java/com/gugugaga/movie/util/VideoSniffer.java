@@ -0,0 +1,130 @@
+package com.gugugaga.movie.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import com.gugugaga.movie.storage.VideoReader;
+
+/**
+ * Identifies a video container from its leading bytes instead of trusting the file
+ * extension. Where the header carries it (Matroska CodecID, AVI strh) the video codec
+ * is picked up too; for ISO media the codecs come from the moov box.
+ */
+public final class VideoSniffer {
+    public static final String MP4 = "mp4";
+    public static final String MOV = "mov";
+    public static final String MATROSKA = "matroska";
+    public static final String WEBM = "webm";
+    public static final String AVI = "avi";
+    public static final String MPEG_TS = "mpegts";
+    public static final String FLV = "flv";
+
+    private static final int HEADER_BYTES = 4096;
+    private static final int TS_PACKET_SIZE = 188;
+
+    private final String container;
+    private final String videoCodec;
+
+    private VideoSniffer(String container, String videoCodec) {
+        this.container = container;
+        this.videoCodec = videoCodec;
+    }
+
+    /**
+     * @return the sniffed container, with a null container when the bytes are not a known video format
+     */
+    public static VideoSniffer sniff(VideoReader reader) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(HEADER_BYTES, reader.size()));
+        while (buffer.hasRemaining()) {
+            if (reader.read(buffer, buffer.position()) < 0) {
+                break;
+            }
+        }
+        byte[] header = new byte[buffer.position()];
+        buffer.flip().get(header);
+        return sniff(header);
+    }
+
+    static VideoSniffer sniff(byte[] b) {
+        if (b.length >= 12 && ascii(b, 4, 4).equals("ftyp")) {
+            // Major brand "qt  " is QuickTime, every other brand (isom, mp42, avc1, dash...) plays as MP4
+            return new VideoSniffer(ascii(b, 8, 4).equals("qt  ") ? MOV : MP4, null);
+        }
+        if (b.length >= 8 && (ascii(b, 4, 4).equals("moov") || ascii(b, 4, 4).equals("mdat")
+                || ascii(b, 4, 4).equals("wide") || ascii(b, 4, 4).equals("free"))) {
+            // Old QuickTime files start without an ftyp box
+            return new VideoSniffer(MOV, null);
+        }
+        if (b.length >= 4 && (b[0] & 0xFF) == 0x1A && (b[1] & 0xFF) == 0x45 && (b[2] & 0xFF) == 0xDF && (b[3] & 0xFF) == 0xA3) {
+            return new VideoSniffer(indexOf(b, "webm", 0) >= 0 ? WEBM : MATROSKA, matroskaCodec(b));
+        }
+        if (b.length >= 12 && ascii(b, 0, 4).equals("RIFF") && ascii(b, 8, 4).equals("AVI ")) {
+            return new VideoSniffer(AVI, aviCodec(b));
+        }
+        if (b.length >= 4 && ascii(b, 0, 3).equals("FLV") && b[3] == 1) {
+            return new VideoSniffer(FLV, null);
+        }
+        if (b.length > 2 * TS_PACKET_SIZE && b[0] == 0x47 && b[TS_PACKET_SIZE] == 0x47 && b[2 * TS_PACKET_SIZE] == 0x47) {
+            return new VideoSniffer(MPEG_TS, null);
+        }
+        return new VideoSniffer(null, null);
+    }
+
+    public static boolean isIsoMedia(String container) {
+        return MP4.equals(container) || MOV.equals(container);
+    }
+
+    public String getContainer() {
+        return container;
+    }
+
+    public String getVideoCodec() {
+        return videoCodec;
+    }
+
+    // CodecID element (0x86) of the first video track, e.g. V_MPEG4/ISO/AVC or V_VP9
+    private static String matroskaCodec(byte[] b) {
+        for (int i = 0; i + 4 < b.length; i++) {
+            if ((b[i] & 0xFF) != 0x86 || (b[i + 1] & 0x80) == 0) {
+                continue;
+            }
+            int length = b[i + 1] & 0x7F;
+            if (i + 2 + length <= b.length && length > 2 && b[i + 2] == 'V' && b[i + 3] == '_') {
+                return ascii(b, i + 2, length);
+            }
+        }
+        return null;
+    }
+
+    // fccHandler of the first stream header with type "vids", e.g. H264 or XVID
+    private static String aviCodec(byte[] b) {
+        int from = 0;
+        int strh;
+        while ((strh = indexOf(b, "strh", from)) >= 0 && strh + 20 <= b.length) {
+            if (ascii(b, strh + 8, 4).equals("vids")) {
+                return ascii(b, strh + 12, 4).trim();
+            }
+            from = strh + 4;
+        }
+        return null;
+    }
+
+    private static int indexOf(byte[] b, String text, int from) {
+        byte[] needle = text.getBytes(StandardCharsets.US_ASCII);
+        outer:
+        for (int i = from; i + needle.length <= b.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (b[i + j] != needle[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static String ascii(byte[] b, int offset, int length) {
+        return new String(b, offset, length, StandardCharsets.US_ASCII);
+    }
+}
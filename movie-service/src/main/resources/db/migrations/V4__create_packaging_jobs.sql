@@ -0,0 +1,24 @@
+CREATE TABLE tb_packaging_jobs (
+    id BIGSERIAL PRIMARY KEY,
+    movie_id BIGINT NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'QUEUED' CHECK (status IN ('QUEUED','RUNNING','COMPLETED','FAILED')),
+    current_step VARCHAR(50),
+    progress_percent INT NOT NULL DEFAULT 0,
+    attempts INT NOT NULL DEFAULT 0,
+    max_attempts INT NOT NULL DEFAULT 3,
+    file_size BIGINT,
+    checksum_sha256 VARCHAR(64),
+    duration_seconds DOUBLE PRECISION,
+    segment_count INT,
+    faststart BOOLEAN,
+    error_message TEXT,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    started_at TIMESTAMP NULL,
+    finished_at TIMESTAMP NULL,
+
+    CONSTRAINT fk_packaging_movie FOREIGN KEY (movie_id) REFERENCES tb_movies(id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_packaging_jobs_movie_id ON tb_packaging_jobs(movie_id);
+CREATE INDEX idx_packaging_jobs_status ON tb_packaging_jobs(status);
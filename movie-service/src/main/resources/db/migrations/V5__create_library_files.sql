@@ -0,0 +1,18 @@
+CREATE TABLE tb_library_files (
+    id BIGSERIAL PRIMARY KEY,
+    file_name VARCHAR(255) NOT NULL UNIQUE,
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING' CHECK (status IN ('PENDING','READY','FAILED','MISSING')),
+    file_size BIGINT,
+    file_last_modified BIGINT,
+    container VARCHAR(20),
+    video_codec VARCHAR(20),
+    audio_codec VARCHAR(20),
+    duration_seconds DOUBLE PRECISION,
+    faststart BOOLEAN,
+    error_message TEXT,
+    discovered_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    indexed_at TIMESTAMP NULL,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_library_files_status ON tb_library_files(status);
@@ -0,0 +1,15 @@
+CREATE TABLE tb_watch_progress (
+    user_id BIGINT NOT NULL,
+    movie_id BIGINT NOT NULL,
+    position_seconds DOUBLE PRECISION,
+    duration_seconds DOUBLE PRECISION,
+    byte_offset BIGINT NOT NULL,
+    file_size BIGINT NOT NULL,
+    completed BOOLEAN NOT NULL DEFAULT FALSE,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+
+    PRIMARY KEY (user_id, movie_id),
+    CONSTRAINT fk_watch_progress_movie FOREIGN KEY (movie_id) REFERENCES tb_movies(id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_watch_progress_user_updated ON tb_watch_progress(user_id, updated_at DESC);
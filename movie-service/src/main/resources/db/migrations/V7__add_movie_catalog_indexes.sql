@@ -0,0 +1,13 @@
+-- Movie reads filter on is_deleted = false (@SQLRestriction on Movie), rows created
+-- before the soft delete columns have NULL there
+UPDATE tb_movies SET is_deleted = false WHERE is_deleted IS NULL;
+ALTER TABLE tb_movies ALTER COLUMN is_deleted SET DEFAULT false;
+ALTER TABLE tb_movies ALTER COLUMN is_deleted SET NOT NULL;
+
+-- Keyset pagination of GET /api/movies: every sort is (key, id), so the next page
+-- starts with an index seek instead of skipping the previous pages. Only live rows
+-- are indexed, the predicate matches the entity's restriction
+CREATE INDEX idx_movies_live_id ON tb_movies(id) WHERE is_deleted = false;
+CREATE INDEX idx_movies_live_title_id ON tb_movies(title, id) WHERE is_deleted = false;
+CREATE INDEX idx_movies_live_release_year_id ON tb_movies(release_year DESC, id DESC) WHERE is_deleted = false;
+CREATE INDEX idx_movies_live_video_file_name ON tb_movies(video_file_name) WHERE is_deleted = false;
@@ -0,0 +1,142 @@
+package com.gugugaga.movie.controller;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+
+import com.gugugaga.movie.config.MovieConfiguration;
+import com.gugugaga.movie.entity.Movie;
+import com.gugugaga.movie.entity.VideoInfo;
+import com.gugugaga.movie.service.BandwidthPacingService;
+import com.gugugaga.movie.service.FileChannelCache;
+import com.gugugaga.movie.service.HotRegionCache;
+import com.gugugaga.movie.service.ReadAheadService;
+import com.gugugaga.movie.service.StreamLimitService;
+import com.gugugaga.movie.service.StreamingMetricsService;
+import com.gugugaga.movie.service.VideoSeekService;
+import com.gugugaga.movie.service.VideoStreamingService;
+import com.gugugaga.movie.service.ViewerStatsService;
+import com.gugugaga.movie.service.WatchProgressService;
+import com.gugugaga.movie.storage.VideoStorage;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class ReactiveStreamHandlerTest {
+    private static final long MOVIE_ID = 7;
+    private static final String ETAG = "\"v1\"";
+
+    @TempDir
+    Path tempDir;
+
+    private byte[] content;
+    private HotRegionCache hotRegionCache;
+    private FileChannelCache fileChannelCache;
+    private WebTestClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        content = new byte[100_000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 31);
+        }
+        Path file = Files.write(tempDir.resolve("movie.mp4"), content);
+        Movie movie = new Movie();
+        movie.setId(MOVIE_ID);
+        VideoInfo videoInfo = VideoInfo.builder()
+                .file(file.toFile())
+                .contentType("video/mp4")
+                .movie(movie)
+                .fileSize(content.length)
+                .lastModified(1_700_000_000_000L)
+                .etag(ETAG)
+                .build();
+
+        MovieConfiguration movieConfig = new MovieConfiguration();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        VideoStreamingService videoStreamingService = mock(VideoStreamingService.class);
+        when(videoStreamingService.getVideoInfo(MOVIE_ID, 1L)).thenReturn(videoInfo);
+        hotRegionCache = mock(HotRegionCache.class);
+        fileChannelCache = new FileChannelCache(hotRegionCache, mock(VideoStorage.class), movieConfig, meterRegistry);
+
+        // Unlimited, unpaced user without read-ahead, progress or viewer stats
+        ReactiveStreamHandler handler = new ReactiveStreamHandler(videoStreamingService, mock(VideoSeekService.class),
+                mock(BandwidthPacingService.class), mock(StreamLimitService.class), new StreamingMetricsService(meterRegistry),
+                fileChannelCache, mock(ReadAheadService.class), mock(WatchProgressService.class), mock(ViewerStatsService.class), movieConfig);
+        client = WebTestClient.bindToRouterFunction(RouterFunctions.route()
+                        .GET("/api/movies/{movieId}/stream", handler::stream)
+                        .HEAD("/api/movies/{movieId}/stream", handler::stream)
+                        .build())
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        fileChannelCache.closeAll();
+    }
+
+    @Test
+    void streamsTheWholeFile() {
+        byte[] body = client.get().uri("/api/movies/{movieId}/stream", MOVIE_ID)
+                .header("X-User-Id", "1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentLength(content.length)
+                .expectHeader().valueEquals(HttpHeaders.ETAG, ETAG)
+                .expectBody(byte[].class).returnResult().getResponseBody();
+        assertArrayEquals(content, body);
+    }
+
+    @Test
+    void servesARangeThroughTheChannelCache() {
+        byte[] body = client.get().uri("/api/movies/{movieId}/stream", MOVIE_ID)
+                .header("X-User-Id", "1")
+                .header(HttpHeaders.RANGE, "bytes=1000-40999")
+                .exchange()
+                .expectStatus().isEqualTo(206)
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_RANGE, "bytes 1000-40999/" + content.length)
+                .expectBody(byte[].class).returnResult().getResponseBody();
+        assertArrayEquals(Arrays.copyOfRange(content, 1000, 41_000), body);
+        // Counted towards the hot region ranking like a servlet stream
+        verify(hotRegionCache).lookup(any(VideoInfo.class));
+    }
+
+    @Test
+    void rejectsAnUnsatisfiableRange() {
+        client.get().uri("/api/movies/{movieId}/stream", MOVIE_ID)
+                .header("X-User-Id", "1")
+                .header(HttpHeaders.RANGE, "bytes=200000-")
+                .exchange()
+                .expectStatus().isEqualTo(416)
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_RANGE, "bytes */" + content.length);
+    }
+
+    @Test
+    void answersRevalidationWithNotModified() {
+        client.get().uri("/api/movies/{movieId}/stream", MOVIE_ID)
+                .header("X-User-Id", "1")
+                .header(HttpHeaders.IF_NONE_MATCH, ETAG)
+                .exchange()
+                .expectStatus().isNotModified();
+    }
+
+    @Test
+    void requiresAUser() {
+        client.get().uri("/api/movies/{movieId}/stream", MOVIE_ID)
+                .exchange()
+                .expectStatus().isUnauthorized();
+        verifyNoInteractions(hotRegionCache);
+    }
+}
@@ -0,0 +1,93 @@
+package com.gugugaga.movie.limits;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InMemoryStreamSlotStoreTest {
+
+    @Test
+    void requestsForTheSameMovieShareASlot() {
+        InMemoryStreamSlotStore store = new InMemoryStreamSlotStore();
+        assertTrue(store.tryAcquire("1", "10", 1));
+        assertTrue(store.tryAcquire("1", "10", 1));
+        assertEquals(1, store.activeSlots("1"));
+        assertEquals(1L, store.totalActiveSlots());
+
+        // The slot stays open until its last request is released
+        store.release("1", "10");
+        assertEquals(1, store.activeSlots("1"));
+        store.release("1", "10");
+        assertEquals(0, store.activeSlots("1"));
+        assertEquals(0L, store.totalActiveSlots());
+    }
+
+    @Test
+    void rejectsAnotherMovieOverTheLimit() {
+        InMemoryStreamSlotStore store = new InMemoryStreamSlotStore();
+        assertTrue(store.tryAcquire("1", "10", 2));
+        assertTrue(store.tryAcquire("1", "11", 2));
+        assertFalse(store.tryAcquire("1", "12", 2));
+        assertTrue(store.tryAcquire("2", "12", 2)); // other users are unaffected
+
+        store.release("1", "10");
+        assertTrue(store.tryAcquire("1", "12", 2));
+        assertEquals(2, store.activeSlots("1"));
+        assertEquals(3L, store.totalActiveSlots());
+    }
+
+    @Test
+    void releasingAnUnknownSlotIsHarmless() {
+        InMemoryStreamSlotStore store = new InMemoryStreamSlotStore();
+        store.release("1", "10");
+        assertTrue(store.tryAcquire("1", "10", 1));
+        store.release("1", "11");
+        assertEquals(1, store.activeSlots("1"));
+    }
+
+    @Test
+    void neverExceedsTheLimitUnderContention() throws Exception {
+        InMemoryStreamSlotStore store = new InMemoryStreamSlotStore();
+        int threads = 8;
+        int maxSlots = 2;
+        AtomicInteger maxOpen = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 20_000; i++) {
+                        String slotKey = String.valueOf((thread + i) % 4);
+                        if (!store.tryAcquire("1", slotKey, maxSlots)) {
+                            continue;
+                        }
+                        maxOpen.accumulateAndGet(store.activeSlots("1"), Math::max);
+                        store.release("1", slotKey);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue(maxOpen.get() <= maxSlots, "opened " + maxOpen.get() + " slots");
+        assertEquals(0, store.activeSlots("1"));
+        assertEquals(0L, store.totalActiveSlots());
+    }
+}
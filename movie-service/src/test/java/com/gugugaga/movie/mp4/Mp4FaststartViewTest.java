@@ -0,0 +1,80 @@
+package com.gugugaga.movie.mp4;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class Mp4FaststartViewTest {
+    @Test
+    void rewritesStcoIntoTheView() throws IOException {
+        assertSamplesFollowTheirBytes(Mp4TestFiles.movie(false, false));
+    }
+
+    @Test
+    void rewritesCo64IntoTheView() throws IOException {
+        assertSamplesFollowTheirBytes(Mp4TestFiles.movie(true, false));
+    }
+
+    @Test
+    void noViewForFaststartFiles() throws IOException {
+        byte[] file = Mp4TestFiles.movie(false, false);
+        byte[] faststart = viewBytes(Mp4FaststartView.create(Mp4TestFiles.reader(file), Mp4Parser.parse(Mp4TestFiles.reader(file))), file);
+        assertNull(Mp4FaststartView.create(Mp4TestFiles.reader(faststart), Mp4Parser.parse(Mp4TestFiles.reader(faststart))));
+    }
+
+    @Test
+    void mapsOffsetsBothWays() throws IOException {
+        byte[] file = Mp4TestFiles.movie(false, false);
+        Mp4FaststartView view = Mp4FaststartView.create(Mp4TestFiles.reader(file), Mp4Parser.parse(Mp4TestFiles.reader(file)));
+        int moovSize = view.getHeaderSize();
+        int mdat = Mp4TestFiles.MEDIA_START - 8;
+        assertEquals(0, view.toViewOffset(0));
+        assertEquals(mdat + moovSize, view.toViewOffset(mdat));
+        assertEquals(Mp4TestFiles.MEDIA_START + moovSize, view.toViewOffset(Mp4TestFiles.MEDIA_START));
+        assertEquals(Mp4TestFiles.MEDIA_START, view.toFileOffset(Mp4TestFiles.MEDIA_START + moovSize));
+        assertEquals(-1, view.toFileOffset(mdat));
+        assertEquals(moovSize, view.contiguousLength(mdat));
+        assertEquals(file.length - moovSize - mdat, view.contiguousLength(mdat + moovSize));
+        assertEquals(file.length, view.getSize());
+    }
+
+    private static void assertSamplesFollowTheirBytes(byte[] file) throws IOException {
+        Mp4Index original = Mp4Parser.parse(Mp4TestFiles.reader(file));
+        assertFalse(original.isFaststart());
+        Mp4FaststartView view = Mp4FaststartView.create(Mp4TestFiles.reader(file), original);
+        byte[] rewritten = viewBytes(view, file);
+        assertEquals(file.length, rewritten.length);
+
+        Mp4Index index = Mp4Parser.parse(Mp4TestFiles.reader(rewritten));
+        assertTrue(index.isFaststart());
+        Mp4Track before = original.getReferenceTrack();
+        Mp4Track after = index.getReferenceTrack();
+        assertEquals(Mp4TestFiles.SAMPLE_SIZES.length, after.getSampleCount());
+        for (int sample = 0; sample < after.getSampleCount(); sample++) {
+            assertEquals(view.toViewOffset(before.getSampleOffset(sample)), after.getSampleOffset(sample));
+            for (int i = 0; i < after.getSampleSize(sample); i++) {
+                assertEquals(file[(int) before.getSampleOffset(sample) + i], rewritten[(int) after.getSampleOffset(sample) + i]);
+            }
+        }
+    }
+
+    // The bytes a client downloading the whole view would get
+    private static byte[] viewBytes(Mp4FaststartView view, byte[] file) {
+        byte[] bytes = new byte[(int) view.getSize()];
+        int position = 0;
+        while (position < bytes.length) {
+            int length = (int) view.contiguousLength(position);
+            ByteBuffer moov = view.headerSlice(position, length);
+            if (moov != null) {
+                moov.get(bytes, position, length);
+            } else {
+                System.arraycopy(file, (int) view.toFileOffset(position), bytes, position, length);
+            }
+            position += length;
+        }
+        return bytes;
+    }
+}
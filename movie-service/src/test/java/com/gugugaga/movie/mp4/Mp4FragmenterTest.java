@@ -0,0 +1,63 @@
+package com.gugugaga.movie.mp4;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class Mp4FragmenterTest {
+
+    @Test
+    void initSegmentHasEmptySampleTablesAndTrex() throws IOException {
+        byte[] file = Mp4TestFiles.movie(false, false);
+        byte[] init = Mp4Fragmenter.initSegment(Mp4TestFiles.reader(file), Mp4Parser.parse(Mp4TestFiles.reader(file)));
+
+        ByteBuffer data = ByteBuffer.wrap(init);
+        assertEquals("ftyp", Mp4Parser.fourcc(data, 4));
+        int stsz = Mp4TestFiles.payloadOf(init, "stsz");
+        assertEquals(0, data.getInt(stsz + 8), "stsz sample count");
+        int trex = Mp4TestFiles.payloadOf(init, "trex");
+        assertEquals(1, data.getInt(trex + 4), "trex track id");
+        assertThrows(IllegalArgumentException.class, () -> Mp4TestFiles.payloadOf(init, "mdat"));
+    }
+
+    @Test
+    void fragmentPointsAtTheSampleBytes() throws IOException {
+        byte[] file = Mp4TestFiles.movie(false, false);
+        Mp4Index index = Mp4Parser.parse(Mp4TestFiles.reader(file));
+        Mp4Segment segment = index.getSegments(10).get(0);
+        Mp4Fragmenter.Fragment fragment = Mp4Fragmenter.fragment(index, segment, 0);
+
+        // moof + mdat exactly as a player receives it
+        ByteBuffer wire = ByteBuffer.allocate((int) fragment.getLength()).put(fragment.getHeader());
+        for (long[] region : fragment.getRegions()) {
+            wire.put(file, (int) region[0], (int) region[1]);
+        }
+        byte[] bytes = wire.array();
+        assertFalse(wire.hasRemaining());
+
+        int trun = Mp4TestFiles.payloadOf(bytes, "trun");
+        int sampleCount = wire.getInt(trun + 4);
+        int dataOffset = wire.getInt(trun + 8);
+        assertEquals(Mp4TestFiles.SAMPLE_SIZES.length, sampleCount);
+        int mdat = Mp4TestFiles.payloadOf(bytes, "mdat");
+        assertEquals(mdat, dataOffset, "data_offset counts from the moof");
+        Mp4Track track = index.getReferenceTrack();
+        int position = dataOffset;
+        for (int sample = 0; sample < sampleCount; sample++) {
+            int entry = trun + 12 + sample * 12;
+            assertEquals(1000, wire.getInt(entry), "duration");
+            assertEquals(Mp4TestFiles.SAMPLE_SIZES[sample], wire.getInt(entry + 4), "size");
+            for (int i = 0; i < track.getSampleSize(sample); i++) {
+                assertEquals(file[(int) track.getSampleOffset(sample) + i], bytes[position + i]);
+            }
+            position += track.getSampleSize(sample);
+        }
+        // The samples sit back to back in the file: one read
+        assertEquals(1, fragment.getRegions().size());
+        assertEquals(Mp4TestFiles.MEDIA_START, fragment.getRegions().get(0)[0]);
+        assertEquals(100, fragment.getRegions().get(0)[1]);
+    }
+}
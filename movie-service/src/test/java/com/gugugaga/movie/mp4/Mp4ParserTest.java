@@ -0,0 +1,63 @@
+package com.gugugaga.movie.mp4;
+
+import com.gugugaga.movie.exception.Mp4FormatException;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class Mp4ParserTest {
+
+    @Test
+    void resolvesSampleOffsetsAndTimes() throws IOException {
+        Mp4Track track = parse(Mp4TestFiles.movie(false, false)).getReferenceTrack();
+        assertEquals(4, track.getSampleCount());
+        assertEquals(24, track.getSampleOffset(0));
+        assertEquals(34, track.getSampleOffset(1));
+        assertEquals(54, track.getSampleOffset(2));
+        assertEquals(84, track.getSampleOffset(3));
+        assertEquals(3000, track.getSampleTime(3));
+        assertEquals(2, track.firstSampleAtOrAfter(1500));
+        assertEquals(4, track.firstSampleAtOrAfter(5000));
+    }
+
+    @Test
+    void constantSampleSizes() throws IOException {
+        Mp4Track track = parse(Mp4TestFiles.movie(false, true)).getReferenceTrack();
+        assertEquals(4, track.getSampleCount());
+        assertEquals(Mp4TestFiles.CONSTANT_SIZE, track.getSampleSize(3));
+        assertEquals(24 + 3 * Mp4TestFiles.CONSTANT_SIZE, track.getSampleOffset(3));
+    }
+
+    @Test
+    void rejectsEntryCountsBeyondTheBox() {
+        for (String type : new String[] {"stts", "stsc", "stsz", "stco"}) {
+            byte[] file = Mp4TestFiles.movie(false, false);
+            int countAt = Mp4TestFiles.payloadOf(file, type) + (type.equals("stsz") ? 8 : 4);
+            ByteBuffer.wrap(file).putInt(countAt, 0x7FFFFFF0);
+            assertThrows(Mp4FormatException.class, () -> parse(file), type);
+        }
+    }
+
+    @Test
+    void rejectsConstantSizeTablesLargerThanTheFile() {
+        byte[] file = Mp4TestFiles.movie(false, true);
+        ByteBuffer.wrap(file).putInt(Mp4TestFiles.payloadOf(file, "stsz") + 8, 0x7FFFFFFF);
+        assertThrows(Mp4FormatException.class, () -> parse(file));
+    }
+
+    @Test
+    void rejectsTruncatedHeaders() {
+        byte[] file = Mp4TestFiles.movie(false, false);
+        // mdhd claims version 1, whose fields don't fit the version 0 payload
+        file[Mp4TestFiles.payloadOf(file, "mdhd")] = 1;
+        assertThrows(Mp4FormatException.class, () -> parse(file));
+    }
+
+    private static Mp4Index parse(byte[] file) throws IOException {
+        return Mp4Parser.parse(Mp4TestFiles.reader(file));
+    }
+}
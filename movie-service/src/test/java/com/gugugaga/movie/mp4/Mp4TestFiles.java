@@ -0,0 +1,104 @@
+package com.gugugaga.movie.mp4;
+
+import com.gugugaga.movie.storage.VideoReader;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tiny synthetic MP4s for the parser tests: ftyp, mdat, then a tail moov.
+ */
+final class Mp4TestFiles {
+    static final int MEDIA_START = 24; // ftyp (16) + mdat header (8)
+    static final int[] SAMPLE_SIZES = {10, 20, 30, 40};
+    static final int CONSTANT_SIZE = 25;
+
+    private Mp4TestFiles() {
+    }
+
+    // ftyp, mdat with two chunks of two samples, then moov with a single video track
+    static byte[] movie(boolean co64, boolean constantSizes) {
+        byte[] media = new byte[100];
+        for (int i = 0; i < media.length; i++) {
+            media[i] = (byte) (i * 7 + 3);
+        }
+        long firstChunk = MEDIA_START;
+        long secondChunk = MEDIA_START + (constantSizes ? 2 * CONSTANT_SIZE : SAMPLE_SIZES[0] + SAMPLE_SIZES[1]);
+        ByteBuffer stco = co64
+                ? ByteBuffer.allocate(24).putInt(0).putInt(2).putLong(firstChunk).putLong(secondChunk)
+                : ByteBuffer.allocate(16).putInt(0).putInt(2).putInt((int) firstChunk).putInt((int) secondChunk);
+        ByteBuffer stsz = ByteBuffer.allocate(12 + (constantSizes ? 0 : 4 * SAMPLE_SIZES.length))
+                .putInt(0).putInt(constantSizes ? CONSTANT_SIZE : 0).putInt(SAMPLE_SIZES.length);
+        for (int i = 0; !constantSizes && i < SAMPLE_SIZES.length; i++) {
+            stsz.putInt(SAMPLE_SIZES[i]);
+        }
+        byte[] stbl = box("stbl",
+                box("stsd", ByteBuffer.allocate(16).putInt(0).putInt(1).putInt(16).put(ascii("avc1")).array()),
+                box("stts", ByteBuffer.allocate(16).putInt(0).putInt(1).putInt(SAMPLE_SIZES.length).putInt(1000).array()),
+                box("stsc", ByteBuffer.allocate(20).putInt(0).putInt(1).putInt(1).putInt(2).putInt(1).array()),
+                box("stsz", stsz.array()),
+                box(co64 ? "co64" : "stco", stco.array()));
+        byte[] trak = box("trak",
+                box("tkhd", ByteBuffer.allocate(84).putInt(12, 1).array()),
+                box("mdia",
+                        box("mdhd", ByteBuffer.allocate(24).putInt(12, 1000).putInt(16, 4000).array()),
+                        box("hdlr", ByteBuffer.allocate(24).put(8, ascii("vide")).array()),
+                        box("minf", stbl)));
+        byte[] moov = box("moov", box("mvhd", ByteBuffer.allocate(100).putInt(12, 1000).putInt(16, 4000).array()), trak);
+        return concat(box("ftyp", ascii("isom"), new byte[4]), box("mdat", media), moov);
+    }
+
+    private static byte[] box(String type, byte[]... payloads) {
+        byte[] payload = concat(payloads);
+        return concat(ByteBuffer.allocate(8).putInt(8 + payload.length).put(ascii(type)).array(), payload);
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Position of the payload of the first box of the type, after its 8 byte header.
+     */
+    static int payloadOf(byte[] file, String type) {
+        byte[] fourcc = ascii(type);
+        for (int i = 4; i + 4 <= file.length; i++) {
+            if (file[i] == fourcc[0] && file[i + 1] == fourcc[1] && file[i + 2] == fourcc[2] && file[i + 3] == fourcc[3]) {
+                return i + 4;
+            }
+        }
+        throw new IllegalArgumentException("No " + type + " box");
+    }
+
+    static VideoReader reader(byte[] bytes) {
+        return new VideoReader() {
+            @Override
+            public int read(ByteBuffer target, long position) {
+                if (position >= bytes.length) {
+                    return -1;
+                }
+                int length = (int) Math.min(target.remaining(), bytes.length - position);
+                target.put(bytes, (int) position, length);
+                return length;
+            }
+
+            @Override
+            public long size() {
+                return bytes.length;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
@@ -0,0 +1,58 @@
+package com.gugugaga.movie.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BandwidthPacerTest {
+    private static final long SECOND = 1_000_000_000L;
+
+    private long now;
+
+    @Test
+    void sendsTheBurstAtFullSpeedThenWaitsOffTheDeficit() {
+        BandwidthPacer pacer = new BandwidthPacer(1000, 500, () -> now);
+        assertEquals(0, pacer.reserve(500));
+        assertEquals(SECOND / 4, pacer.reserve(250));
+    }
+
+    @Test
+    void refillsAtTheConfiguredRateUpToTheBurst() {
+        BandwidthPacer pacer = new BandwidthPacer(1000, 500, () -> now);
+        pacer.reserve(500);
+        now += SECOND / 10;
+        assertEquals(0, pacer.reserve(100));
+        assertEquals(SECOND / 10, pacer.reserve(100));
+
+        now += 60 * SECOND;
+        assertEquals(0, pacer.reserve(500));
+        assertEquals(SECOND / 1000, pacer.reserve(1));
+    }
+
+    @Test
+    void longIdleOnAFastPlanDoesNotOverflow() {
+        // elapsed * bytesPerSecond would overflow a long many times over
+        long bytesPerSecond = 1_000_000_000_000L;
+        BandwidthPacer pacer = new BandwidthPacer(bytesPerSecond, 1_000_000, () -> now);
+        pacer.reserve(1_000_000);
+        now += Long.MAX_VALUE / 2;
+        assertEquals(0, pacer.reserve(1_000_000));
+        assertEquals(1_000_000 * SECOND / bytesPerSecond, pacer.reserve(1_000_000));
+    }
+
+    @Test
+    void rateChangeAppliesToTheSharedBucket() {
+        BandwidthPacer pacer = new BandwidthPacer(1000, 0, () -> now);
+        assertEquals(SECOND, pacer.reserve(1000));
+        now += SECOND;
+        pacer.setBytesPerSecond(4000);
+        assertEquals(4000, pacer.getBytesPerSecond());
+        assertEquals(SECOND / 4, pacer.reserve(1000));
+    }
+
+    @Test
+    void rejectsNonPositiveRates() {
+        assertThrows(IllegalArgumentException.class, () -> new BandwidthPacer(0, 100));
+        assertThrows(IllegalArgumentException.class, () -> new BandwidthPacer(1000, 100).setBytesPerSecond(-1));
+    }
+}
@@ -0,0 +1,65 @@
+package com.gugugaga.movie.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ByteRangeTest {
+
+    @Test
+    void parsesClosedOpenAndSuffixRanges() {
+        assertRanges("bytes=0-99", 1000, "0-99");
+        assertRanges("bytes=500-", 1000, "500-999");
+        assertRanges("bytes=-100", 1000, "900-999");
+        assertRanges("bytes=-5000", 1000, "0-999");
+    }
+
+    @Test
+    void clampsEndToResourceLength() {
+        assertRanges("bytes=900-5000", 1000, "900-999");
+    }
+
+    @Test
+    void dropsUnsatisfiableRanges() {
+        assertRanges("bytes=1000-1100", 1000);
+        assertRanges("bytes=-0", 1000);
+        assertRanges("bytes=0-10, 2000-3000", 1000, "0-10");
+    }
+
+    @Test
+    void coalescesOverlappingAndAdjacentRanges() {
+        assertRanges("bytes=0-99, 50-149, 150-199", 1000, "0-199");
+        assertRanges("bytes=500-599, 0-99", 1000, "0-99", "500-599");
+        assertRanges("bytes=0-499, 100-199", 1000, "0-499");
+    }
+
+    @Test
+    void rejectsMalformedHeaders() {
+        assertThrows(IllegalArgumentException.class, () -> ByteRange.parse("items=0-1", 1000));
+        assertThrows(IllegalArgumentException.class, () -> ByteRange.parse("bytes=5", 1000));
+        assertThrows(IllegalArgumentException.class, () -> ByteRange.parse("bytes=9-1", 1000));
+        assertThrows(IllegalArgumentException.class, () -> ByteRange.parse("bytes=a-b", 1000));
+        assertThrows(IllegalArgumentException.class, () -> ByteRange.parse("bytes=" + "0-0,".repeat(101), 1000));
+    }
+
+    @Test
+    void lengthIsInclusive() {
+        assertEquals(100, new ByteRange(0, 99).length());
+    }
+
+    @Test
+    void writesMultipartByterangesFraming() {
+        ByteRange range = new ByteRange(100, 199);
+        assertEquals("\r\n--frontier\r\nContent-Type: video/mp4\r\nContent-Range: bytes 100-199/1000\r\n\r\n",
+                new String(range.partHeader("frontier", "video/mp4", 1000), StandardCharsets.US_ASCII));
+        assertEquals("\r\n--frontier--", new String(ByteRange.closingBoundary("frontier"), StandardCharsets.US_ASCII));
+    }
+
+    private static void assertRanges(String header, long length, String... expected) {
+        List<ByteRange> ranges = ByteRange.parse(header, length);
+        assertEquals(List.of(expected), ranges.stream().map(ByteRange::toString).toList(), header);
+    }
+}
@@ -0,0 +1,28 @@
+package com.gugugaga.movie.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ClosedByInterruptException;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClientAbortsTest {
+
+    @Test
+    void cancelledWriterIsAnAbort() {
+        assertTrue(ClientAborts.isClientAbort(new InterruptedIOException()));
+        assertTrue(ClientAborts.isClientAbort(new UncheckedIOException(new ClosedByInterruptException())));
+        assertTrue(ClientAborts.isClientAbort(new IOException("Broken pipe")));
+    }
+
+    @Test
+    void readTimeoutIsAServerFailure() {
+        assertFalse(ClientAborts.isClientAbort(new SocketTimeoutException("Read timed out")));
+        assertFalse(ClientAborts.isClientAbort(new UncheckedIOException(new SocketTimeoutException("Read timed out"))));
+        assertFalse(ClientAborts.isClientAbort(new IOException("No space left on device")));
+    }
+}
@@ -0,0 +1,33 @@
+package com.gugugaga.movie.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConditionalRequestsTest {
+    private static final String ETAG = "\"abc\"";
+    private static final long LAST_MODIFIED = 1_700_000_000_123L;
+
+    @Test
+    void ifNoneMatchWinsOverIfModifiedSince() {
+        assertTrue(ConditionalRequests.isNotModified("W/\"abc\"", -1, ETAG, LAST_MODIFIED));
+        assertTrue(ConditionalRequests.isNotModified("*", -1, ETAG, LAST_MODIFIED));
+        assertFalse(ConditionalRequests.isNotModified("\"other\"", LAST_MODIFIED, ETAG, LAST_MODIFIED));
+    }
+
+    @Test
+    void ifModifiedSinceComparesWholeSeconds() {
+        assertTrue(ConditionalRequests.isNotModified(null, 1_700_000_000_000L, ETAG, LAST_MODIFIED));
+        assertFalse(ConditionalRequests.isNotModified(null, 1_699_999_999_000L, ETAG, LAST_MODIFIED));
+        assertFalse(ConditionalRequests.isNotModified(null, -1, ETAG, LAST_MODIFIED));
+    }
+
+    @Test
+    void ifRangeNeedsStrongMatchOrExactDate() {
+        assertTrue(ConditionalRequests.isRangeApplicable(null, -1, ETAG, LAST_MODIFIED));
+        assertTrue(ConditionalRequests.isRangeApplicable(ETAG, -1, ETAG, LAST_MODIFIED));
+        assertFalse(ConditionalRequests.isRangeApplicable("W/\"abc\"", -1, ETAG, LAST_MODIFIED));
+        assertTrue(ConditionalRequests.isRangeApplicable("Tue, 14 Nov 2023 22:13:20 GMT", 1_700_000_000_000L, ETAG, LAST_MODIFIED));
+        assertFalse(ConditionalRequests.isRangeApplicable("Tue, 14 Nov 2023 22:13:21 GMT", 1_700_000_001_000L, ETAG, LAST_MODIFIED));
+    }
+}
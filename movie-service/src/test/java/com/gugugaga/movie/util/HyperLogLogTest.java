@@ -0,0 +1,71 @@
+package com.gugugaga.movie.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HyperLogLogTest {
+
+    @Test
+    void estimatesWithinExpectedError() {
+        for (int n : new int[] {0, 1, 100, 1_000, 100_000}) {
+            HyperLogLog sketch = new HyperLogLog(12);
+            for (long i = 0; i < n; i++) {
+                sketch.add(i);
+            }
+            // Three standard errors of precision 12, plus one for the tiny counts
+            assertEquals(n, sketch.estimate(), n * 0.05 + 1, "n=" + n);
+        }
+    }
+
+    @Test
+    void duplicatesAreCountedOnce() {
+        HyperLogLog sketch = new HyperLogLog(12);
+        for (int round = 0; round < 10; round++) {
+            for (long i = 0; i < 500; i++) {
+                sketch.add(i);
+            }
+        }
+        assertEquals(500, sketch.estimate(), 25);
+    }
+
+    @Test
+    void mergeCountsTheUnion() {
+        HyperLogLog first = new HyperLogLog(12);
+        HyperLogLog second = new HyperLogLog(12);
+        for (long i = 0; i < 20_000; i++) {
+            first.add(i);
+        }
+        for (long i = 10_000; i < 30_000; i++) {
+            second.add(i);
+        }
+        first.merge(second);
+        assertEquals(30_000, first.estimate(), 30_000 * 0.05);
+    }
+
+    @Test
+    void mergeRejectsOtherPrecision() {
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(12).merge(new HyperLogLog(10)));
+    }
+
+    @Test
+    void bytesRoundTrip() {
+        HyperLogLog sketch = new HyperLogLog(10);
+        for (long i = 0; i < 5_000; i++) {
+            sketch.add(i * 31);
+        }
+        HyperLogLog copy = HyperLogLog.fromBytes(sketch.toBytes());
+        assertEquals(10, copy.getPrecision());
+        assertEquals(sketch.estimate(), copy.estimate());
+    }
+
+    @Test
+    void fromBytesRejectsMalformedSketches() {
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(new byte[0]));
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(new byte[] {12, 0, 0}));
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(new byte[] {3}));
+        byte[] bytes = new HyperLogLog(4).toBytes();
+        bytes[1] = 100;
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(bytes));
+    }
+}